@@ -2,11 +2,20 @@ package com.medvault.hmsbackend;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class HmsBackendApplication {
 
+    // Tomcat sizes every WebSocket's frame and output buffers from this (8 KB unless set); chat
+    // frames are small and most sockets sit idle. Must be set before Tomcat loads.
+    private static final String WEBSOCKET_BUFFER_SIZE = "org.apache.tomcat.websocket.DEFAULT_BUFFER_SIZE";
+
     public static void main(String[] args) {
+        if (System.getProperty(WEBSOCKET_BUFFER_SIZE) == null) {
+            System.setProperty(WEBSOCKET_BUFFER_SIZE, "2048");
+        }
         SpringApplication.run(HmsBackendApplication.class, args);
     }
 
@@ -0,0 +1,106 @@
+package com.medvault.hmsbackend.config;
+
+import com.medvault.hmsbackend.model.ChatMessage;
+import com.medvault.hmsbackend.model.Doctor;
+import com.medvault.hmsbackend.model.Patient;
+import com.medvault.hmsbackend.repository.DoctorRepository;
+import com.medvault.hmsbackend.repository.PatientRepository;
+import com.medvault.hmsbackend.service.JwtService;
+import com.medvault.hmsbackend.service.PrincipalCache;
+import com.medvault.hmsbackend.service.VerifiedToken;
+import io.jsonwebtoken.JwtException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
+import java.util.Optional;
+
+// Authenticates the chat handshake with the same JWT as the REST API. Browsers cannot set headers
+// on a WebSocket request, so they offer the token as a "bearer.<jwt>" subprotocol next to
+// PROTOCOL, which is the one the server selects. Never in the URL, which ends up in access logs.
+@Component
+public class ChatHandshakeInterceptor implements HandshakeInterceptor {
+
+    public static final String ROLE = "chat.role";
+    public static final String PARTY_ID = "chat.partyId";
+    public static final String EXPIRES_AT = "chat.expiresAt";
+
+    public static final String PROTOCOL = "medvault.chat";
+    private static final String TOKEN_PROTOCOL_PREFIX = "bearer.";
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private UserDetailsService userDetailsService;
+
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response, WebSocketHandler wsHandler,
+                                   Map<String, Object> attributes) {
+        String jwt = token(request);
+        if (jwt == null) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        VerifiedToken token;
+        UserDetails userDetails;
+        try {
+            token = jwtService.verify(jwt);
+            userDetails = principalCache.get(token.getSubject(), userDetailsService::loadUserByUsername);
+        } catch (JwtException | IllegalArgumentException | UsernameNotFoundException e) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        if (!jwtService.isTokenValid(token, userDetails)) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+
+        Optional<Doctor> doctor = doctorRepository.findByUserEmail(userDetails.getUsername());
+        Optional<Patient> patient = doctor.isPresent() ? Optional.empty() : patientRepository.findByUserEmail(userDetails.getUsername());
+        if (doctor.isEmpty() && patient.isEmpty()) {
+            response.setStatusCode(HttpStatus.FORBIDDEN);
+            return false;
+        }
+        attributes.put(ROLE, doctor.isPresent() ? ChatMessage.Sender.DOCTOR : ChatMessage.Sender.PATIENT);
+        attributes.put(PARTY_ID, doctor.isPresent() ? doctor.get().getId() : patient.get().getId());
+        attributes.put(EXPIRES_AT, token.getExpiration() != null ? token.getExpiration().getTime() : Long.MAX_VALUE);
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response, WebSocketHandler wsHandler,
+                               Exception exception) {
+    }
+
+    private static String token(ServerHttpRequest request) {
+        String authHeader = request.getHeaders().getFirst("Authorization");
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            return authHeader.substring(7);
+        }
+        for (String protocol : new WebSocketHttpHeaders(request.getHeaders()).getSecWebSocketProtocol()) {
+            if (protocol.startsWith(TOKEN_PROTOCOL_PREFIX)) {
+                return protocol.substring(TOKEN_PROTOCOL_PREFIX.length());
+            }
+        }
+        return null;
+    }
+}
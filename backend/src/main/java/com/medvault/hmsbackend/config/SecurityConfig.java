@@ -2,6 +2,7 @@ package com.medvault.hmsbackend.config;
 
 import com.medvault.hmsbackend.service.JwtService;
 import com.medvault.hmsbackend.service.UserDetailsServiceImpl;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -39,8 +40,13 @@ public class SecurityConfig {
         http.csrf(csrf -> csrf.disable())
                 .cors(cors -> {})
                 .authorizeHttpRequests(authz -> authz
+                        // Async dispatches (SSE, async login) were already authorized on the original request
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
                         .requestMatchers("/api/auth/**").permitAll()
+                        // The chat handshake checks the token itself (ChatHandshakeInterceptor)
+                        .requestMatchers("/ws/chat").permitAll()
+                        .requestMatchers("/api/doctors/me/**").authenticated()
                         .requestMatchers("/api/doctors").permitAll()
                         .requestMatchers("/api/doctors/**").permitAll()
                         .anyRequest().authenticated()
@@ -57,9 +63,12 @@ public class SecurityConfig {
         return new JwtAuthenticationFilter();
     }
 
+    @Value("${security.bcrypt.strength:10}")
+    private int bcryptStrength;
+
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BCryptPasswordEncoder(bcryptStrength);
     }
 
     @Bean
@@ -91,8 +100,9 @@ public class SecurityConfig {
                 .toList();
         configuration.setAllowedOrigins(origins);
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH"));
-        configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "X-Requested-With", "Accept", "Origin"));
-        configuration.setExposedHeaders(Arrays.asList("Authorization"));
+        configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "X-Requested-With", "Accept", "Origin",
+                "Last-Event-ID", "If-Match", "If-None-Match", "If-Modified-Since"));
+        configuration.setExposedHeaders(Arrays.asList("Authorization", "X-Next-Cursor", "ETag", "Last-Modified"));
         configuration.setAllowCredentials(true);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
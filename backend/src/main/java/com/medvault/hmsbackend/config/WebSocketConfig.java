@@ -0,0 +1,65 @@
+package com.medvault.hmsbackend.config;
+
+import com.medvault.hmsbackend.controller.ChatWebSocketHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+
+import java.util.Arrays;
+
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    @Autowired
+    private ChatWebSocketHandler chatWebSocketHandler;
+
+    @Autowired
+    private ChatHandshakeInterceptor chatHandshakeInterceptor;
+
+    @Value("${cors.allowed-origins:http://localhost:5173,http://localhost:3000,http://localhost}")
+    private String allowedOriginsProperty;
+
+    @Value("${chat.connection.text-buffer-chars:4096}")
+    private int textBufferChars;
+
+    @Value("${chat.connection.idle-timeout-ms:120000}")
+    private long idleTimeoutMs;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(chatWebSocketHandler, "/ws/chat")
+                .addInterceptors(chatHandshakeInterceptor)
+                .setAllowedOrigins(Arrays.stream(allowedOriginsProperty.split(",")).map(String::trim).toArray(String[]::new));
+    }
+
+    // Tomcat allocates the message buffers for every session up front, so they are kept just large
+    // enough for one chat request; the protocol has no binary frames
+    @Bean
+    public ServletServerContainerFactoryBean createWebSocketContainer() {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxTextMessageBufferSize(textBufferChars);
+        container.setMaxBinaryMessageBufferSize(128);
+        container.setMaxSessionIdleTimeout(idleTimeoutMs);
+        return container;
+    }
+
+    // Every open socket keeps its connector read and write buffers (8 KB each by default). Reads
+    // into a larger buffer bypass them, so request bodies are not slowed down. Static so the web
+    // server can be configured without creating the chat beans this class depends on.
+    @Bean
+    public static WebServerFactoryCustomizer<TomcatServletWebServerFactory> socketBufferCustomizer(
+            @Value("${chat.connection.socket-buffer-bytes:4096}") int socketBufferBytes) {
+        return factory -> factory.addConnectorCustomizers(connector -> {
+            connector.setProperty("socket.appReadBufSize", String.valueOf(socketBufferBytes));
+            connector.setProperty("socket.appWriteBufSize", String.valueOf(socketBufferBytes));
+        });
+    }
+}
@@ -1,19 +1,38 @@
 package com.medvault.hmsbackend.controller;
 
+import com.medvault.hmsbackend.dto.AppointmentView;
+import com.medvault.hmsbackend.dto.StatusUpdateItem;
+import com.medvault.hmsbackend.dto.StatusUpdateResult;
+import com.medvault.hmsbackend.event.AppointmentChangedEvent;
 import com.medvault.hmsbackend.model.Appointment;
 import com.medvault.hmsbackend.model.Patient;
 import com.medvault.hmsbackend.model.Doctor;
 import com.medvault.hmsbackend.repository.AppointmentRepository;
 import com.medvault.hmsbackend.repository.PatientRepository;
 import com.medvault.hmsbackend.repository.DoctorRepository;
+import com.medvault.hmsbackend.service.AppointmentEventStream;
+import com.medvault.hmsbackend.service.AppointmentService;
+import com.medvault.hmsbackend.service.AppointmentSlotIndex;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,6 +41,8 @@ import java.util.Optional;
 @CrossOrigin(origins = "*")
 public class AppointmentController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     @Autowired
     private AppointmentRepository appointmentRepository;
 
@@ -31,6 +52,30 @@ public class AppointmentController {
     @Autowired
     private DoctorRepository doctorRepository;
 
+    @Autowired
+    private AppointmentSlotIndex slotIndex;
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private AppointmentEventStream appointmentEventStream;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${appointments.page.default-size:100}")
+    private int defaultPageSize;
+
+    @Value("${appointments.page.max-size:500}")
+    private int maxPageSize;
+
+    @Value("${appointments.status-batch.max-size:500}")
+    private int maxStatusBatchSize;
+
+    @Value("${appointments.require-if-match:false}")
+    private boolean requireIfMatch;
+
     @PostMapping("/book")
     public ResponseEntity<?> bookAppointment(@RequestBody BookAppointmentRequest request) {
         try {
@@ -51,17 +96,38 @@ public class AppointmentController {
             }
             Doctor doctor = doctorOpt.get();
 
+            LocalDate date = LocalDate.parse(request.getDate());
+            LocalTime time = LocalTime.parse(request.getTime()).truncatedTo(ChronoUnit.MINUTES);
+
+            // Claim the slot in the in-memory index; the unique constraint is the final guard
+            if (!claimSlot(doctor.getId(), date, time)) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body("Time slot is already booked");
+            }
+
             // Create appointment
             Appointment appointment = new Appointment();
             appointment.setPatient(patient);
             appointment.setDoctor(doctor);
-            appointment.setDate(LocalDate.parse(request.getDate()));
-            appointment.setTime(LocalTime.parse(request.getTime()));
+            appointment.setDate(date);
+            appointment.setTime(time);
             appointment.setReason(request.getReason());
             appointment.setStatus(Appointment.Status.PENDING);
+            appointment.setSlotActive(Boolean.TRUE);
 
-            Appointment savedAppointment = appointmentRepository.save(appointment);
-            return ResponseEntity.ok(savedAppointment);
+            Appointment savedAppointment;
+            try {
+                savedAppointment = appointmentRepository.saveAndFlush(appointment);
+            } catch (DataIntegrityViolationException e) {
+                // Booked elsewhere (e.g. another node); keep the slot marked as taken
+                slotIndex.confirm(doctor.getId(), date, time);
+                return ResponseEntity.status(HttpStatus.CONFLICT).body("Time slot is already booked");
+            } catch (RuntimeException e) {
+                slotIndex.release(doctor.getId(), date, time);
+                throw e;
+            }
+            slotIndex.confirm(doctor.getId(), date, time);
+            eventPublisher.publishEvent(AppointmentChangedEvent.created(savedAppointment));
+            return ResponseEntity.ok(AppointmentView.from(savedAppointment));
 
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error booking appointment: " + e.getMessage());
@@ -69,7 +135,11 @@ public class AppointmentController {
     }
 
     @GetMapping("/patient")
-    public ResponseEntity<?> getPatientAppointments() {
+    public ResponseEntity<?> getPatientAppointments(@RequestParam(required = false) String from,
+                                                    @RequestParam(required = false) String to,
+                                                    @RequestParam(required = false) String status,
+                                                    @RequestParam(required = false) String cursor,
+                                                    @RequestParam(required = false) Integer limit) {
         try {
             // Get current user (patient)
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -81,8 +151,12 @@ public class AppointmentController {
             }
             Patient patient = patientOpt.get();
 
-            List<Appointment> appointments = appointmentRepository.findByPatientId(patient.getId());
-            return ResponseEntity.ok(appointments);
+            PageCursor after = PageCursor.decode(cursor);
+            int pageSize = pageSize(limit);
+            List<AppointmentView> appointments = appointmentRepository.findPatientPage(
+                    patient.getId(), parseDate(from), parseDate(to), parseStatus(status),
+                    after.date, after.time, after.id, PageRequest.of(0, pageSize + 1));
+            return page(appointments, pageSize);
 
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error fetching appointments: " + e.getMessage());
@@ -90,7 +164,11 @@ public class AppointmentController {
     }
 
     @GetMapping("/doctor")
-    public ResponseEntity<?> getDoctorAppointments() {
+    public ResponseEntity<?> getDoctorAppointments(@RequestParam(required = false) String from,
+                                                   @RequestParam(required = false) String to,
+                                                   @RequestParam(required = false) String status,
+                                                   @RequestParam(required = false) String cursor,
+                                                   @RequestParam(required = false) Integer limit) {
         try {
             // Get current user (doctor)
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -102,16 +180,41 @@ public class AppointmentController {
             }
             Doctor doctor = doctorOpt.get();
 
-            List<Appointment> appointments = appointmentRepository.findByDoctorId(doctor.getId());
-            return ResponseEntity.ok(appointments);
+            PageCursor after = PageCursor.decode(cursor);
+            int pageSize = pageSize(limit);
+            List<AppointmentView> appointments = appointmentRepository.findDoctorPage(
+                    doctor.getId(), parseDate(from), parseDate(to), parseStatus(status),
+                    after.date, after.time, after.id, PageRequest.of(0, pageSize + 1));
+            return page(appointments, pageSize);
 
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error fetching appointments: " + e.getMessage());
         }
     }
 
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getAppointment(@PathVariable Long id,
+                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            Optional<AppointmentView> viewOpt = appointmentRepository.findViewById(id);
+            if (!viewOpt.isPresent() || !isParticipant(viewOpt.get())) {
+                return ResponseEntity.notFound().build();
+            }
+
+            AppointmentView view = viewOpt.get();
+            if (ifNoneMatch != null && etagMatches(ifNoneMatch, view.getETag(), true)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(view.getETag()).build();
+            }
+            return ResponseEntity.ok().eTag(view.getETag()).body(view);
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error fetching appointment: " + e.getMessage());
+        }
+    }
+
     @PutMapping("/{id}/status")
-    public ResponseEntity<?> updateAppointmentStatus(@PathVariable Long id, @RequestBody UpdateStatusRequest request) {
+    public ResponseEntity<?> updateAppointmentStatus(@PathVariable Long id, @RequestBody UpdateStatusRequest request,
+                                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
             Optional<Appointment> appointmentOpt = appointmentRepository.findById(id);
             if (!appointmentOpt.isPresent()) {
@@ -119,20 +222,228 @@ public class AppointmentController {
             }
 
             Appointment appointment = appointmentOpt.get();
-            appointment.setStatus(Appointment.Status.valueOf(request.getStatus().toUpperCase()));
+            if (ifMatch == null && requireIfMatch) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_REQUIRED).body("If-Match header is required");
+            }
+            String currentEtag = AppointmentView.etagOf(appointment.getId(), appointment.getVersion());
+            if (ifMatch != null && !etagMatches(ifMatch, currentEtag, false)) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).eTag(currentEtag)
+                        .body("Appointment was modified by someone else");
+            }
+
+            Appointment.Status previousStatus = appointment.getStatus();
+            Appointment.Status newStatus = Appointment.Status.valueOf(request.getStatus().toUpperCase());
+            Long doctorId = appointment.getDoctor().getId();
+
+            // Reactivating a cancelled appointment has to win its slot back
+            boolean reclaiming = previousStatus == Appointment.Status.CANCELLED && newStatus != Appointment.Status.CANCELLED;
+            if (reclaiming && !claimSlot(doctorId, appointment.getDate(), appointment.getTime())) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body("Time slot is already booked");
+            }
+
+            appointment.setStatus(newStatus);
+            appointment.setSlotActive(newStatus == Appointment.Status.CANCELLED ? null : Boolean.TRUE);
 
             if (request.getNotes() != null) {
                 appointment.setNotes(request.getNotes());
             }
 
-            Appointment updatedAppointment = appointmentRepository.save(appointment);
-            return ResponseEntity.ok(updatedAppointment);
+            Appointment updatedAppointment;
+            try {
+                updatedAppointment = appointmentRepository.saveAndFlush(appointment);
+            } catch (DataIntegrityViolationException e) {
+                if (reclaiming) {
+                    slotIndex.confirm(doctorId, appointment.getDate(), appointment.getTime());
+                }
+                return ResponseEntity.status(HttpStatus.CONFLICT).body("Time slot is already booked");
+            } catch (ObjectOptimisticLockingFailureException e) {
+                // Lost a race with a concurrent update between our read and write
+                if (reclaiming) {
+                    slotIndex.release(doctorId, appointment.getDate(), appointment.getTime());
+                }
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body("Appointment was modified by someone else");
+            } catch (RuntimeException e) {
+                if (reclaiming) {
+                    slotIndex.release(doctorId, appointment.getDate(), appointment.getTime());
+                }
+                throw e;
+            }
+
+            if (reclaiming) {
+                slotIndex.confirm(doctorId, appointment.getDate(), appointment.getTime());
+            }
+            if (previousStatus != Appointment.Status.CANCELLED && newStatus == Appointment.Status.CANCELLED) {
+                slotIndex.release(doctorId, appointment.getDate(), appointment.getTime());
+            }
+            eventPublisher.publishEvent(AppointmentChangedEvent.statusChanged(updatedAppointment, previousStatus));
+            // Re-read as a projection rather than initializing the lazy patient and doctor
+            AppointmentView view = appointmentRepository.findViewById(updatedAppointment.getId()).orElseThrow();
+            return ResponseEntity.ok().eTag(view.getETag()).body(view);
 
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error updating appointment: " + e.getMessage());
         }
     }
 
+    // Spring only streams the emitter when the declared body type is SseEmitter, so errors are status-only
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamAppointmentEvents(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        try {
+            // Events are scoped to the current user's own appointments
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            String email = authentication.getName();
+
+            // X-Accel-Buffering stops the nginx tier from buffering the stream
+            Optional<Doctor> doctorOpt = doctorRepository.findByUserEmail(email);
+            if (doctorOpt.isPresent()) {
+                return ResponseEntity.ok().header("X-Accel-Buffering", "no")
+                        .body(appointmentEventStream.subscribeDoctor(doctorOpt.get().getId(), lastEventId));
+            }
+            Optional<Patient> patientOpt = patientRepository.findByUserEmail(email);
+            if (patientOpt.isPresent()) {
+                return ResponseEntity.ok().header("X-Accel-Buffering", "no")
+                        .body(appointmentEventStream.subscribePatient(patientOpt.get().getId(), lastEventId));
+            }
+            return ResponseEntity.badRequest().build();
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PutMapping("/status")
+    public ResponseEntity<?> updateAppointmentStatuses(@RequestBody List<StatusUpdateItem> items) {
+        try {
+            // Get current user (doctor)
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            String email = authentication.getName();
+
+            Optional<Doctor> doctorOpt = doctorRepository.findByUserEmail(email);
+            if (!doctorOpt.isPresent()) {
+                return ResponseEntity.badRequest().body("Doctor not found");
+            }
+
+            if (items == null || items.isEmpty()) {
+                return ResponseEntity.badRequest().body("No appointments to update");
+            }
+            if (items.size() > maxStatusBatchSize) {
+                return ResponseEntity.badRequest().body("At most " + maxStatusBatchSize + " appointments can be updated at once");
+            }
+
+            List<StatusUpdateResult> results = appointmentService.applyStatusUpdates(doctorOpt.get().getId(), items);
+            return ResponseEntity.ok(results);
+
+        } catch (DataIntegrityViolationException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Time slot is already booked");
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Some appointments were modified concurrently, please retry");
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error updating appointments: " + e.getMessage());
+        }
+    }
+
+    private boolean claimSlot(Long doctorId, LocalDate date, LocalTime time) {
+        if (slotIndex.tryClaim(doctorId, date, time)) {
+            return true;
+        }
+        // The index may be stale if the slot was freed on another node, so re-check the day once
+        slotIndex.refresh(doctorId, date);
+        return slotIndex.tryClaim(doctorId, date, time);
+    }
+
+    private boolean isParticipant(AppointmentView view) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String email = authentication.getName();
+
+        Optional<Doctor> doctorOpt = doctorRepository.findByUserEmail(email);
+        if (doctorOpt.isPresent()) {
+            return doctorOpt.get().getId().equals(view.getDoctor().getId());
+        }
+        return patientRepository.findByUserEmail(email)
+                .map(patient -> patient.getId().equals(view.getPatient().getId()))
+                .orElse(false);
+    }
+
+    // If-None-Match uses weak comparison, If-Match strong comparison (RFC 9110 section 13.1)
+    private static boolean etagMatches(String header, String etag, boolean weak) {
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                if (!weak) {
+                    continue;
+                }
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int pageSize(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return defaultPageSize;
+        }
+        return Math.min(limit, maxPageSize);
+    }
+
+    // The page is returned as a plain list; the cursor for the next page travels in a header
+    private ResponseEntity<?> page(List<AppointmentView> rows, int pageSize) {
+        if (rows.size() <= pageSize) {
+            return ResponseEntity.ok(rows);
+        }
+        List<AppointmentView> page = rows.subList(0, pageSize);
+        AppointmentView last = page.get(pageSize - 1);
+        return ResponseEntity.ok()
+                .header(NEXT_CURSOR_HEADER, PageCursor.encode(last.getDate(), last.getTime(), last.getId()))
+                .body(page);
+    }
+
+    private static LocalDate parseDate(String value) {
+        return value == null || value.isEmpty() ? null : LocalDate.parse(value);
+    }
+
+    private static Appointment.Status parseStatus(String value) {
+        return value == null || value.isEmpty() ? null : Appointment.Status.valueOf(value.toUpperCase());
+    }
+
+    // Opaque keyset cursor: base64url of "date|time|id" for the last row of the previous page
+    static class PageCursor {
+        private static final PageCursor NONE = new PageCursor(null, null, null);
+
+        final LocalDate date;
+        final LocalTime time;
+        final Long id;
+
+        PageCursor(LocalDate date, LocalTime time, Long id) {
+            this.date = date;
+            this.time = time;
+            this.id = id;
+        }
+
+        static String encode(LocalDate date, LocalTime time, Long id) {
+            String raw = date + "|" + time + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static PageCursor decode(String cursor) {
+            if (cursor == null || cursor.isEmpty()) {
+                return NONE;
+            }
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new PageCursor(LocalDate.parse(parts[0]), LocalTime.parse(parts[1]), Long.parseLong(parts[2]));
+        }
+    }
+
     // Request DTOs
     public static class BookAppointmentRequest {
         private Long doctorId;
@@ -1,26 +1,33 @@
 package com.medvault.hmsbackend.controller;
 
+import com.medvault.hmsbackend.event.DoctorChangedEvent;
 import com.medvault.hmsbackend.model.User;
 import com.medvault.hmsbackend.model.Patient;
 import com.medvault.hmsbackend.model.Doctor;
 import com.medvault.hmsbackend.repository.PatientRepository;
 import com.medvault.hmsbackend.repository.DoctorRepository;
 import com.medvault.hmsbackend.service.JwtService;
+import com.medvault.hmsbackend.service.PasswordHashingService;
 import com.medvault.hmsbackend.service.UserService;
+import com.medvault.hmsbackend.service.VerifiedToken;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -42,54 +49,85 @@ public class AuthController {
     @Autowired
     private DoctorRepository doctorRepository;
 
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${security.password-hashing.retry-after-seconds:1}")
+    private long loginRetryAfterSeconds;
+
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody LoginRequest loginRequest) {
+    public CompletableFuture<ResponseEntity<?>> login(@RequestBody LoginRequest loginRequest) {
         try {
             Optional<User> userOpt = userService.findByEmail(loginRequest.getEmail());
 
             if (userOpt.isEmpty()) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "User not found"));
+                return respond(ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "User not found")));
             }
 
             User user = userOpt.get();
 
-            // Check password using BCrypt
-            BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
-            if (!passwordEncoder.matches(loginRequest.getPassword(), user.getPassword())) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "Invalid credentials"));
-            }
-            
-            // Validate role if provided
-            if (loginRequest.getRole() != null && !loginRequest.getRole().isEmpty()) {
-                if (!user.getRole().equalsIgnoreCase(loginRequest.getRole())) {
-                    return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "Invalid role for this user"));
-                }
+            // Check password on the bounded hashing pool so BCrypt never runs on a request thread
+            return passwordHashingService.matches(loginRequest.getPassword(), user.getPassword())
+                    .<ResponseEntity<?>>thenApply(matches -> matches
+                            ? completeLogin(user, loginRequest)
+                            : ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "Invalid credentials")))
+                    .exceptionally(e -> {
+                        Throwable cause = e.getCause() != null ? e.getCause() : e;
+                        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", String.valueOf(cause.getMessage())));
+                    });
+        } catch (RejectedExecutionException e) {
+            return respond(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(loginRetryAfterSeconds))
+                    .body(Map.of("message", "Too many login attempts, please retry shortly")));
+        } catch (Exception e) {
+            return respond(ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", e.getMessage())));
+        }
+    }
+
+    private ResponseEntity<?> completeLogin(User user, LoginRequest loginRequest) {
+        // Validate role if provided
+        if (loginRequest.getRole() != null && !loginRequest.getRole().isEmpty()) {
+            if (!user.getRole().equalsIgnoreCase(loginRequest.getRole())) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "Invalid role for this user"));
             }
+        }
 
-            // Create UserDetails for JWT
-            UserDetails userDetails = new org.springframework.security.core.userdetails.User(
-                    user.getEmail(),
-                    user.getPassword(),
-                    new ArrayList<>()
-            );
+        // Create UserDetails for JWT
+        UserDetails userDetails = new org.springframework.security.core.userdetails.User(
+                user.getEmail(),
+                user.getPassword(),
+                new ArrayList<>()
+        );
 
-            String token = jwtService.generateToken(userDetails);
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(JwtService.CLAIM_USER_ID, user.getId());
+        claims.put(JwtService.CLAIM_NAME, user.getName());
+        claims.put(JwtService.CLAIM_ROLE, user.getRole().toLowerCase());
 
-            // Create user response with lowercase role
-            Map<String, Object> userResponse = new HashMap<>();
-            userResponse.put("id", user.getId());
-            userResponse.put("email", user.getEmail());
-            userResponse.put("name", user.getName());
-            userResponse.put("role", user.getRole().toLowerCase());
+        String token = jwtService.generateToken(claims, userDetails);
 
-            Map<String, Object> response = new HashMap<>();
-            response.put("token", token);
-            response.put("user", userResponse);
+        Map<String, Object> response = new HashMap<>();
+        response.put("token", token);
+        response.put("user", userSummary(user.getId(), user.getEmail(), user.getName(), user.getRole()));
 
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", e.getMessage()));
-        }
+        return ResponseEntity.ok(response);
+    }
+
+    // Create user response with lowercase role
+    private static Map<String, Object> userSummary(Long id, String email, String name, String role) {
+        Map<String, Object> userResponse = new HashMap<>();
+        userResponse.put("id", id);
+        userResponse.put("email", email);
+        userResponse.put("name", name);
+        userResponse.put("role", role != null ? role.toLowerCase() : null);
+        return userResponse;
+    }
+
+    private static CompletableFuture<ResponseEntity<?>> respond(ResponseEntity<?> response) {
+        return CompletableFuture.completedFuture(response);
     }
 
     @PostMapping("/register")
@@ -144,7 +182,8 @@ public class AuthController {
                     bio = "License Number: " + registerRequest.getLicenseNumber();
                 }
                 doctor.setBio(bio);
-                doctorRepository.save(doctor);
+                Doctor savedDoctor = doctorRepository.save(doctor);
+                eventPublisher.publishEvent(new DoctorChangedEvent(savedDoctor.getId()));
             }
 
             return ResponseEntity.ok(savedUser);
@@ -158,12 +197,19 @@ public class AuthController {
         try {
             // Extract token from "Bearer <token>"
             String jwt = token.substring(7);
-            String email = jwtService.extractUsername(jwt);
+            VerifiedToken verified = jwtService.verify(jwt);
+
+            // Tokens carrying identity claims are answered from the claims alone
+            if (verified.getUserId() != null && verified.getRole() != null) {
+                return ResponseEntity.ok(Map.of("valid", true, "user", userSummary(
+                        verified.getUserId(), verified.getSubject(), verified.getName(), verified.getRole())));
+            }
 
-            User user = userService.findByEmail(email).orElse(null);
-            if (user != null && jwtService.isTokenValid(jwt, new org.springframework.security.core.userdetails.User(
-                    user.getEmail(), user.getPassword(), new java.util.ArrayList<>()))) {
-                return ResponseEntity.ok(Map.of("valid", true, "user", user));
+            // Tokens issued before the claims were embedded fall back to a user lookup
+            User user = userService.findByEmail(verified.getSubject()).orElse(null);
+            if (user != null) {
+                return ResponseEntity.ok(Map.of("valid", true, "user", userSummary(
+                        user.getId(), user.getEmail(), user.getName(), user.getRole())));
             }
             return ResponseEntity.status(401).body(Map.of("valid", false));
         } catch (Exception e) {
@@ -0,0 +1,124 @@
+package com.medvault.hmsbackend.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medvault.hmsbackend.config.ChatHandshakeInterceptor;
+import com.medvault.hmsbackend.model.ChatMessage;
+import com.medvault.hmsbackend.service.ChatService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// /ws/chat: one JSON object per text frame.
+//   {"type":"send", "doctorId"|"patientId": peer, "body": "...", "clientId": "..."}
+//   {"type":"history", "doctorId"|"patientId": peer, "before": id, "size": n}
+// Patients name the doctor and doctors name the patient. Messages arrive as {"type":"message"},
+// pages as {"type":"history"} and failures as {"type":"error"} carrying the request's clientId.
+@Component
+public class ChatWebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable {
+
+    private static final String CONNECTION = "chat.connection";
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Browsers drop the connection unless the server selects one of the offered subprotocols
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(ChatHandshakeInterceptor.PROTOCOL);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        Map<String, Object> attributes = session.getAttributes();
+        ChatService.Connection connection = chatService.register(session,
+                (ChatMessage.Sender) attributes.get(ChatHandshakeInterceptor.ROLE),
+                (Long) attributes.get(ChatHandshakeInterceptor.PARTY_ID),
+                (Long) attributes.get(ChatHandshakeInterceptor.EXPIRES_AT));
+        attributes.put(CONNECTION, connection);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        ChatService.Connection connection = (ChatService.Connection) session.getAttributes().get(CONNECTION);
+        if (connection == null) {
+            return;
+        }
+        if (connection.isExpired(System.currentTimeMillis())) {
+            chatService.close(connection, CloseStatus.POLICY_VIOLATION.withReason("Token expired"));
+            return;
+        }
+
+        String clientId = null;
+        try {
+            JsonNode request = objectMapper.readTree(message.getPayload());
+            clientId = request.hasNonNull("clientId") ? request.get("clientId").asText() : null;
+            // The connection's own side is implied, so only the peer's id is read
+            JsonNode peer = request.get(isDoctor(session) ? "patientId" : "doctorId");
+            if (peer == null || !peer.canConvertToLong()) {
+                throw new IllegalArgumentException(isDoctor(session) ? "patientId is required" : "doctorId is required");
+            }
+            String type = request.path("type").asText();
+            if ("send".equals(type)) {
+                chatService.send(connection, peer.asLong(), request.path("body").asText(null), clientId);
+            } else if ("history".equals(type)) {
+                Long before = request.hasNonNull("before") ? request.get("before").asLong() : null;
+                Integer size = request.hasNonNull("size") ? request.get("size").asInt() : null;
+                chatService.reply(connection, chatService.history(connection, peer.asLong(), before, size));
+            } else {
+                throw new IllegalArgumentException("Unknown request type: " + type);
+            }
+
+        } catch (JsonProcessingException e) {
+            chatService.reply(connection, error(null, "Malformed request"));
+        } catch (AccessDeniedException e) {
+            chatService.reply(connection, error(clientId, e.getMessage()));
+        } catch (Exception e) {
+            chatService.reply(connection, error(clientId, "Error handling request: " + e.getMessage()));
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        release(session);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        release(session);
+    }
+
+    private void release(WebSocketSession session) {
+        ChatService.Connection connection = (ChatService.Connection) session.getAttributes().get(CONNECTION);
+        if (connection != null) {
+            chatService.unregister(connection);
+        }
+    }
+
+    private static boolean isDoctor(WebSocketSession session) {
+        return session.getAttributes().get(ChatHandshakeInterceptor.ROLE) == ChatMessage.Sender.DOCTOR;
+    }
+
+    private static Map<String, Object> error(String clientId, String message) {
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("type", "error");
+        if (clientId != null) {
+            frame.put("clientId", clientId);
+        }
+        frame.put("message", message);
+        return frame;
+    }
+}
@@ -1,39 +1,209 @@
 package com.medvault.hmsbackend.controller;
 
+import com.medvault.hmsbackend.dto.DoctorSchedule;
+import com.medvault.hmsbackend.event.DoctorChangedEvent;
 import com.medvault.hmsbackend.model.Doctor;
 import com.medvault.hmsbackend.repository.DoctorRepository;
+import com.medvault.hmsbackend.service.AvailableSlotFinder;
+import com.medvault.hmsbackend.service.DoctorDirectoryCache;
+import com.medvault.hmsbackend.service.DoctorSearchIndex;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
-import java.util.List;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/doctors")
 @CrossOrigin(origins = "*")
 public class DoctorController {
 
+    @Autowired
+    private DoctorDirectoryCache doctorDirectoryCache;
+
+    @Autowired
+    private DoctorSearchIndex doctorSearchIndex;
+
+    @Autowired
+    private AvailableSlotFinder availableSlotFinder;
+
     @Autowired
     private DoctorRepository doctorRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${doctors.http-cache.max-age-seconds:60}")
+    private long maxAgeSeconds;
+
     @GetMapping
-    public ResponseEntity<?> getAllDoctors() {
+    public ResponseEntity<?> getAllDoctors(WebRequest request) {
         try {
-            List<Doctor> doctors = doctorRepository.findAll();
-            return ResponseEntity.ok(doctors);
+            return respond(doctorDirectoryCache.getDirectory(), request);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error fetching doctors: " + e.getMessage());
         }
     }
 
+    @GetMapping("/search")
+    public ResponseEntity<?> searchDoctors(@RequestParam(required = false) String q,
+                                           @RequestParam(required = false) String specialization,
+                                           @RequestParam(required = false) String department,
+                                           @RequestParam(required = false) String sort,
+                                           @RequestParam(required = false) Integer limit) {
+        try {
+            boolean sortByRating = "rating".equalsIgnoreCase(sort);
+            return ResponseEntity.ok(doctorSearchIndex.search(q, specialization, department, sortByRating, searchLimit(limit)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error searching doctors: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/autocomplete")
+    public ResponseEntity<?> autocompleteDoctors(@RequestParam String prefix,
+                                                 @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(doctorSearchIndex.autocomplete(prefix, limit == null || limit <= 0 ? 10 : Math.min(limit, 50)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error completing search: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/available-slots")
+    public ResponseEntity<?> getAvailableSlots(@RequestParam String specialization,
+                                               @RequestParam(required = false) String after,
+                                               @RequestParam(required = false) Integer limit) {
+        try {
+            LocalDateTime from = after == null || after.isBlank() ? null : LocalDateTime.parse(after);
+            int count = limit == null || limit <= 0 ? 5 : Math.min(limit, 50);
+            return ResponseEntity.ok(availableSlotFinder.findFirstAvailable(specialization, from, count));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error finding available slots: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/me/schedule")
+    public ResponseEntity<?> getMySchedule() {
+        try {
+            Optional<Doctor> doctorOpt = currentDoctor();
+            if (!doctorOpt.isPresent()) {
+                return ResponseEntity.badRequest().body("Doctor not found");
+            }
+            return ResponseEntity.ok(toSchedule(doctorOpt.get()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error fetching schedule: " + e.getMessage());
+        }
+    }
+
+    @PutMapping("/me/schedule")
+    public ResponseEntity<?> updateMySchedule(@RequestBody ScheduleRequest request) {
+        try {
+            Optional<Doctor> doctorOpt = currentDoctor();
+            if (!doctorOpt.isPresent()) {
+                return ResponseEntity.badRequest().body("Doctor not found");
+            }
+            Doctor doctor = doctorOpt.get();
+
+            LocalTime workStart = request.getWorkStart() != null ? LocalTime.parse(request.getWorkStart()) : doctor.getWorkStart();
+            LocalTime workEnd = request.getWorkEnd() != null ? LocalTime.parse(request.getWorkEnd()) : doctor.getWorkEnd();
+            Integer slotMinutes = request.getSlotMinutes() != null ? request.getSlotMinutes() : doctor.getSlotMinutes();
+            String workDays = request.getWorkDays() != null
+                    ? DoctorSchedule.formatDays(DoctorSchedule.parseDays(request.getWorkDays()))
+                    : doctor.getWorkDays();
+
+            if (slotMinutes != null && (slotMinutes < 5 || slotMinutes > 240)) {
+                return ResponseEntity.badRequest().body("Slot length must be between 5 and 240 minutes");
+            }
+            DoctorSchedule schedule = new DoctorSchedule(doctor.getId(), doctor.getName(), doctor.getSpecialization(),
+                    workStart, workEnd, slotMinutes, workDays);
+            if (schedule.getStartMinute() + schedule.getSlotMinutes() > schedule.getEndMinute()) {
+                return ResponseEntity.badRequest().body("Working hours must fit at least one slot");
+            }
+
+            doctor.setWorkStart(workStart);
+            doctor.setWorkEnd(workEnd);
+            doctor.setSlotMinutes(slotMinutes);
+            doctor.setWorkDays(workDays);
+            doctorRepository.save(doctor);
+            eventPublisher.publishEvent(new DoctorChangedEvent(doctor.getId()));
+            return ResponseEntity.ok(schedule);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error updating schedule: " + e.getMessage());
+        }
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<?> getDoctorById(@PathVariable Long id) {
+    public ResponseEntity<?> getDoctorById(@PathVariable Long id, WebRequest request) {
         try {
-            return doctorRepository.findById(id)
-                    .map(doctor -> ResponseEntity.ok(doctor))
+            return doctorDirectoryCache.getDoctor(id)
+                    .<ResponseEntity<?>>map(snapshot -> respond(snapshot, request))
                     .orElse(ResponseEntity.notFound().build());
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error fetching doctor: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    private Optional<Doctor> currentDoctor() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return doctorRepository.findByUserEmail(authentication.getName());
+    }
+
+    private static DoctorSchedule toSchedule(Doctor doctor) {
+        return new DoctorSchedule(doctor.getId(), doctor.getName(), doctor.getSpecialization(),
+                doctor.getWorkStart(), doctor.getWorkEnd(), doctor.getSlotMinutes(), doctor.getWorkDays());
+    }
+
+    private int searchLimit(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return 20;
+        }
+        return Math.min(limit, 100);
+    }
+
+    // Serves the pre-serialized snapshot, or a bodiless 304 when the client's copy is current
+    private ResponseEntity<?> respond(DoctorDirectoryCache.Snapshot snapshot, WebRequest request) {
+        CacheControl cacheControl = CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS).cachePublic();
+        if (request.checkNotModified(snapshot.getEtag(), snapshot.getLastModified())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(snapshot.getEtag())
+                    .lastModified(snapshot.getLastModified())
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(snapshot.getEtag())
+                .lastModified(snapshot.getLastModified())
+                .cacheControl(cacheControl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(snapshot.getBody());
+    }
+
+    // Request DTOs
+    public static class ScheduleRequest {
+        private String workStart;
+        private String workEnd;
+        private Integer slotMinutes;
+        private String workDays;
+
+        // getters and setters
+        public String getWorkStart() { return workStart; }
+        public void setWorkStart(String workStart) { this.workStart = workStart; }
+        public String getWorkEnd() { return workEnd; }
+        public void setWorkEnd(String workEnd) { this.workEnd = workEnd; }
+        public Integer getSlotMinutes() { return slotMinutes; }
+        public void setSlotMinutes(Integer slotMinutes) { this.slotMinutes = slotMinutes; }
+        public String getWorkDays() { return workDays; }
+        public void setWorkDays(String workDays) { this.workDays = workDays; }
+    }
+}
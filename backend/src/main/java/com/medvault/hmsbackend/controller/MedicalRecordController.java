@@ -0,0 +1,759 @@
+package com.medvault.hmsbackend.controller;
+
+import com.medvault.hmsbackend.dto.MedicalRecordView;
+import com.medvault.hmsbackend.model.Doctor;
+import com.medvault.hmsbackend.model.FileAttachment;
+import com.medvault.hmsbackend.model.MedicalRecord;
+import com.medvault.hmsbackend.model.Patient;
+import com.medvault.hmsbackend.model.Prescription;
+import com.medvault.hmsbackend.repository.AppointmentRepository;
+import com.medvault.hmsbackend.repository.DoctorRepository;
+import com.medvault.hmsbackend.repository.MedicalRecordRepository;
+import com.medvault.hmsbackend.repository.PatientRepository;
+import com.medvault.hmsbackend.service.BlobStore;
+import com.medvault.hmsbackend.service.MedicalRecordSearchIndex;
+import com.medvault.hmsbackend.service.MedicalRecordService;
+import com.medvault.hmsbackend.service.UploadSessionStore;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@RestController
+@RequestMapping("/api/medical-records")
+@CrossOrigin(origins = "*")
+public class MedicalRecordController {
+
+    @Autowired
+    private MedicalRecordRepository medicalRecordRepository;
+
+    @Autowired
+    private MedicalRecordService medicalRecordService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private UploadSessionStore uploadSessionStore;
+
+    @Autowired
+    private MedicalRecordSearchIndex searchIndex;
+
+    @Value("${medical-records.page.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${medical-records.page.max-size:200}")
+    private int maxPageSize;
+
+    @GetMapping("/patient")
+    public ResponseEntity<?> getPatientRecords(@RequestParam(required = false) String from,
+                                               @RequestParam(required = false) String to,
+                                               @RequestParam(required = false) String type,
+                                               @RequestParam(required = false) String cursor,
+                                               @RequestParam(required = false) Integer limit) {
+        try {
+            // Get current user (patient)
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            String email = authentication.getName();
+
+            Optional<Patient> patientOpt = patientRepository.findByUserEmail(email);
+            if (!patientOpt.isPresent()) {
+                return ResponseEntity.badRequest().body("Patient not found");
+            }
+
+            RecordCursor after = RecordCursor.decode(cursor);
+            int pageSize = pageSize(limit);
+            List<MedicalRecordView> records = medicalRecordRepository.findPatientTimeline(
+                    patientOpt.get().getId(), parseDate(from), parseDate(to), emptyToNull(type),
+                    after.date, after.id, PageRequest.of(0, pageSize + 1));
+            return page(records, pageSize);
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error fetching medical records: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/doctor")
+    public ResponseEntity<?> getDoctorRecords(@RequestParam(required = false) Long patientId,
+                                              @RequestParam(required = false) String from,
+                                              @RequestParam(required = false) String to,
+                                              @RequestParam(required = false) String type,
+                                              @RequestParam(required = false) String cursor,
+                                              @RequestParam(required = false) Integer limit) {
+        try {
+            // Get current user (doctor)
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            String email = authentication.getName();
+
+            Optional<Doctor> doctorOpt = doctorRepository.findByUserEmail(email);
+            if (!doctorOpt.isPresent()) {
+                return ResponseEntity.badRequest().body("Doctor not found");
+            }
+
+            RecordCursor after = RecordCursor.decode(cursor);
+            int pageSize = pageSize(limit);
+            List<MedicalRecordView> records = medicalRecordRepository.findDoctorTimeline(
+                    doctorOpt.get().getId(), patientId, parseDate(from), parseDate(to), emptyToNull(type),
+                    after.date, after.id, PageRequest.of(0, pageSize + 1));
+            return page(records, pageSize);
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error fetching medical records: " + e.getMessage());
+        }
+    }
+
+    // Ranked full-text search; patients search their own records, doctors the records they
+    // wrote, optionally narrowed to one patient
+    @GetMapping("/search")
+    public ResponseEntity<?> searchRecords(@RequestParam String q,
+                                           @RequestParam(required = false) Long patientId,
+                                           @RequestParam(required = false) Integer page,
+                                           @RequestParam(required = false) Integer limit) {
+        try {
+            String email = currentEmail();
+            Long doctorScope = null;
+            Long patientScope = patientId;
+            Optional<Doctor> doctorOpt = doctorRepository.findByUserEmail(email);
+            if (doctorOpt.isPresent()) {
+                doctorScope = doctorOpt.get().getId();
+            } else {
+                Optional<Patient> patientOpt = patientRepository.findByUserEmail(email);
+                if (!patientOpt.isPresent()) {
+                    return ResponseEntity.badRequest().body("Patient not found");
+                }
+                patientScope = patientOpt.get().getId();
+            }
+
+            int pageSize = pageSize(limit);
+            int pageNumber = page == null || page < 0 ? 0 : page;
+            MedicalRecordSearchIndex.Result result = searchIndex.search(q, patientScope, doctorScope,
+                    pageNumber * pageSize, pageSize);
+
+            List<Long> ids = new ArrayList<>();
+            for (MedicalRecordSearchIndex.Hit hit : result.getHits()) {
+                ids.add(hit.getRecordId());
+            }
+            Map<Long, MedicalRecordView> views = new HashMap<>();
+            if (!ids.isEmpty()) {
+                for (MedicalRecordView view : medicalRecordRepository.findViewsByIds(ids)) {
+                    views.put(view.getId(), view);
+                }
+            }
+            List<MedicalRecordView> records = new ArrayList<>();
+            List<Map<String, Object>> hits = new ArrayList<>();
+            for (MedicalRecordSearchIndex.Hit hit : result.getHits()) {
+                MedicalRecordView view = views.get(hit.getRecordId());
+                if (view == null) {
+                    continue;
+                }
+                records.add(view);
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("score", hit.getScore());
+                item.put("record", view);
+                hits.add(item);
+            }
+            medicalRecordService.attachChildren(records);
+
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("total", result.getTotal());
+            response.put("page", pageNumber);
+            response.put("hits", hits);
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error searching medical records: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getRecord(@PathVariable Long id) {
+        try {
+            Optional<MedicalRecordView> viewOpt = medicalRecordRepository.findViewById(id);
+            if (!viewOpt.isPresent() || !canRead(viewOpt.get())) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(medicalRecordService.attachChildren(List.of(viewOpt.get())).get(0));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error fetching medical record: " + e.getMessage());
+        }
+    }
+
+    @PostMapping
+    public ResponseEntity<?> createRecord(@RequestBody CreateRecordRequest request) {
+        try {
+            // Get current user (doctor)
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            String email = authentication.getName();
+
+            Optional<Doctor> doctorOpt = doctorRepository.findByUserEmail(email);
+            if (!doctorOpt.isPresent()) {
+                return ResponseEntity.badRequest().body("Doctor not found");
+            }
+
+            if (request.getPatientId() == null) {
+                return ResponseEntity.badRequest().body("Patient is required");
+            }
+            Optional<Patient> patientOpt = patientRepository.findById(request.getPatientId());
+            if (!patientOpt.isPresent()) {
+                return ResponseEntity.badRequest().body("Patient not found");
+            }
+            // Same care relationship as the doctor's history export
+            Long doctorId = doctorOpt.get().getId();
+            if (!appointmentRepository.existsByPatientIdAndDoctorId(request.getPatientId(), doctorId)
+                    && !medicalRecordRepository.existsByPatientIdAndDoctorId(request.getPatientId(), doctorId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Records can only be written for your own patients");
+            }
+            if (isBlank(request.getType()) || isBlank(request.getTitle())) {
+                return ResponseEntity.badRequest().body("Type and title are required");
+            }
+
+            List<Prescription> prescriptions = new ArrayList<>();
+            if (request.getPrescriptions() != null) {
+                for (PrescriptionRequest item : request.getPrescriptions()) {
+                    if (isBlank(item.getMedication()) || isBlank(item.getDosage())
+                            || isBlank(item.getFrequency()) || isBlank(item.getDuration())) {
+                        return ResponseEntity.badRequest().body("Prescriptions need medication, dosage, frequency and duration");
+                    }
+                    Prescription prescription = new Prescription();
+                    prescription.setMedication(item.getMedication());
+                    prescription.setDosage(item.getDosage());
+                    prescription.setFrequency(item.getFrequency());
+                    prescription.setDuration(item.getDuration());
+                    prescription.setInstructions(item.getInstructions());
+                    prescriptions.add(prescription);
+                }
+            }
+
+            List<FileAttachment> files = new ArrayList<>();
+            if (request.getFiles() != null) {
+                for (FileRequest item : request.getFiles()) {
+                    if (isBlank(item.getName()) || isBlank(item.getType())) {
+                        return ResponseEntity.badRequest().body("Files need a name and type");
+                    }
+                    FileAttachment file = new FileAttachment();
+                    file.setName(item.getName());
+                    file.setType(item.getType());
+                    file.setSize(item.getSize());
+                    file.setUrl(item.getUrl());
+                    file.setUploadDate(LocalDate.now());
+                    files.add(file);
+                }
+            }
+
+            MedicalRecord record = new MedicalRecord();
+            record.setPatient(patientOpt.get());
+            record.setDoctor(doctorOpt.get());
+            record.setDate(request.getDate() != null ? LocalDate.parse(request.getDate()) : LocalDate.now());
+            record.setType(request.getType());
+            record.setTitle(request.getTitle());
+            record.setDescription(request.getDescription());
+            record.setPrescriptions(prescriptions);
+            record.setFiles(files);
+
+            return ResponseEntity.status(HttpStatus.CREATED).body(medicalRecordService.create(record));
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error creating medical record: " + e.getMessage());
+        }
+    }
+
+    @PostMapping(value = "/{id}/files", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> uploadFile(@PathVariable Long id, @RequestParam("file") MultipartFile file) {
+        try (InputStream in = file.getInputStream()) {
+            return attachFile(id, file.getOriginalFilename(), file.getContentType(), in);
+        } catch (BlobStore.TooLargeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error uploading file: " + e.getMessage());
+        }
+    }
+
+    // Raw request body, e.g. PUT-style uploads from scripts; streamed straight into the blob
+    // store without the multipart staging copy
+    @PostMapping(value = "/{id}/files", consumes = "!" + MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> uploadFileBody(@PathVariable Long id, @RequestParam String name, HttpServletRequest request) {
+        try {
+            if (request.getContentLengthLong() > blobStore.getMaxSize()) {
+                return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body("File exceeds the maximum size of " + blobStore.getMaxSize() + " bytes");
+            }
+            return attachFile(id, name, request.getContentType(), request.getInputStream());
+        } catch (BlobStore.TooLargeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error uploading file: " + e.getMessage());
+        }
+    }
+
+    // Serves the stored content with single-range support; Spring only streams the body when
+    // the declared type is StreamingResponseBody, so errors are status-only
+    @GetMapping("/{id}/files/{fileId}/content")
+    public ResponseEntity<StreamingResponseBody> downloadFile(@PathVariable Long id, @PathVariable Long fileId,
+                                                              @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                                                              @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+                                                              @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            Optional<MedicalRecordView> viewOpt = medicalRecordRepository.findViewById(id);
+            if (!viewOpt.isPresent() || !canRead(viewOpt.get())) {
+                return ResponseEntity.notFound().build();
+            }
+            Optional<FileAttachment> fileOpt = medicalRecordRepository.findFile(id, fileId);
+            if (!fileOpt.isPresent() || fileOpt.get().getContentHash() == null
+                    || !blobStore.exists(fileOpt.get().getContentHash())) {
+                return ResponseEntity.notFound().build();
+            }
+            FileAttachment file = fileOpt.get();
+            String hash = file.getContentHash();
+            long size = blobStore.size(hash);
+
+            // An attachment's content never changes, so its tag is a strong validator
+            String etag = blobStore.etagOf(file.getId(), hash);
+            CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+            if (ifNoneMatch != null && (ifNoneMatch.trim().equals("*") || ifNoneMatch.contains(etag))) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+            }
+
+            long start = 0;
+            long length = size;
+            boolean partial = false;
+            // A stale If-Range validator means the client's partial copy is outdated: send it all
+            if (range != null && (ifRange == null || ifRange.trim().equals(etag))) {
+                List<HttpRange> ranges = parseRanges(range);
+                // Multiple ranges are answered with the whole file, which RFC 9110 allows
+                if (ranges.size() == 1) {
+                    HttpRange requested = ranges.get(0);
+                    if (!isSatisfiable(requested, size)) {
+                        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                                .build();
+                    }
+                    start = requested.getRangeStart(size);
+                    length = requested.getRangeEnd(size) - start + 1;
+                    partial = true;
+                }
+            }
+
+            ResponseEntity.BodyBuilder builder = ResponseEntity.status(partial ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK)
+                    .eTag(etag)
+                    .cacheControl(cacheControl)
+                    .contentType(mediaTypeOf(file.getType()))
+                    .contentLength(length)
+                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                    .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                            .filename(file.getName(), StandardCharsets.UTF_8).build().toString());
+            if (partial) {
+                builder.header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (start + length - 1) + "/" + size);
+            }
+            long from = start;
+            long count = length;
+            return builder.body(out -> blobStore.transfer(hash, from, count, out));
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/{id}/files/{fileId}/preview")
+    public ResponseEntity<StreamingResponseBody> downloadPreview(@PathVariable Long id, @PathVariable Long fileId,
+                                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            Optional<MedicalRecordView> viewOpt = medicalRecordRepository.findViewById(id);
+            if (!viewOpt.isPresent() || !canRead(viewOpt.get())) {
+                return ResponseEntity.notFound().build();
+            }
+            Optional<FileAttachment> fileOpt = medicalRecordRepository.findFile(id, fileId);
+            if (!fileOpt.isPresent() || fileOpt.get().getContentHash() == null
+                    || !blobStore.hasPreview(fileOpt.get().getContentHash())) {
+                return ResponseEntity.notFound().build();
+            }
+            String hash = fileOpt.get().getContentHash();
+            String etag = blobStore.previewEtagOf(fileId, hash);
+            CacheControl cacheControl = CacheControl.maxAge(1, TimeUnit.DAYS).cachePrivate();
+            if (ifNoneMatch != null && ifNoneMatch.contains(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+            }
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(cacheControl)
+                    .contentType(MediaType.IMAGE_JPEG)
+                    .contentLength(blobStore.previewSize(hash))
+                    .body(out -> blobStore.transferPreview(hash, out));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Resumable upload: create a session, PUT fixed-size chunks at their offsets (in any order,
+    // in parallel, retrying as needed), then commit with the SHA-256 of the whole file
+    @PostMapping("/{id}/uploads")
+    public ResponseEntity<?> createUpload(@PathVariable Long id, @RequestBody CreateUploadRequest request) {
+        try {
+            Optional<MedicalRecordView> viewOpt = medicalRecordRepository.findViewById(id);
+            if (!viewOpt.isPresent() || !canRead(viewOpt.get())) {
+                return ResponseEntity.notFound().build();
+            }
+            if (!canWrite(viewOpt.get())) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Only the record's doctor can add files");
+            }
+            if (isBlank(request.getName()) || request.getSize() == null) {
+                return ResponseEntity.badRequest().body("File name and size are required");
+            }
+            String type = isBlank(request.getType()) ? MediaType.APPLICATION_OCTET_STREAM_VALUE : request.getType();
+            UploadSessionStore.Session session = uploadSessionStore.create(
+                    id, currentEmail(), request.getName(), type, request.getSize());
+            return ResponseEntity.status(HttpStatus.CREATED).body(uploadStatus(session));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error creating upload: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/{id}/uploads/{uploadId}")
+    public ResponseEntity<?> getUpload(@PathVariable Long id, @PathVariable String uploadId) {
+        Optional<UploadSessionStore.Session> sessionOpt = ownUpload(id, uploadId);
+        if (!sessionOpt.isPresent()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(uploadStatus(sessionOpt.get()));
+    }
+
+    @PutMapping("/{id}/uploads/{uploadId}")
+    public ResponseEntity<?> uploadChunk(@PathVariable Long id, @PathVariable String uploadId,
+                                         @RequestParam long offset, HttpServletRequest request) {
+        try {
+            Optional<UploadSessionStore.Session> sessionOpt = ownUpload(id, uploadId);
+            if (!sessionOpt.isPresent()) {
+                return ResponseEntity.notFound().build();
+            }
+            UploadSessionStore.Session session = uploadSessionStore.writeChunk(sessionOpt.get(), offset, request.getInputStream());
+            Map<String, Object> response = new HashMap<>();
+            response.put("receivedChunks", session.receivedChunks());
+            response.put("chunkCount", session.chunkCount());
+            return ResponseEntity.ok(response);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error uploading chunk: " + e.getMessage());
+        }
+    }
+
+    @PostMapping("/{id}/uploads/{uploadId}/commit")
+    public ResponseEntity<?> commitUpload(@PathVariable Long id, @PathVariable String uploadId,
+                                          @RequestBody CommitUploadRequest request) {
+        try {
+            Optional<UploadSessionStore.Session> sessionOpt = ownUpload(id, uploadId);
+            if (!sessionOpt.isPresent()) {
+                return ResponseEntity.notFound().build();
+            }
+            if (isBlank(request.getSha256())) {
+                return ResponseEntity.badRequest().body("SHA-256 digest is required");
+            }
+            Optional<MedicalRecordView> viewOpt = medicalRecordRepository.findViewById(id);
+            if (!viewOpt.isPresent() || !canWrite(viewOpt.get())) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Only the record's doctor can add files");
+            }
+            UploadSessionStore.Session session = sessionOpt.get();
+            BlobStore.StoredBlob blob = uploadSessionStore.commit(session, request.getSha256());
+
+            FileAttachment file = new FileAttachment();
+            file.setName(session.getName());
+            file.setType(session.getType());
+            file.setSize(blob.getSize());
+            file.setUploadDate(LocalDate.now());
+            file.setContentHash(blob.getHash());
+            return ResponseEntity.status(HttpStatus.CREATED).body(medicalRecordService.addFile(id, file));
+        } catch (UploadSessionStore.DigestMismatchException e) {
+            return ResponseEntity.unprocessableEntity().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error committing upload: " + e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/{id}/uploads/{uploadId}")
+    public ResponseEntity<?> abortUpload(@PathVariable Long id, @PathVariable String uploadId) {
+        try {
+            Optional<UploadSessionStore.Session> sessionOpt = ownUpload(id, uploadId);
+            if (!sessionOpt.isPresent()) {
+                return ResponseEntity.notFound().build();
+            }
+            uploadSessionStore.remove(sessionOpt.get());
+            return ResponseEntity.noContent().build();
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error aborting upload: " + e.getMessage());
+        }
+    }
+
+    // Upload sessions are visible only to the user who opened them, under their own record
+    private Optional<UploadSessionStore.Session> ownUpload(Long recordId, String uploadId) {
+        String email = currentEmail();
+        return uploadSessionStore.find(uploadId)
+                .filter(session -> session.getRecordId().equals(recordId) && session.getOwner().equals(email));
+    }
+
+    private static Map<String, Object> uploadStatus(UploadSessionStore.Session session) {
+        Map<String, Object> status = new HashMap<>();
+        status.put("uploadId", session.getId());
+        status.put("name", session.getName());
+        status.put("size", session.getSize());
+        status.put("chunkSize", session.getChunkSize());
+        status.put("chunkCount", session.chunkCount());
+        status.put("receivedChunks", session.receivedChunks());
+        status.put("missingChunks", session.missingChunks());
+        return status;
+    }
+
+    private static String currentEmail() {
+        return SecurityContextHolder.getContext().getAuthentication().getName();
+    }
+
+    private ResponseEntity<?> attachFile(Long recordId, String name, String contentType, InputStream in) throws IOException {
+        Optional<MedicalRecordView> viewOpt = medicalRecordRepository.findViewById(recordId);
+        if (!viewOpt.isPresent() || !canRead(viewOpt.get())) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!canWrite(viewOpt.get())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Only the record's doctor can add files");
+        }
+        if (isBlank(name)) {
+            return ResponseEntity.badRequest().body("File name is required");
+        }
+
+        BlobStore.StoredBlob blob = blobStore.store(in);
+
+        FileAttachment file = new FileAttachment();
+        file.setName(name);
+        file.setType(isBlank(contentType) ? MediaType.APPLICATION_OCTET_STREAM_VALUE : contentType);
+        file.setSize(blob.getSize());
+        file.setUploadDate(LocalDate.now());
+        file.setContentHash(blob.getHash());
+        return ResponseEntity.status(HttpStatus.CREATED).body(medicalRecordService.addFile(recordId, file));
+    }
+
+    // A Range header that does not parse is ignored and the whole file is served
+    private static List<HttpRange> parseRanges(String header) {
+        try {
+            return HttpRange.parseRanges(header);
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+    }
+
+    // Unsatisfiable: the range starts at or past the end, or asks for an empty suffix
+    private static boolean isSatisfiable(HttpRange range, long size) {
+        try {
+            return range.getRangeStart(size) <= range.getRangeEnd(size);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static MediaType mediaTypeOf(String type) {
+        try {
+            return isBlank(type) ? MediaType.APPLICATION_OCTET_STREAM : MediaType.parseMediaType(type);
+        } catch (Exception e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+
+    // Patients see their own records, doctors the records they wrote
+    private boolean canRead(MedicalRecordView view) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String email = authentication.getName();
+
+        Optional<Doctor> doctorOpt = doctorRepository.findByUserEmail(email);
+        if (doctorOpt.isPresent()) {
+            return doctorOpt.get().getId().equals(view.getDoctorId());
+        }
+        return patientRepository.findByUserEmail(email)
+                .map(patient -> patient.getId().equals(view.getPatientId()))
+                .orElse(false);
+    }
+
+    // Only the doctor who wrote a record changes it; its patient can read but not add to it
+    private boolean canWrite(MedicalRecordView view) {
+        return doctorRepository.findByUserEmail(currentEmail())
+                .map(doctor -> doctor.getId().equals(view.getDoctorId()))
+                .orElse(false);
+    }
+
+    private int pageSize(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return defaultPageSize;
+        }
+        return Math.min(limit, maxPageSize);
+    }
+
+    // Same contract as the appointment lists: a plain array, next cursor in a header
+    private ResponseEntity<?> page(List<MedicalRecordView> rows, int pageSize) {
+        if (rows.size() <= pageSize) {
+            return ResponseEntity.ok(medicalRecordService.attachChildren(rows));
+        }
+        List<MedicalRecordView> page = new ArrayList<>(rows.subList(0, pageSize));
+        MedicalRecordView last = page.get(pageSize - 1);
+        return ResponseEntity.ok()
+                .header(AppointmentController.NEXT_CURSOR_HEADER, RecordCursor.encode(last.getDate(), last.getId()))
+                .body(medicalRecordService.attachChildren(page));
+    }
+
+    private static LocalDate parseDate(String value) {
+        return value == null || value.isEmpty() ? null : LocalDate.parse(value);
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    // Opaque keyset cursor: base64url of "date|id" for the last row of the previous page
+    static class RecordCursor {
+        private static final RecordCursor NONE = new RecordCursor(null, null);
+
+        final LocalDate date;
+        final Long id;
+
+        RecordCursor(LocalDate date, Long id) {
+            this.date = date;
+            this.id = id;
+        }
+
+        static String encode(LocalDate date, Long id) {
+            String raw = date + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static RecordCursor decode(String cursor) {
+            if (cursor == null || cursor.isEmpty()) {
+                return NONE;
+            }
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new RecordCursor(LocalDate.parse(parts[0]), Long.parseLong(parts[1]));
+        }
+    }
+
+    // Request DTOs
+    public static class CreateRecordRequest {
+        private Long patientId;
+        private String date;
+        private String type;
+        private String title;
+        private String description;
+        private List<PrescriptionRequest> prescriptions;
+        private List<FileRequest> files;
+
+        // getters and setters
+        public Long getPatientId() { return patientId; }
+        public void setPatientId(Long patientId) { this.patientId = patientId; }
+        public String getDate() { return date; }
+        public void setDate(String date) { this.date = date; }
+        public String getType() { return type; }
+        public void setType(String type) { this.type = type; }
+        public String getTitle() { return title; }
+        public void setTitle(String title) { this.title = title; }
+        public String getDescription() { return description; }
+        public void setDescription(String description) { this.description = description; }
+        public List<PrescriptionRequest> getPrescriptions() { return prescriptions; }
+        public void setPrescriptions(List<PrescriptionRequest> prescriptions) { this.prescriptions = prescriptions; }
+        public List<FileRequest> getFiles() { return files; }
+        public void setFiles(List<FileRequest> files) { this.files = files; }
+    }
+
+    public static class CreateUploadRequest {
+        private String name;
+        private String type;
+        private Long size;
+
+        // getters and setters
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+        public String getType() { return type; }
+        public void setType(String type) { this.type = type; }
+        public Long getSize() { return size; }
+        public void setSize(Long size) { this.size = size; }
+    }
+
+    public static class CommitUploadRequest {
+        private String sha256;
+
+        // getters and setters
+        public String getSha256() { return sha256; }
+        public void setSha256(String sha256) { this.sha256 = sha256; }
+    }
+
+    public static class PrescriptionRequest {
+        private String medication;
+        private String dosage;
+        private String frequency;
+        private String duration;
+        private String instructions;
+
+        // getters and setters
+        public String getMedication() { return medication; }
+        public void setMedication(String medication) { this.medication = medication; }
+        public String getDosage() { return dosage; }
+        public void setDosage(String dosage) { this.dosage = dosage; }
+        public String getFrequency() { return frequency; }
+        public void setFrequency(String frequency) { this.frequency = frequency; }
+        public String getDuration() { return duration; }
+        public void setDuration(String duration) { this.duration = duration; }
+        public String getInstructions() { return instructions; }
+        public void setInstructions(String instructions) { this.instructions = instructions; }
+    }
+
+    public static class FileRequest {
+        private String name;
+        private String type;
+        private Long size;
+        private String url;
+
+        // getters and setters
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+        public String getType() { return type; }
+        public void setType(String type) { this.type = type; }
+        public Long getSize() { return size; }
+        public void setSize(Long size) { this.size = size; }
+        public String getUrl() { return url; }
+        public void setUrl(String url) { this.url = url; }
+    }
+}
@@ -1,12 +1,26 @@
 package com.medvault.hmsbackend.controller;
 
+import com.medvault.hmsbackend.model.Doctor;
 import com.medvault.hmsbackend.model.Patient;
+import com.medvault.hmsbackend.repository.AppointmentRepository;
+import com.medvault.hmsbackend.repository.DoctorRepository;
+import com.medvault.hmsbackend.repository.MedicalRecordRepository;
 import com.medvault.hmsbackend.repository.PatientRepository;
+import com.medvault.hmsbackend.service.PatientHistoryExporter;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+import java.io.OutputStream;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/patients")
@@ -16,6 +30,21 @@ public class PatientController {
     @Autowired
     private PatientRepository patientRepository;
 
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private MedicalRecordRepository medicalRecordRepository;
+
+    @Autowired
+    private PatientHistoryExporter historyExporter;
+
+    @Value("${exports.history.timeout-ms:3600000}")
+    private long exportTimeoutMs;
+
     @GetMapping("/profile")
     public ResponseEntity<?> getPatientProfile() {
         try {
@@ -56,4 +85,90 @@ public class PatientController {
             return ResponseEntity.badRequest().body("Error updating patient profile: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    // Full history of the signed-in patient: ?format=ndjson (default) or zip with attachments
+    @GetMapping("/me/export")
+    public WebAsyncTask<Void> exportOwnHistory(@RequestParam(defaultValue = "ndjson") String format,
+                                               HttpServletResponse response) {
+        try {
+            // Get current user (patient)
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            String email = authentication.getName();
+
+            Optional<Patient> patientOpt = patientRepository.findByUserEmail(email);
+            if (!patientOpt.isPresent()) {
+                return reject(response, HttpStatus.NOT_FOUND);
+            }
+            return export(patientOpt.get(), null, format, response);
+
+        } catch (Exception e) {
+            return reject(response, HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    // For a referral: the appointments and records the signed-in doctor has with this patient
+    @GetMapping("/{patientId}/export")
+    public WebAsyncTask<Void> exportPatientHistory(@PathVariable Long patientId,
+                                                   @RequestParam(defaultValue = "ndjson") String format,
+                                                   HttpServletResponse response) {
+        try {
+            // Get current user (doctor)
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            String email = authentication.getName();
+
+            Optional<Doctor> doctorOpt = doctorRepository.findByUserEmail(email);
+            if (!doctorOpt.isPresent()) {
+                return reject(response, HttpStatus.FORBIDDEN);
+            }
+            Long doctorId = doctorOpt.get().getId();
+            Optional<Patient> patientOpt = patientRepository.findById(patientId);
+            if (!patientOpt.isPresent()
+                    || !(appointmentRepository.existsByPatientIdAndDoctorId(patientId, doctorId)
+                        || medicalRecordRepository.existsByPatientIdAndDoctorId(patientId, doctorId))) {
+                return reject(response, HttpStatus.NOT_FOUND);
+            }
+            return export(patientOpt.get(), doctorId, format, response);
+
+        } catch (Exception e) {
+            return reject(response, HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    // Written on an async thread rather than as a StreamingResponseBody, which would be cut off by
+    // spring.mvc.async.request-timeout like any other async request; exports.history.timeout-ms
+    // caps them instead. The permit is only taken once the task runs, so it is always released.
+    private WebAsyncTask<Void> export(Patient patient, Long doctorId, String format, HttpServletResponse response) {
+        boolean zip = "zip".equalsIgnoreCase(format);
+        if (!zip && !"ndjson".equalsIgnoreCase(format)) {
+            return reject(response, HttpStatus.BAD_REQUEST);
+        }
+        String filename = "patient-" + patient.getId() + "-history." + (zip ? "zip" : "ndjson");
+        return new WebAsyncTask<>(exportTimeoutMs, () -> {
+            if (!historyExporter.tryAcquire()) {
+                response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+                response.setHeader(HttpHeaders.RETRY_AFTER, "30");
+                return null;
+            }
+            try {
+                response.setContentType(zip ? "application/zip" : "application/x-ndjson");
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString());
+                OutputStream out = response.getOutputStream();
+                if (zip) {
+                    historyExporter.writeZip(patient, doctorId, out);
+                } else {
+                    historyExporter.writeNdjson(patient, doctorId, out);
+                }
+                out.flush();
+            } finally {
+                historyExporter.release();
+            }
+            return null;
+        });
+    }
+
+    // Empty response with the given status; a null task tells Spring MVC the response is complete
+    private WebAsyncTask<Void> reject(HttpServletResponse response, HttpStatus status) {
+        response.setStatus(status.value());
+        return null;
+    }
+}
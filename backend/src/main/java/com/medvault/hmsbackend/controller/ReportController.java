@@ -0,0 +1,244 @@
+package com.medvault.hmsbackend.controller;
+
+import com.medvault.hmsbackend.dto.AppointmentStats;
+import com.medvault.hmsbackend.dto.DoctorView;
+import com.medvault.hmsbackend.model.Doctor;
+import com.medvault.hmsbackend.model.User;
+import com.medvault.hmsbackend.repository.DoctorRepository;
+import com.medvault.hmsbackend.repository.UserRepository;
+import com.medvault.hmsbackend.service.AppointmentRollupService;
+import com.medvault.hmsbackend.service.RollupBackfillJob;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Appointment reports served from the rollups. Doctors see their own figures, admins any doctor's
+// or the whole clinic's; specialization figures are aggregate and open to both.
+@RestController
+@RequestMapping("/api/reports")
+@CrossOrigin(origins = "*")
+public class ReportController {
+
+    @Autowired
+    private AppointmentRollupService rollupService;
+
+    @Autowired
+    private RollupBackfillJob backfillJob;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${reports.default-range-days:30}")
+    private int defaultRangeDays;
+
+    @Value("${reports.max-range-days:366}")
+    private int maxRangeDays;
+
+    @GetMapping("/appointments/daily")
+    public ResponseEntity<?> getDailyStats(@RequestParam(required = false) String from,
+                                           @RequestParam(required = false) String to,
+                                           @RequestParam(required = false) Long doctorId) {
+        try {
+            Scope scope = resolveScope(doctorId);
+            if (scope == null) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Reports are only available to doctors and admins");
+            }
+            DateRange range = DateRange.parse(from, to, defaultRangeDays);
+            if (range.days() > maxRangeDays) {
+                return ResponseEntity.badRequest().body("Date range can span at most " + maxRangeDays + " days");
+            }
+
+            List<Map<String, Object>> days = new ArrayList<>();
+            for (Map.Entry<LocalDate, AppointmentStats> entry : rollupService.daily(scope.doctorId, range.from, range.to).entrySet()) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("date", entry.getKey());
+                putStats(row, entry.getValue());
+                days.add(row);
+            }
+            return ResponseEntity.ok(response(range, scope.doctorId, days));
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error fetching report: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/appointments/doctors")
+    public ResponseEntity<?> getDoctorStats(@RequestParam(required = false) String from,
+                                            @RequestParam(required = false) String to) {
+        try {
+            Scope scope = resolveScope(null);
+            if (scope == null) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Reports are only available to doctors and admins");
+            }
+            DateRange range = DateRange.parse(from, to, defaultRangeDays);
+            if (range.days() > maxRangeDays) {
+                return ResponseEntity.badRequest().body("Date range can span at most " + maxRangeDays + " days");
+            }
+
+            Map<Long, DoctorView> doctors = new HashMap<>();
+            for (DoctorView view : doctorRepository.findAllViews()) {
+                doctors.put(view.getId(), view);
+            }
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (Map.Entry<Long, AppointmentStats> entry : rollupService.byDoctor(scope.doctorId, range.from, range.to).entrySet()) {
+                DoctorView doctor = doctors.get(entry.getKey());
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("doctorId", entry.getKey());
+                row.put("doctorName", doctor != null ? doctor.getName() : null);
+                row.put("specialization", doctor != null ? doctor.getSpecialization() : null);
+                putStats(row, entry.getValue());
+                rows.add(row);
+            }
+            return ResponseEntity.ok(response(range, scope.doctorId, rows));
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error fetching report: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/appointments/specializations")
+    public ResponseEntity<?> getSpecializationStats(@RequestParam(required = false) String from,
+                                                    @RequestParam(required = false) String to) {
+        try {
+            if (resolveScope(null) == null) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Reports are only available to doctors and admins");
+            }
+            DateRange range = DateRange.parse(from, to, defaultRangeDays);
+            if (range.days() > maxRangeDays) {
+                return ResponseEntity.badRequest().body("Date range can span at most " + maxRangeDays + " days");
+            }
+
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (Map.Entry<String, AppointmentStats> entry : rollupService.bySpecialization(range.from, range.to).entrySet()) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("specialization", entry.getKey());
+                putStats(row, entry.getValue());
+                rows.add(row);
+            }
+            return ResponseEntity.ok(response(range, null, rows));
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error fetching report: " + e.getMessage());
+        }
+    }
+
+    // Runs in the background; the rollups stay readable and are replaced partition by partition
+    @PostMapping("/appointments/rebuild")
+    public ResponseEntity<?> rebuildRollups() {
+        try {
+            if (!isAdmin()) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Only admins can rebuild reports");
+            }
+            if (!backfillJob.start()) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body("A rebuild is already running");
+            }
+            return ResponseEntity.accepted().build();
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error rebuilding reports: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/appointments/rebuild")
+    public ResponseEntity<?> getRebuildProgress() {
+        try {
+            if (!isAdmin()) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Only admins can rebuild reports");
+            }
+            RollupBackfillJob.Progress progress = backfillJob.getProgress();
+            if (progress == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(progress);
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error fetching rebuild progress: " + e.getMessage());
+        }
+    }
+
+    // Doctors are pinned to their own id; admins get the requested doctor or everyone (null id).
+    // Returns null for anyone else.
+    private Scope resolveScope(Long requestedDoctorId) {
+        String email = SecurityContextHolder.getContext().getAuthentication().getName();
+        Optional<Doctor> doctorOpt = doctorRepository.findByUserEmail(email);
+        if (doctorOpt.isPresent()) {
+            return new Scope(doctorOpt.get().getId());
+        }
+        return isAdmin() ? new Scope(requestedDoctorId) : null;
+    }
+
+    private boolean isAdmin() {
+        String email = SecurityContextHolder.getContext().getAuthentication().getName();
+        return userRepository.findByEmail(email)
+                .map(user -> user.getRoleEnum() == User.Role.ADMIN)
+                .orElse(false);
+    }
+
+    private static Map<String, Object> response(DateRange range, Long doctorId, List<Map<String, Object>> rows) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("from", range.from);
+        response.put("to", range.to);
+        if (doctorId != null) {
+            response.put("doctorId", doctorId);
+        }
+        response.put("rows", rows);
+        return response;
+    }
+
+    private static void putStats(Map<String, Object> row, AppointmentStats stats) {
+        row.put("total", stats.getTotal());
+        row.put("pending", stats.getPending());
+        row.put("confirmed", stats.getConfirmed());
+        row.put("completed", stats.getCompleted());
+        row.put("cancelled", stats.getCancelled());
+        row.put("noShows", stats.getNoShows());
+        row.put("noShowRate", stats.getNoShowRate());
+    }
+
+    private static class Scope {
+        private final Long doctorId;
+
+        private Scope(Long doctorId) {
+            this.doctorId = doctorId;
+        }
+    }
+
+    // Inclusive range; defaults to the last defaultDays days up to today
+    private static class DateRange {
+        private final LocalDate from;
+        private final LocalDate to;
+
+        private DateRange(LocalDate from, LocalDate to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        static DateRange parse(String from, String to, int defaultDays) {
+            LocalDate end = to != null && !to.isEmpty() ? LocalDate.parse(to) : LocalDate.now();
+            LocalDate start = from != null && !from.isEmpty() ? LocalDate.parse(from) : end.minusDays(defaultDays - 1);
+            if (start.isAfter(end)) {
+                throw new IllegalArgumentException("from must not be after to");
+            }
+            return new DateRange(start, end);
+        }
+
+        long days() {
+            return ChronoUnit.DAYS.between(from, to) + 1;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.medvault.hmsbackend.dto;
+
+import com.medvault.hmsbackend.model.Appointment;
+
+// Appointment counts by status for one report row (a day, a doctor or a specialization).
+// A no-show is an appointment whose day has passed while it was still pending or confirmed.
+public class AppointmentStats {
+
+    private long pending;
+    private long confirmed;
+    private long completed;
+    private long cancelled;
+    private long noShows;
+
+    // pastTotal is the part of total that falls before today
+    public void add(Appointment.Status status, long total, long pastTotal) {
+        switch (status) {
+            case PENDING -> pending += total;
+            case CONFIRMED -> confirmed += total;
+            case COMPLETED -> completed += total;
+            case CANCELLED -> cancelled += total;
+        }
+        if (status == Appointment.Status.PENDING || status == Appointment.Status.CONFIRMED) {
+            noShows += pastTotal;
+        }
+    }
+
+    public long getTotal() { return pending + confirmed + completed + cancelled; }
+    public long getPending() { return pending; }
+    public long getConfirmed() { return confirmed; }
+    public long getCompleted() { return completed; }
+    public long getCancelled() { return cancelled; }
+    public long getNoShows() { return noShows; }
+
+    // Share of the appointments that should have taken place but were not completed
+    public double getNoShowRate() {
+        long due = completed + noShows;
+        return due == 0 ? 0.0 : (double) noShows / due;
+    }
+}
@@ -0,0 +1,110 @@
+package com.medvault.hmsbackend.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.medvault.hmsbackend.model.Appointment;
+import com.medvault.hmsbackend.model.Doctor;
+import com.medvault.hmsbackend.model.Patient;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+// Read model for appointment responses; built straight from a JPQL constructor expression
+public class AppointmentView {
+
+    private final Long id;
+    private final Long version;
+    private final LocalDate date;
+    private final LocalTime time;
+    private final Appointment.Status status;
+    private final String reason;
+    private final String notes;
+    private final PatientSummary patient;
+    private final DoctorSummary doctor;
+
+    public AppointmentView(Long id, Long version, LocalDate date, LocalTime time, Appointment.Status status,
+                           String reason, String notes,
+                           Long patientId, String patientName, String patientPhone,
+                           Long doctorId, String doctorName, String doctorSpecialization, String doctorDepartment) {
+        this.id = id;
+        this.version = version;
+        this.date = date;
+        this.time = time;
+        this.status = status;
+        this.reason = reason;
+        this.notes = notes;
+        this.patient = new PatientSummary(patientId, patientName, patientPhone);
+        this.doctor = new DoctorSummary(doctorId, doctorName, doctorSpecialization, doctorDepartment);
+    }
+
+    public static AppointmentView from(Appointment appointment) {
+        Patient patient = appointment.getPatient();
+        Doctor doctor = appointment.getDoctor();
+        return new AppointmentView(
+                appointment.getId(),
+                appointment.getVersion(),
+                appointment.getDate(),
+                appointment.getTime(),
+                appointment.getStatus(),
+                appointment.getReason(),
+                appointment.getNotes(),
+                patient.getId(), patient.getName(), patient.getPhone(),
+                doctor.getId(), doctor.getName(), doctor.getSpecialization(), doctor.getDepartment()
+        );
+    }
+
+    public Long getId() { return id; }
+    @JsonIgnore
+    public Long getVersion() { return version; }
+    public LocalDate getDate() { return date; }
+    public LocalTime getTime() { return time; }
+    public Appointment.Status getStatus() { return status; }
+    public String getReason() { return reason; }
+    public String getNotes() { return notes; }
+    public PatientSummary getPatient() { return patient; }
+    public DoctorSummary getDoctor() { return doctor; }
+
+    // Strong validator for conditional requests; changes whenever the row is updated
+    @JsonIgnore
+    public String getETag() {
+        return etagOf(id, version);
+    }
+
+    public static String etagOf(Long id, Long version) {
+        return "\"" + id + "-" + version + "\"";
+    }
+
+    public static class PatientSummary {
+        private final Long id;
+        private final String name;
+        private final String phone;
+
+        public PatientSummary(Long id, String name, String phone) {
+            this.id = id;
+            this.name = name;
+            this.phone = phone;
+        }
+
+        public Long getId() { return id; }
+        public String getName() { return name; }
+        public String getPhone() { return phone; }
+    }
+
+    public static class DoctorSummary {
+        private final Long id;
+        private final String name;
+        private final String specialization;
+        private final String department;
+
+        public DoctorSummary(Long id, String name, String specialization, String department) {
+            this.id = id;
+            this.name = name;
+            this.specialization = specialization;
+            this.department = department;
+        }
+
+        public Long getId() { return id; }
+        public String getName() { return name; }
+        public String getSpecialization() { return specialization; }
+        public String getDepartment() { return department; }
+    }
+}
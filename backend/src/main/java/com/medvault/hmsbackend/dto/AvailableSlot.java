@@ -0,0 +1,32 @@
+package com.medvault.hmsbackend.dto;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+// A free slot that can be passed straight to the booking endpoint
+public class AvailableSlot {
+
+    private final Long doctorId;
+    private final String doctorName;
+    private final String specialization;
+    private final LocalDate date;
+    private final LocalTime time;
+    private final int durationMinutes;
+
+    public AvailableSlot(Long doctorId, String doctorName, String specialization,
+                         LocalDate date, LocalTime time, int durationMinutes) {
+        this.doctorId = doctorId;
+        this.doctorName = doctorName;
+        this.specialization = specialization;
+        this.date = date;
+        this.time = time;
+        this.durationMinutes = durationMinutes;
+    }
+
+    public Long getDoctorId() { return doctorId; }
+    public String getDoctorName() { return doctorName; }
+    public String getSpecialization() { return specialization; }
+    public LocalDate getDate() { return date; }
+    public LocalTime getTime() { return time; }
+    public int getDurationMinutes() { return durationMinutes; }
+}
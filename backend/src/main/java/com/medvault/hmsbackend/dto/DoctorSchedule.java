@@ -0,0 +1,91 @@
+package com.medvault.hmsbackend.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+// A doctor's bookable hours with the defaults applied to anything left unset
+public class DoctorSchedule {
+
+    public static final LocalTime DEFAULT_WORK_START = LocalTime.of(9, 0);
+    public static final LocalTime DEFAULT_WORK_END = LocalTime.of(17, 0);
+    public static final int DEFAULT_SLOT_MINUTES = 30;
+    public static final String DEFAULT_WORK_DAYS = "MON,TUE,WED,THU,FRI";
+
+    private final Long doctorId;
+    private final String doctorName;
+    private final String specialization;
+    private final LocalTime workStart;
+    private final LocalTime workEnd;
+    private final int slotMinutes;
+    private final Set<DayOfWeek> workDays;
+
+    public DoctorSchedule(Long doctorId, String doctorName, String specialization,
+                          LocalTime workStart, LocalTime workEnd, Integer slotMinutes, String workDays) {
+        this.doctorId = doctorId;
+        this.doctorName = doctorName;
+        this.specialization = specialization;
+        this.workStart = workStart != null ? workStart : DEFAULT_WORK_START;
+        this.workEnd = workEnd != null ? workEnd : DEFAULT_WORK_END;
+        this.slotMinutes = slotMinutes != null && slotMinutes > 0 ? slotMinutes : DEFAULT_SLOT_MINUTES;
+        this.workDays = parseDays(workDays != null ? workDays : DEFAULT_WORK_DAYS);
+    }
+
+    // Accepts "MON,TUE" or full day names; throws IllegalArgumentException on anything else
+    public static Set<DayOfWeek> parseDays(String value) {
+        Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+        for (String token : value.split(",")) {
+            String day = token.trim().toUpperCase(Locale.ROOT);
+            if (day.isEmpty()) {
+                continue;
+            }
+            DayOfWeek match = null;
+            for (DayOfWeek candidate : DayOfWeek.values()) {
+                if (candidate.name().equals(day) || (day.length() == 3 && candidate.name().startsWith(day))) {
+                    match = candidate;
+                }
+            }
+            if (match == null) {
+                throw new IllegalArgumentException("Unknown day of week: " + token.trim());
+            }
+            days.add(match);
+        }
+        return days;
+    }
+
+    public static String formatDays(Set<DayOfWeek> days) {
+        List<String> names = new ArrayList<>(days.size());
+        for (DayOfWeek day : days) {
+            names.add(day.name().substring(0, 3));
+        }
+        return String.join(",", names);
+    }
+
+    public boolean worksOn(DayOfWeek day) {
+        return workDays.contains(day);
+    }
+
+    @JsonIgnore
+    public int getStartMinute() {
+        return workStart.getHour() * 60 + workStart.getMinute();
+    }
+
+    @JsonIgnore
+    public int getEndMinute() {
+        return workEnd.getHour() * 60 + workEnd.getMinute();
+    }
+
+    public Long getDoctorId() { return doctorId; }
+    public String getDoctorName() { return doctorName; }
+    public String getSpecialization() { return specialization; }
+    public LocalTime getWorkStart() { return workStart; }
+    public LocalTime getWorkEnd() { return workEnd; }
+    public int getSlotMinutes() { return slotMinutes; }
+    public String getWorkDays() { return formatDays(workDays); }
+}
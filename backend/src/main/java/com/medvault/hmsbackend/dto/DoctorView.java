@@ -0,0 +1,54 @@
+package com.medvault.hmsbackend.dto;
+
+import com.medvault.hmsbackend.model.Doctor;
+
+// Public directory entry for a doctor; leaves out the linked user account
+public class DoctorView {
+
+    private final Long id;
+    private final String name;
+    private final String specialization;
+    private final String phone;
+    private final String department;
+    private final String avatar;
+    private final String experience;
+    private final Double rating;
+    private final String bio;
+
+    public DoctorView(Long id, String name, String specialization, String phone, String department,
+                      String avatar, String experience, Double rating, String bio) {
+        this.id = id;
+        this.name = name;
+        this.specialization = specialization;
+        this.phone = phone;
+        this.department = department;
+        this.avatar = avatar;
+        this.experience = experience;
+        this.rating = rating;
+        this.bio = bio;
+    }
+
+    public static DoctorView from(Doctor doctor) {
+        return new DoctorView(
+                doctor.getId(),
+                doctor.getName(),
+                doctor.getSpecialization(),
+                doctor.getPhone(),
+                doctor.getDepartment(),
+                doctor.getAvatar(),
+                doctor.getExperience(),
+                doctor.getRating(),
+                doctor.getBio()
+        );
+    }
+
+    public Long getId() { return id; }
+    public String getName() { return name; }
+    public String getSpecialization() { return specialization; }
+    public String getPhone() { return phone; }
+    public String getDepartment() { return department; }
+    public String getAvatar() { return avatar; }
+    public String getExperience() { return experience; }
+    public Double getRating() { return rating; }
+    public String getBio() { return bio; }
+}
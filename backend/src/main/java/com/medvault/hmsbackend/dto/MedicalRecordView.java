@@ -0,0 +1,76 @@
+package com.medvault.hmsbackend.dto;
+
+import com.medvault.hmsbackend.model.FileAttachment;
+import com.medvault.hmsbackend.model.MedicalRecord;
+import com.medvault.hmsbackend.model.Prescription;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Timeline entry for a medical record; the scalar columns come from one joined select and the
+// prescriptions and files are attached afterwards for the whole page at once
+public class MedicalRecordView {
+
+    private final Long id;
+    private final LocalDate date;
+    private final String type;
+    private final String title;
+    private final String description;
+    private final Long patientId;
+    private final String patientName;
+    private final Long doctorId;
+    private final String doctorName;
+    private List<Prescription> prescriptions = new ArrayList<>();
+    private List<FileAttachment> files = new ArrayList<>();
+
+    public MedicalRecordView(Long id, LocalDate date, String type, String title, String description,
+                             Long patientId, String patientName, Long doctorId, String doctorName) {
+        this.id = id;
+        this.date = date;
+        this.type = type;
+        this.title = title;
+        this.description = description;
+        this.patientId = patientId;
+        this.patientName = patientName;
+        this.doctorId = doctorId;
+        this.doctorName = doctorName;
+    }
+
+    public static MedicalRecordView from(MedicalRecord record) {
+        MedicalRecordView view = new MedicalRecordView(
+                record.getId(),
+                record.getDate(),
+                record.getType(),
+                record.getTitle(),
+                record.getDescription(),
+                record.getPatient().getId(),
+                record.getPatient().getName(),
+                record.getDoctor().getId(),
+                record.getDoctor().getName()
+        );
+        if (record.getPrescriptions() != null) {
+            view.prescriptions.addAll(record.getPrescriptions());
+        }
+        if (record.getFiles() != null) {
+            view.files.addAll(record.getFiles());
+        }
+        return view;
+    }
+
+    public Long getId() { return id; }
+    public LocalDate getDate() { return date; }
+    public String getType() { return type; }
+    public String getTitle() { return title; }
+    public String getDescription() { return description; }
+    public Long getPatientId() { return patientId; }
+    public String getPatientName() { return patientName; }
+    public Long getDoctorId() { return doctorId; }
+    public String getDoctorName() { return doctorName; }
+
+    public List<Prescription> getPrescriptions() { return prescriptions; }
+    public void setPrescriptions(List<Prescription> prescriptions) { this.prescriptions = prescriptions; }
+
+    public List<FileAttachment> getFiles() { return files; }
+    public void setFiles(List<FileAttachment> files) { this.files = files; }
+}
@@ -0,0 +1,15 @@
+package com.medvault.hmsbackend.dto;
+
+public class StatusUpdateItem {
+    private Long id;
+    private String status;
+    private String notes;
+
+    // getters and setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    public String getNotes() { return notes; }
+    public void setNotes(String notes) { this.notes = notes; }
+}
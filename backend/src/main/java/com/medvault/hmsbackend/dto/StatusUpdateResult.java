@@ -0,0 +1,22 @@
+package com.medvault.hmsbackend.dto;
+
+public class StatusUpdateResult {
+
+    public enum Outcome {
+        UPDATED, NOT_FOUND, INVALID, CONFLICT
+    }
+
+    private final Long id;
+    private final Outcome outcome;
+    private final String message;
+
+    public StatusUpdateResult(Long id, Outcome outcome, String message) {
+        this.id = id;
+        this.outcome = outcome;
+        this.message = message;
+    }
+
+    public Long getId() { return id; }
+    public Outcome getOutcome() { return outcome; }
+    public String getMessage() { return message; }
+}
@@ -0,0 +1,67 @@
+package com.medvault.hmsbackend.event;
+
+import com.medvault.hmsbackend.model.Appointment;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+// Published whenever an appointment is created or changes status
+public class AppointmentChangedEvent {
+
+    public enum Type {
+        CREATED, STATUS_CHANGED
+    }
+
+    private final Type type;
+    private final Long appointmentId;
+    private final Long doctorId;
+    private final Long patientId;
+    private final LocalDate date;
+    private final LocalTime time;
+    private final Appointment.Status previousStatus;
+    private final Appointment.Status status;
+
+    public AppointmentChangedEvent(Type type, Long appointmentId, Long doctorId, Long patientId,
+                                   LocalDate date, LocalTime time,
+                                   Appointment.Status previousStatus, Appointment.Status status) {
+        this.type = type;
+        this.appointmentId = appointmentId;
+        this.doctorId = doctorId;
+        this.patientId = patientId;
+        this.date = date;
+        this.time = time;
+        this.previousStatus = previousStatus;
+        this.status = status;
+    }
+
+    public static AppointmentChangedEvent created(Appointment appointment) {
+        return of(Type.CREATED, appointment, null);
+    }
+
+    public static AppointmentChangedEvent statusChanged(Appointment appointment, Appointment.Status previousStatus) {
+        return of(Type.STATUS_CHANGED, appointment, previousStatus);
+    }
+
+    // Only reads the ids of the patient and doctor, so lazy associations stay uninitialized
+    private static AppointmentChangedEvent of(Type type, Appointment appointment, Appointment.Status previousStatus) {
+        return new AppointmentChangedEvent(
+                type,
+                appointment.getId(),
+                appointment.getDoctor().getId(),
+                appointment.getPatient().getId(),
+                appointment.getDate(),
+                appointment.getTime(),
+                previousStatus,
+                appointment.getStatus()
+        );
+    }
+
+    public Type getType() { return type; }
+    public Long getAppointmentId() { return appointmentId; }
+    public Long getDoctorId() { return doctorId; }
+    public Long getPatientId() { return patientId; }
+    public LocalDate getDate() { return date; }
+    public LocalTime getTime() { return time; }
+    public Appointment.Status getPreviousStatus() { return previousStatus; }
+    public Appointment.Status getStatus() { return status; }
+}
@@ -0,0 +1,13 @@
+package com.medvault.hmsbackend.event;
+
+// Published whenever a doctor row is created or updated
+public class DoctorChangedEvent {
+
+    private final Long doctorId;
+
+    public DoctorChangedEvent(Long doctorId) {
+        this.doctorId = doctorId;
+    }
+
+    public Long getDoctorId() { return doctorId; }
+}
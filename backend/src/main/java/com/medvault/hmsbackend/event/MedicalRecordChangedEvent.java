@@ -0,0 +1,13 @@
+package com.medvault.hmsbackend.event;
+
+// Published whenever a medical record or its prescriptions are created or updated
+public class MedicalRecordChangedEvent {
+
+    private final Long recordId;
+
+    public MedicalRecordChangedEvent(Long recordId) {
+        this.recordId = recordId;
+    }
+
+    public Long getRecordId() { return recordId; }
+}
@@ -1,22 +1,32 @@
 package com.medvault.hmsbackend.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
 
 @Entity
-@Table(name = "appointments")
+@Table(name = "appointments", uniqueConstraints = {
+        // slot_active is NULL for cancelled appointments so their slot can be booked again;
+        // its (doctor_id, date, time) prefix also serves the doctor listing
+        @UniqueConstraint(name = "uk_appointments_doctor_slot", columnNames = {"doctor_id", "date", "time", "slot_active"})
+}, indexes = {
+        @Index(name = "idx_appointments_patient_date", columnList = "patient_id, date, time"),
+        // Month ranges for AppointmentSnapshotExporter
+        @Index(name = "idx_appointments_date", columnList = "date, time")
+})
 public class Appointment {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "appointments_seq")
+    @SequenceGenerator(name = "appointments_seq", sequenceName = "appointments_seq", allocationSize = 50)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "patient_id", nullable = false)
     private Patient patient;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "doctor_id", nullable = false)
     private Doctor doctor;
 
@@ -33,8 +43,17 @@ public class Appointment {
     private String reason;
 
     @Column(columnDefinition = "TEXT")
+    @Convert(converter = CompressedTextConverter.class)
     private String notes;
 
+    @JsonIgnore
+    @Column(name = "slot_active")
+    private Boolean slotActive;
+
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     public Appointment() {}
 
     // Getters and Setters
@@ -62,6 +81,12 @@ public class Appointment {
     public String getNotes() { return notes; }
     public void setNotes(String notes) { this.notes = notes; }
 
+    public Boolean getSlotActive() { return slotActive; }
+    public void setSlotActive(Boolean slotActive) { this.slotActive = slotActive; }
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
     public enum Status {
         PENDING, CONFIRMED, COMPLETED, CANCELLED
     }
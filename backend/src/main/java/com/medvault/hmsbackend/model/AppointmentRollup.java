@@ -0,0 +1,77 @@
+package com.medvault.hmsbackend.model;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+// Number of appointments one doctor has on one day in one status. Maintained by
+// AppointmentRollupService as appointments change, so reports never scan the appointments table.
+@Entity
+@Table(name = "appointment_rollups", indexes = {
+        // The primary key leads with the date, which serves clinic-wide ranges; this serves one doctor
+        @Index(name = "idx_appointment_rollups_doctor_date", columnList = "doctor_id, date, status")
+})
+@IdClass(AppointmentRollup.Key.class)
+public class AppointmentRollup {
+    @Id
+    @Column(name = "doctor_id")
+    private Long doctorId;
+
+    @Id
+    @Column(name = "date")
+    private LocalDate date;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status")
+    private Appointment.Status status;
+
+    @Column(nullable = false)
+    private long total;
+
+    public AppointmentRollup() {}
+
+    // Getters and Setters
+    public Long getDoctorId() { return doctorId; }
+    public void setDoctorId(Long doctorId) { this.doctorId = doctorId; }
+
+    public LocalDate getDate() { return date; }
+    public void setDate(LocalDate date) { this.date = date; }
+
+    public Appointment.Status getStatus() { return status; }
+    public void setStatus(Appointment.Status status) { this.status = status; }
+
+    public long getTotal() { return total; }
+    public void setTotal(long total) { this.total = total; }
+
+    public static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private Long doctorId;
+        private LocalDate date;
+        private Appointment.Status status;
+
+        public Key() {}
+
+        public Key(Long doctorId, LocalDate date, Appointment.Status status) {
+            this.doctorId = doctorId;
+            this.date = date;
+            this.status = status;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return Objects.equals(doctorId, key.doctorId) && Objects.equals(date, key.date) && status == key.status;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(doctorId, date, status);
+        }
+    }
+}
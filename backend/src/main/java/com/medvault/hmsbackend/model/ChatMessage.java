@@ -0,0 +1,58 @@
+package com.medvault.hmsbackend.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// A patient-doctor chat message. Messages are written to ChatMessageLog first and copied here in
+// batches; the id is the message's offset in that log, so the copy is idempotent.
+@Entity
+@Table(name = "chat_messages", indexes = {
+        @Index(name = "idx_chat_messages_conversation", columnList = "doctor_id, patient_id, id")
+})
+public class ChatMessage {
+    @Id
+    private Long id;
+
+    @Column(name = "doctor_id", nullable = false)
+    private Long doctorId;
+
+    @Column(name = "patient_id", nullable = false)
+    private Long patientId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Sender sender;
+
+    @Column(name = "sent_at", nullable = false)
+    private LocalDateTime sentAt;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String body;
+
+    public ChatMessage() {}
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getDoctorId() { return doctorId; }
+    public void setDoctorId(Long doctorId) { this.doctorId = doctorId; }
+
+    public Long getPatientId() { return patientId; }
+    public void setPatientId(Long patientId) { this.patientId = patientId; }
+
+    public Sender getSender() { return sender; }
+    public void setSender(Sender sender) { this.sender = sender; }
+
+    public LocalDateTime getSentAt() { return sentAt; }
+    public void setSentAt(LocalDateTime sentAt) { this.sentAt = sentAt; }
+
+    public String getBody() { return body; }
+    public void setBody(String body) { this.body = body; }
+
+    // Stored by ordinal in the log; only append new values
+    public enum Sender {
+        PATIENT, DOCTOR
+    }
+}
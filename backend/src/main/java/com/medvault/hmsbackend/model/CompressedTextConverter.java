@@ -0,0 +1,140 @@
+package com.medvault.hmsbackend.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Deflates long free-text columns on the way to the database. A stored value is either plain
+// text or a header followed by base64 of the deflated UTF-8, so existing plaintext rows keep
+// reading, compressed rows keep reading with compression switched off, and a value is only
+// stored compressed when that actually makes it shorter. The columns stay TEXT; base64 costs a
+// third of the saving but needs no schema change and keeps rows valid UTF-8.
+@Component
+@Converter
+public class CompressedTextConverter implements AttributeConverter<String, String> {
+
+    // No note starts with U+0001; plaintext that does is always stored compressed so it cannot be
+    // mistaken for a header
+    private static final char MARKER = '\u0001';
+    // 'Z' = raw deflate, '1' = preset dictionary version 1
+    private static final String HEADER = MARKER + "Z1";
+
+    // Common clinical phrasing primes the compressor so that short notes compress too. Deflate
+    // favours matches near the end of the dictionary, so the most frequent words come last.
+    // Never change this text: stored values depend on it. Add a new version instead.
+    private static final byte[] DICTIONARY_V1 = (
+            "Referred for further evaluation. Follow-up in two weeks. No known drug allergies. "
+            + "Continue current medication. Review results at next visit. Advised rest and fluids. "
+            + "Physical examination unremarkable. Vital signs stable. Lungs clear to auscultation bilaterally. "
+            + "Heart sounds normal, no murmurs. Abdomen soft, non-tender. No acute distress. "
+            + "Alert and oriented. Denies fever, chills, nausea, vomiting, chest pain or shortness of breath. "
+            + "History of hypertension, type 2 diabetes mellitus, hyperlipidemia, asthma. "
+            + "Blood pressure, heart rate, respiratory rate, temperature, oxygen saturation. "
+            + "Complete blood count, metabolic panel, HbA1c, lipid profile, urinalysis, ECG, X-ray, MRI, CT scan. "
+            + "Take one tablet by mouth once daily with food. Take twice daily after meals. "
+            + "Take every 8 hours as needed for pain. Do not exceed the recommended dose. Avoid alcohol. "
+            + "Complete the full course of antibiotics. Apply to the affected area. "
+            + "mg ml tablet capsule daily twice three times weekly before after meals morning night bedtime "
+            + "Patient presents with complaints of pain, cough, headache, fatigue, dizziness, swelling. "
+            + "Symptoms started days ago. Diagnosis: Plan: Assessment: Impression: "
+            + "Patient was advised to return if symptoms worsen. The patient reports that the "
+            + "patient patient the the and and of of with with for for in in to to is is was "
+    ).getBytes(StandardCharsets.UTF_8);
+
+    private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(() -> new Inflater(true));
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[16 * 1024]);
+
+    @Value("${storage.text-compression.enabled:false}")
+    private boolean enabled;
+
+    // Shorter values rarely shrink once the header and base64 are paid for
+    @Value("${storage.text-compression.min-bytes:128}")
+    private int minBytes;
+
+    @Override
+    public String convertToDatabaseColumn(String text) {
+        if (text == null) {
+            return null;
+        }
+        boolean ambiguous = !text.isEmpty() && text.charAt(0) == MARKER;
+        if (!ambiguous && (!enabled || text.length() < minBytes / 3)) {
+            return text;
+        }
+        byte[] plain = text.getBytes(StandardCharsets.UTF_8);
+        if (!ambiguous && plain.length < minBytes) {
+            return text;
+        }
+        String encoded = HEADER + Base64.getEncoder().encodeToString(deflate(plain));
+        // The encoded form is ASCII, so its length in chars is its length in bytes
+        return ambiguous || encoded.length() < plain.length ? encoded : text;
+    }
+
+    @Override
+    public String convertToEntityAttribute(String stored) {
+        if (!isCompressed(stored)) {
+            return stored;
+        }
+        if (!stored.startsWith(HEADER)) {
+            throw new IllegalStateException("Unknown compressed text format: " + stored.substring(1, Math.min(3, stored.length())));
+        }
+        byte[] compressed = Base64.getDecoder().decode(stored.substring(HEADER.length()));
+        return new String(inflate(compressed), StandardCharsets.UTF_8);
+    }
+
+    public static boolean isCompressed(String stored) {
+        return stored != null && !stored.isEmpty() && stored.charAt(0) == MARKER;
+    }
+
+    public boolean isEnabled() { return enabled; }
+
+    private static byte[] deflate(byte[] plain) {
+        Deflater deflater = DEFLATERS.get();
+        byte[] buffer = BUFFERS.get();
+        deflater.reset();
+        deflater.setDictionary(DICTIONARY_V1);
+        deflater.setInput(plain);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, plain.length / 2));
+        while (!deflater.finished()) {
+            int length = deflater.deflate(buffer);
+            out.write(buffer, 0, length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] compressed) {
+        Inflater inflater = INFLATERS.get();
+        byte[] buffer = BUFFERS.get();
+        inflater.reset();
+        inflater.setDictionary(DICTIONARY_V1);
+        inflater.setInput(compressed);
+        byte[] out = new byte[Math.max(64, compressed.length * 3)];
+        int size = 0;
+        try {
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated compressed text");
+                }
+                if (size + length > out.length) {
+                    out = Arrays.copyOf(out, Math.max(out.length * 2, size + length));
+                }
+                System.arraycopy(buffer, 0, out, size, length);
+                size += length;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt compressed text", e);
+        }
+        return Arrays.copyOf(out, size);
+    }
+}
@@ -2,11 +2,14 @@ package com.medvault.hmsbackend.model;
 
 import jakarta.persistence.*;
 
+import java.time.LocalTime;
+
 @Entity
 @Table(name = "doctors")
 public class Doctor {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "doctors_seq")
+    @SequenceGenerator(name = "doctors_seq", sequenceName = "doctors_seq", allocationSize = 50)
     private Long id;
 
     @OneToOne
@@ -31,8 +34,19 @@ public class Doctor {
     private Double rating;
 
     @Column(columnDefinition = "TEXT")
+    @Convert(converter = CompressedTextConverter.class)
     private String bio;
 
+    // Bookable hours; null columns fall back to the defaults in DoctorSchedule
+    private LocalTime workStart;
+
+    private LocalTime workEnd;
+
+    private Integer slotMinutes;
+
+    // Comma-separated days of the week, e.g. "MON,TUE,WED,THU,FRI"
+    private String workDays;
+
     public Doctor() {}
 
     // Getters and Setters
@@ -65,4 +79,16 @@ public class Doctor {
 
     public String getBio() { return bio; }
     public void setBio(String bio) { this.bio = bio; }
+
+    public LocalTime getWorkStart() { return workStart; }
+    public void setWorkStart(LocalTime workStart) { this.workStart = workStart; }
+
+    public LocalTime getWorkEnd() { return workEnd; }
+    public void setWorkEnd(LocalTime workEnd) { this.workEnd = workEnd; }
+
+    public Integer getSlotMinutes() { return slotMinutes; }
+    public void setSlotMinutes(Integer slotMinutes) { this.slotMinutes = slotMinutes; }
+
+    public String getWorkDays() { return workDays; }
+    public void setWorkDays(String workDays) { this.workDays = workDays; }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.medvault.hmsbackend.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 
 import java.time.LocalDate;
@@ -8,7 +9,8 @@ import java.time.LocalDate;
 @Table(name = "file_attachments")
 public class FileAttachment {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "file_attachments_seq")
+    @SequenceGenerator(name = "file_attachments_seq", sequenceName = "file_attachments_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -24,6 +26,16 @@ public class FileAttachment {
     @Column(name = "upload_date")
     private LocalDate uploadDate;
 
+    // SHA-256 of the stored content in the blob store; not exposed, since equal hashes would
+    // reveal that two patients hold the same file
+    @JsonIgnore
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    // Set once a downscaled preview has been generated for an image
+    @Column(name = "preview_url")
+    private String previewUrl;
+
     public FileAttachment() {}
 
     // Getters and Setters
@@ -44,4 +56,10 @@ public class FileAttachment {
 
     public LocalDate getUploadDate() { return uploadDate; }
     public void setUploadDate(LocalDate uploadDate) { this.uploadDate = uploadDate; }
+
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+
+    public String getPreviewUrl() { return previewUrl; }
+    public void setPreviewUrl(String previewUrl) { this.previewUrl = previewUrl; }
 }
\ No newline at end of file
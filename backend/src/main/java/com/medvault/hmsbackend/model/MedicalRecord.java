@@ -1,22 +1,27 @@
 package com.medvault.hmsbackend.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
 
 import java.time.LocalDate;
 import java.util.List;
 
 @Entity
-@Table(name = "medical_records")
+@Table(name = "medical_records", indexes = {
+        @Index(name = "idx_medical_records_patient_date", columnList = "patient_id, date, id"),
+        @Index(name = "idx_medical_records_doctor_date", columnList = "doctor_id, date, id")
+})
 public class MedicalRecord {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "medical_records_seq")
+    @SequenceGenerator(name = "medical_records_seq", sequenceName = "medical_records_seq", allocationSize = 50)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "patient_id", nullable = false)
     private Patient patient;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "doctor_id", nullable = false)
     private Doctor doctor;
 
@@ -30,14 +35,21 @@ public class MedicalRecord {
     private String title;
 
     @Column(columnDefinition = "TEXT")
+    @Convert(converter = CompressedTextConverter.class)
     private String description;
 
+    // Collections of several loaded records are initialized together, one IN query per batch
+    // Children are only ever added, so the key is written by their insert and never updated
     @OneToMany(cascade = CascadeType.ALL, fetch = FetchType.LAZY)
-    @JoinColumn(name = "medical_record_id")
+    @JoinColumn(name = "medical_record_id", nullable = false, updatable = false)
+    @OrderBy("id")
+    @BatchSize(size = 100)
     private List<Prescription> prescriptions;
 
     @OneToMany(cascade = CascadeType.ALL, fetch = FetchType.LAZY)
-    @JoinColumn(name = "medical_record_id")
+    @JoinColumn(name = "medical_record_id", nullable = false, updatable = false)
+    @OrderBy("id")
+    @BatchSize(size = 100)
     private List<FileAttachment> files;
 
     public MedicalRecord() {}
@@ -6,7 +6,8 @@ import jakarta.persistence.*;
 @Table(name = "prescriptions")
 public class Prescription {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "prescriptions_seq")
+    @SequenceGenerator(name = "prescriptions_seq", sequenceName = "prescriptions_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -22,6 +23,7 @@ public class Prescription {
     private String duration;
 
     @Column(columnDefinition = "TEXT")
+    @Convert(converter = CompressedTextConverter.class)
     private String instructions;
 
     public Prescription() {}
@@ -0,0 +1,63 @@
+package com.medvault.hmsbackend.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// One unit of a rollup backfill: a doctor's appointments between two dates. completedAt is set in
+// the same transaction that writes the partition's rollups, so an interrupted run resumes exactly
+// where it stopped.
+@Entity
+@Table(name = "rollup_backfill_partitions", indexes = {
+        @Index(name = "idx_rollup_backfill_partitions_run", columnList = "run_id, completed_at")
+})
+public class RollupBackfillPartition {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "rollup_backfill_partitions_seq")
+    @SequenceGenerator(name = "rollup_backfill_partitions_seq", sequenceName = "rollup_backfill_partitions_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "run_id", nullable = false)
+    private Long runId;
+
+    @Column(name = "doctor_id", nullable = false)
+    private Long doctorId;
+
+    @Column(name = "from_date", nullable = false)
+    private LocalDate fromDate;
+
+    @Column(name = "to_date", nullable = false)
+    private LocalDate toDate;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    public RollupBackfillPartition() {}
+
+    public RollupBackfillPartition(Long runId, Long doctorId, LocalDate fromDate, LocalDate toDate) {
+        this.runId = runId;
+        this.doctorId = doctorId;
+        this.fromDate = fromDate;
+        this.toDate = toDate;
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getRunId() { return runId; }
+    public void setRunId(Long runId) { this.runId = runId; }
+
+    public Long getDoctorId() { return doctorId; }
+    public void setDoctorId(Long doctorId) { this.doctorId = doctorId; }
+
+    public LocalDate getFromDate() { return fromDate; }
+    public void setFromDate(LocalDate fromDate) { this.fromDate = fromDate; }
+
+    public LocalDate getToDate() { return toDate; }
+    public void setToDate(LocalDate toDate) { this.toDate = toDate; }
+
+    public LocalDateTime getCompletedAt() { return completedAt; }
+    public void setCompletedAt(LocalDateTime completedAt) { this.completedAt = completedAt; }
+}
@@ -0,0 +1,82 @@
+package com.medvault.hmsbackend.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// Durable work item for preview generation; rows outlive restarts and are claimed by id order
+@Entity
+@Table(name = "thumbnail_jobs", indexes = {
+        @Index(name = "idx_thumbnail_jobs_status_next", columnList = "status, next_attempt_at, id")
+})
+public class ThumbnailJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "thumbnail_jobs_seq")
+    @SequenceGenerator(name = "thumbnail_jobs_seq", sequenceName = "thumbnail_jobs_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "medical_record_id", nullable = false)
+    private Long medicalRecordId;
+
+    @Column(name = "file_attachment_id", nullable = false)
+    private Long fileAttachmentId;
+
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(name = "content_type", nullable = false)
+    private String contentType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    public enum Status {
+        PENDING, RUNNING, DONE, FAILED
+    }
+
+    public ThumbnailJob() {}
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getMedicalRecordId() { return medicalRecordId; }
+    public void setMedicalRecordId(Long medicalRecordId) { this.medicalRecordId = medicalRecordId; }
+
+    public Long getFileAttachmentId() { return fileAttachmentId; }
+    public void setFileAttachmentId(Long fileAttachmentId) { this.fileAttachmentId = fileAttachmentId; }
+
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+
+    public String getContentType() { return contentType; }
+    public void setContentType(String contentType) { this.contentType = contentType; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+}
@@ -1,13 +1,86 @@
 package com.medvault.hmsbackend.repository;
 
+import com.medvault.hmsbackend.dto.AppointmentView;
 import com.medvault.hmsbackend.model.Appointment;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface AppointmentRepository extends JpaRepository<Appointment, Long> {
     List<Appointment> findByPatientId(Long patientId);
     List<Appointment> findByDoctorId(Long doctorId);
-}
\ No newline at end of file
+    List<Appointment> findByIdInAndDoctorId(Collection<Long> ids, Long doctorId);
+    boolean existsByPatientIdAndDoctorId(Long patientId, Long doctorId);
+
+    @Query("SELECT new com.medvault.hmsbackend.dto.AppointmentView(a.id, a.version, a.date, a.time, a.status, a.reason, a.notes,"
+            + " p.id, p.name, p.phone, d.id, d.name, d.specialization, d.department)"
+            + " FROM Appointment a JOIN a.patient p JOIN a.doctor d WHERE a.id = :id")
+    Optional<AppointmentView> findViewById(@Param("id") Long id);
+
+    // Keyset pages, newest first, projected in a single joined select; the cursor is the (date, time, id) of the last row already returned
+    @Query("SELECT new com.medvault.hmsbackend.dto.AppointmentView(a.id, a.version, a.date, a.time, a.status, a.reason, a.notes,"
+            + " p.id, p.name, p.phone, d.id, d.name, d.specialization, d.department)"
+            + " FROM Appointment a JOIN a.patient p JOIN a.doctor d WHERE p.id = :patientId"
+            + " AND (:from IS NULL OR a.date >= :from) AND (:to IS NULL OR a.date <= :to)"
+            + " AND (:status IS NULL OR a.status = :status)"
+            + " AND (:cursorDate IS NULL OR a.date < :cursorDate"
+            + " OR (a.date = :cursorDate AND (a.time < :cursorTime OR (a.time = :cursorTime AND a.id < :cursorId))))"
+            + " ORDER BY a.date DESC, a.time DESC, a.id DESC")
+    List<AppointmentView> findPatientPage(@Param("patientId") Long patientId,
+                                      @Param("from") LocalDate from,
+                                      @Param("to") LocalDate to,
+                                      @Param("status") Appointment.Status status,
+                                      @Param("cursorDate") LocalDate cursorDate,
+                                      @Param("cursorTime") LocalTime cursorTime,
+                                      @Param("cursorId") Long cursorId,
+                                      Pageable pageable);
+
+    @Query("SELECT new com.medvault.hmsbackend.dto.AppointmentView(a.id, a.version, a.date, a.time, a.status, a.reason, a.notes,"
+            + " p.id, p.name, p.phone, d.id, d.name, d.specialization, d.department)"
+            + " FROM Appointment a JOIN a.patient p JOIN a.doctor d WHERE d.id = :doctorId"
+            + " AND (:from IS NULL OR a.date >= :from) AND (:to IS NULL OR a.date <= :to)"
+            + " AND (:status IS NULL OR a.status = :status)"
+            + " AND (:cursorDate IS NULL OR a.date < :cursorDate"
+            + " OR (a.date = :cursorDate AND (a.time < :cursorTime OR (a.time = :cursorTime AND a.id < :cursorId))))"
+            + " ORDER BY a.date DESC, a.time DESC, a.id DESC")
+    List<AppointmentView> findDoctorPage(@Param("doctorId") Long doctorId,
+                                     @Param("from") LocalDate from,
+                                     @Param("to") LocalDate to,
+                                     @Param("status") Appointment.Status status,
+                                     @Param("cursorDate") LocalDate cursorDate,
+                                     @Param("cursorTime") LocalTime cursorTime,
+                                     @Param("cursorId") Long cursorId,
+                                     Pageable pageable);
+
+    @Query("SELECT a.time FROM Appointment a WHERE a.doctor.id = :doctorId AND a.date = :date AND a.status <> com.medvault.hmsbackend.model.Appointment$Status.CANCELLED")
+    List<LocalTime> findBookedTimes(@Param("doctorId") Long doctorId, @Param("date") LocalDate date);
+
+    // (date, time) of every booking of the doctor over a range of days
+    @Query("SELECT a.date, a.time FROM Appointment a WHERE a.doctor.id = :doctorId AND a.date BETWEEN :from AND :to"
+            + " AND a.status <> com.medvault.hmsbackend.model.Appointment$Status.CANCELLED")
+    List<Object[]> findBookedSlots(@Param("doctorId") Long doctorId, @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // A patient's whole history for an export, oldest first. With useCursorFetch (see
+    // application.properties) MySQL Connector/J reads rows through a server-side cursor this many at a
+    // time instead of buffering the result; call inside a transaction
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.medvault.hmsbackend.dto.AppointmentView(a.id, a.version, a.date, a.time, a.status, a.reason, a.notes,"
+            + " p.id, p.name, p.phone, d.id, d.name, d.specialization, d.department)"
+            + " FROM Appointment a JOIN a.patient p JOIN a.doctor d WHERE p.id = :patientId"
+            + " AND (:doctorId IS NULL OR d.id = :doctorId)"
+            + " ORDER BY a.date, a.time, a.id")
+    Stream<AppointmentView> streamPatientHistory(@Param("patientId") Long patientId, @Param("doctorId") Long doctorId);
+}
@@ -0,0 +1,36 @@
+package com.medvault.hmsbackend.repository;
+
+import com.medvault.hmsbackend.model.AppointmentRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Report queries read only the rollups, so their cost depends on the date range and the number of
+// doctors, never on how many appointments there are
+@Repository
+public interface AppointmentRollupRepository extends JpaRepository<AppointmentRollup, AppointmentRollup.Key> {
+
+    // (date, status, total); doctorId null sums over every doctor
+    @Query("SELECT r.date, r.status, SUM(r.total) FROM AppointmentRollup r"
+            + " WHERE (:doctorId IS NULL OR r.doctorId = :doctorId) AND r.date BETWEEN :from AND :to"
+            + " GROUP BY r.date, r.status ORDER BY r.date")
+    List<Object[]> sumByDate(@Param("doctorId") Long doctorId, @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // (doctor id, status, total, total before :today)
+    @Query("SELECT r.doctorId, r.status, SUM(r.total), SUM(CASE WHEN r.date < :today THEN r.total ELSE 0 END)"
+            + " FROM AppointmentRollup r WHERE (:doctorId IS NULL OR r.doctorId = :doctorId) AND r.date BETWEEN :from AND :to"
+            + " GROUP BY r.doctorId, r.status")
+    List<Object[]> sumByDoctor(@Param("doctorId") Long doctorId, @Param("from") LocalDate from, @Param("to") LocalDate to,
+                               @Param("today") LocalDate today);
+
+    // (specialization, status, total, total before :today)
+    @Query("SELECT d.specialization, r.status, SUM(r.total), SUM(CASE WHEN r.date < :today THEN r.total ELSE 0 END)"
+            + " FROM AppointmentRollup r JOIN Doctor d ON d.id = r.doctorId WHERE r.date BETWEEN :from AND :to"
+            + " GROUP BY d.specialization, r.status")
+    List<Object[]> sumBySpecialization(@Param("from") LocalDate from, @Param("to") LocalDate to,
+                                       @Param("today") LocalDate today);
+}
@@ -0,0 +1,23 @@
+package com.medvault.hmsbackend.repository;
+
+import com.medvault.hmsbackend.model.ChatMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
+
+    @Query("SELECT MAX(m.id) FROM ChatMessage m")
+    Long findMaxId();
+
+    @Query("SELECT MAX(m.id) FROM ChatMessage m WHERE m.doctorId = :doctorId AND m.patientId = :patientId")
+    Long findLatestId(@Param("doctorId") Long doctorId, @Param("patientId") Long patientId);
+
+    // Newest first
+    List<ChatMessage> findByDoctorIdAndPatientIdAndIdLessThanOrderByIdDesc(Long doctorId, Long patientId, Long id, Pageable pageable);
+}
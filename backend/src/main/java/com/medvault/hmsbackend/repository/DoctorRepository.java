@@ -1,13 +1,37 @@
 package com.medvault.hmsbackend.repository;
 
+import com.medvault.hmsbackend.dto.DoctorSchedule;
+import com.medvault.hmsbackend.dto.DoctorView;
 import com.medvault.hmsbackend.model.Doctor;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface DoctorRepository extends JpaRepository<Doctor, Long> {
     Optional<Doctor> findByUserId(Long userId);
-    Optional<Doctor> findByUserEmail(String email);
-}
\ No newline at end of file
+
+    // The user is fetched in the same select; on its own the eager one-to-one costs a second query
+    @Query("SELECT d FROM Doctor d JOIN FETCH d.user u WHERE u.email = :email")
+    Optional<Doctor> findByUserEmail(@Param("email") String email);
+
+    @Query("SELECT new com.medvault.hmsbackend.dto.DoctorView(d.id, d.name, d.specialization, d.phone, d.department,"
+            + " d.avatar, d.experience, d.rating, d.bio) FROM Doctor d ORDER BY d.id")
+    List<DoctorView> findAllViews();
+
+    @Query("SELECT new com.medvault.hmsbackend.dto.DoctorView(d.id, d.name, d.specialization, d.phone, d.department,"
+            + " d.avatar, d.experience, d.rating, d.bio) FROM Doctor d WHERE d.id = :id")
+    Optional<DoctorView> findViewById(@Param("id") Long id);
+
+    @Query("SELECT new com.medvault.hmsbackend.dto.DoctorSchedule(d.id, d.name, d.specialization, d.workStart, d.workEnd,"
+            + " d.slotMinutes, d.workDays) FROM Doctor d")
+    List<DoctorSchedule> findAllSchedules();
+
+    @Query("SELECT new com.medvault.hmsbackend.dto.DoctorSchedule(d.id, d.name, d.specialization, d.workStart, d.workEnd,"
+            + " d.slotMinutes, d.workDays) FROM Doctor d WHERE d.id = :id")
+    Optional<DoctorSchedule> findScheduleById(@Param("id") Long id);
+}
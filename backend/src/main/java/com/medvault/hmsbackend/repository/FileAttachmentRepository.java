@@ -0,0 +1,18 @@
+package com.medvault.hmsbackend.repository;
+
+import com.medvault.hmsbackend.model.FileAttachment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface FileAttachmentRepository extends JpaRepository<FileAttachment, Long> {
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE FileAttachment f SET f.previewUrl = :previewUrl WHERE f.id = :id")
+    int setPreviewUrl(@Param("id") Long id, @Param("previewUrl") String previewUrl);
+}
@@ -1,13 +1,121 @@
 package com.medvault.hmsbackend.repository;
 
+import com.medvault.hmsbackend.dto.MedicalRecordView;
+import com.medvault.hmsbackend.model.FileAttachment;
 import com.medvault.hmsbackend.model.MedicalRecord;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface MedicalRecordRepository extends JpaRepository<MedicalRecord, Long> {
     List<MedicalRecord> findByPatientId(Long patientId);
     List<MedicalRecord> findByDoctorId(Long doctorId);
-}
\ No newline at end of file
+    boolean existsByPatientIdAndDoctorId(Long patientId, Long doctorId);
+
+    @Query("SELECT new com.medvault.hmsbackend.dto.MedicalRecordView(r.id, r.date, r.type, r.title, r.description,"
+            + " p.id, p.name, d.id, d.name)"
+            + " FROM MedicalRecord r JOIN r.patient p JOIN r.doctor d WHERE r.id = :id")
+    Optional<MedicalRecordView> findViewById(@Param("id") Long id);
+
+    @Query("SELECT new com.medvault.hmsbackend.dto.MedicalRecordView(r.id, r.date, r.type, r.title, r.description,"
+            + " p.id, p.name, d.id, d.name)"
+            + " FROM MedicalRecord r JOIN r.patient p JOIN r.doctor d WHERE r.id IN :ids")
+    List<MedicalRecordView> findViewsByIds(@Param("ids") Collection<Long> ids);
+
+    // Every record in id order, a page at a time, for rebuilding the search index
+    @Query("SELECT new com.medvault.hmsbackend.dto.MedicalRecordView(r.id, r.date, r.type, r.title, r.description,"
+            + " p.id, p.name, d.id, d.name)"
+            + " FROM MedicalRecord r JOIN r.patient p JOIN r.doctor d WHERE r.id > :afterId ORDER BY r.id")
+    List<MedicalRecordView> findViewsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Keyset pages, newest first; the cursor is the (date, id) of the last row already returned
+    @Query("SELECT new com.medvault.hmsbackend.dto.MedicalRecordView(r.id, r.date, r.type, r.title, r.description,"
+            + " p.id, p.name, d.id, d.name)"
+            + " FROM MedicalRecord r JOIN r.patient p JOIN r.doctor d WHERE p.id = :patientId"
+            + " AND (:from IS NULL OR r.date >= :from) AND (:to IS NULL OR r.date <= :to)"
+            + " AND (:type IS NULL OR r.type = :type)"
+            + " AND (:cursorDate IS NULL OR r.date < :cursorDate OR (r.date = :cursorDate AND r.id < :cursorId))"
+            + " ORDER BY r.date DESC, r.id DESC")
+    List<MedicalRecordView> findPatientTimeline(@Param("patientId") Long patientId,
+                                                @Param("from") LocalDate from,
+                                                @Param("to") LocalDate to,
+                                                @Param("type") String type,
+                                                @Param("cursorDate") LocalDate cursorDate,
+                                                @Param("cursorId") Long cursorId,
+                                                Pageable pageable);
+
+    @Query("SELECT new com.medvault.hmsbackend.dto.MedicalRecordView(r.id, r.date, r.type, r.title, r.description,"
+            + " p.id, p.name, d.id, d.name)"
+            + " FROM MedicalRecord r JOIN r.patient p JOIN r.doctor d WHERE d.id = :doctorId"
+            + " AND (:patientId IS NULL OR p.id = :patientId)"
+            + " AND (:from IS NULL OR r.date >= :from) AND (:to IS NULL OR r.date <= :to)"
+            + " AND (:type IS NULL OR r.type = :type)"
+            + " AND (:cursorDate IS NULL OR r.date < :cursorDate OR (r.date = :cursorDate AND r.id < :cursorId))"
+            + " ORDER BY r.date DESC, r.id DESC")
+    List<MedicalRecordView> findDoctorTimeline(@Param("doctorId") Long doctorId,
+                                               @Param("patientId") Long patientId,
+                                               @Param("from") LocalDate from,
+                                               @Param("to") LocalDate to,
+                                               @Param("type") String type,
+                                               @Param("cursorDate") LocalDate cursorDate,
+                                               @Param("cursorId") Long cursorId,
+                                               Pageable pageable);
+
+    // Children of a whole page in one query each, as (record id, child) pairs
+    @Query("SELECT r.id, p FROM MedicalRecord r JOIN r.prescriptions p WHERE r.id IN :ids ORDER BY p.id")
+    List<Object[]> findPrescriptionsByRecordIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT r.id, f FROM MedicalRecord r JOIN r.files f WHERE r.id IN :ids ORDER BY f.id")
+    List<Object[]> findFilesByRecordIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT f FROM MedicalRecord r JOIN r.files f WHERE r.id = :recordId AND f.id = :fileId")
+    Optional<FileAttachment> findFile(@Param("recordId") Long recordId, @Param("fileId") Long fileId);
+
+    // Export streams, oldest first; see AppointmentRepository.streamPatientHistory for the fetch size
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.medvault.hmsbackend.dto.MedicalRecordView(r.id, r.date, r.type, r.title, r.description,"
+            + " p.id, p.name, d.id, d.name)"
+            + " FROM MedicalRecord r JOIN r.patient p JOIN r.doctor d WHERE p.id = :patientId"
+            + " AND (:doctorId IS NULL OR d.id = :doctorId)"
+            + " ORDER BY r.date, r.id")
+    Stream<MedicalRecordView> streamPatientHistory(@Param("patientId") Long patientId, @Param("doctorId") Long doctorId);
+
+    // (record id, prescription id, medication, dosage, frequency, duration, instructions)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT r.id, rx.id, rx.medication, rx.dosage, rx.frequency, rx.duration, rx.instructions"
+            + " FROM MedicalRecord r JOIN r.prescriptions rx WHERE r.patient.id = :patientId"
+            + " AND (:doctorId IS NULL OR r.doctor.id = :doctorId)"
+            + " ORDER BY r.id, rx.id")
+    Stream<Object[]> streamPatientPrescriptions(@Param("patientId") Long patientId, @Param("doctorId") Long doctorId);
+
+    // (record id, file id, name, type, size, upload date, content hash)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT r.id, f.id, f.name, f.type, f.size, f.uploadDate, f.contentHash"
+            + " FROM MedicalRecord r JOIN r.files f WHERE r.patient.id = :patientId"
+            + " AND (:doctorId IS NULL OR r.doctor.id = :doctorId)"
+            + " ORDER BY r.id, f.id")
+    Stream<Object[]> streamPatientFiles(@Param("patientId") Long patientId, @Param("doctorId") Long doctorId);
+
+    // Stored attachments a page at a time by file id, as (record id, file id, name, type, content hash)
+    @Query("SELECT r.id, f.id, f.name, f.type, f.contentHash"
+            + " FROM MedicalRecord r JOIN r.files f WHERE r.patient.id = :patientId"
+            + " AND (:doctorId IS NULL OR r.doctor.id = :doctorId)"
+            + " AND f.contentHash IS NOT NULL AND f.id > :afterId"
+            + " ORDER BY f.id")
+    List<Object[]> findPatientBlobsAfter(@Param("patientId") Long patientId,
+                                         @Param("doctorId") Long doctorId,
+                                         @Param("afterId") Long afterId,
+                                         Pageable pageable);
+}
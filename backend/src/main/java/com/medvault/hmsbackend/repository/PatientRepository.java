@@ -2,6 +2,8 @@ package com.medvault.hmsbackend.repository;
 
 import com.medvault.hmsbackend.model.Patient;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -9,5 +11,8 @@ import java.util.Optional;
 @Repository
 public interface PatientRepository extends JpaRepository<Patient, Long> {
     Optional<Patient> findByUserId(Long userId);
-    Optional<Patient> findByUserEmail(String email);
+
+    // The user is fetched in the same select; on its own the eager one-to-one costs a second query
+    @Query("SELECT p FROM Patient p JOIN FETCH p.user u WHERE u.email = :email")
+    Optional<Patient> findByUserEmail(@Param("email") String email);
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.medvault.hmsbackend.repository;
+
+import com.medvault.hmsbackend.model.RollupBackfillPartition;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface RollupBackfillPartitionRepository extends JpaRepository<RollupBackfillPartition, Long> {
+
+    // The newest run that still has work left, if any
+    @Query("SELECT MAX(p.runId) FROM RollupBackfillPartition p WHERE p.completedAt IS NULL")
+    Long findUnfinishedRunId();
+
+    List<RollupBackfillPartition> findByRunIdAndCompletedAtIsNullOrderById(Long runId);
+
+    long countByRunId(Long runId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RollupBackfillPartition p WHERE p.runId <> :runId")
+    int deleteOtherRuns(@Param("runId") Long runId);
+}
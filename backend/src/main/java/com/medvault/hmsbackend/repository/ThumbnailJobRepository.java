@@ -0,0 +1,35 @@
+package com.medvault.hmsbackend.repository;
+
+import com.medvault.hmsbackend.model.ThumbnailJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ThumbnailJobRepository extends JpaRepository<ThumbnailJob, Long> {
+
+    @Query("SELECT j.id FROM ThumbnailJob j WHERE j.status = com.medvault.hmsbackend.model.ThumbnailJob$Status.PENDING"
+            + " AND j.nextAttemptAt <= :now ORDER BY j.id")
+    List<Long> findReadyIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // Compare-and-set claim, so only one worker (or node) picks up a job
+    @Modifying
+    @Transactional
+    @Query("UPDATE ThumbnailJob j SET j.status = com.medvault.hmsbackend.model.ThumbnailJob$Status.RUNNING, j.updatedAt = :now"
+            + " WHERE j.id = :id AND j.status = com.medvault.hmsbackend.model.ThumbnailJob$Status.PENDING")
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    // Jobs left RUNNING by a worker that died go back to the queue
+    @Modifying
+    @Transactional
+    @Query("UPDATE ThumbnailJob j SET j.status = com.medvault.hmsbackend.model.ThumbnailJob$Status.PENDING, j.updatedAt = :now"
+            + " WHERE j.status = com.medvault.hmsbackend.model.ThumbnailJob$Status.RUNNING AND j.updatedAt < :staleBefore")
+    int requeueStale(@Param("staleBefore") LocalDateTime staleBefore, @Param("now") LocalDateTime now);
+}
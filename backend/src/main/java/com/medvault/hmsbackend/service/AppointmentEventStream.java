@@ -0,0 +1,253 @@
+package com.medvault.hmsbackend.service;
+
+import com.medvault.hmsbackend.event.AppointmentChangedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class AppointmentEventStream {
+
+    private static final String RESET_EVENT = "reset";
+
+    @Value("${appointments.events.history-size:2000}")
+    private int historySize;
+
+    @Value("${appointments.events.subscriber-buffer:64}")
+    private int subscriberBuffer;
+
+    @Value("${appointments.events.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${appointments.events.dispatcher-threads:2}")
+    private int dispatcherThreads;
+
+    // Event ids are "<epoch>-<sequence>" so ids from before a restart are recognised and reset;
+    // the sequence only advances under the history lock
+    private final long epoch = System.currentTimeMillis();
+    private final AtomicLong sequence = new AtomicLong();
+
+    // Recent events for Last-Event-ID resume, oldest first
+    private final Deque<StreamEvent> history = new ArrayDeque<>();
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private ExecutorService dispatcher;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        dispatcher = Executors.newFixedThreadPool(dispatcherThreads, runnable -> {
+            Thread thread = new Thread(runnable, "appointment-events-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        dispatcher.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+    }
+
+    public SseEmitter subscribeDoctor(Long doctorId, String lastEventId) {
+        return subscribe(doctorId, null, lastEventId);
+    }
+
+    public SseEmitter subscribePatient(Long patientId, String lastEventId) {
+        return subscribe(null, patientId, lastEventId);
+    }
+
+    private SseEmitter subscribe(Long doctorId, Long patientId, String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(emitter, doctorId, patientId, subscriberBuffer);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+
+        // Registration and replay happen under the history lock, which publishing also holds, so
+        // every event is delivered exactly once and in order
+        synchronized (history) {
+            subscribers.add(subscriber);
+            List<StreamEvent> missed = replay(subscriber, lastEventId);
+            if (missed == null) {
+                subscriber.offer(StreamEvent.reset(sequence.get()));
+            } else {
+                for (StreamEvent event : missed) {
+                    subscriber.offer(event);
+                }
+            }
+        }
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAppointmentChanged(AppointmentChangedEvent change) {
+        synchronized (history) {
+            StreamEvent event = new StreamEvent(sequence.incrementAndGet(), change.getType().name().toLowerCase(), change);
+            history.addLast(event);
+            while (history.size() > historySize) {
+                history.removeFirst();
+            }
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.accepts(change)) {
+                    subscriber.offer(event);
+                }
+            }
+        }
+    }
+
+    // Keeps idle connections open through proxies and detects clients that went away
+    @Scheduled(fixedDelayString = "${appointments.events.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(StreamEvent.HEARTBEAT);
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    // Returns the events the subscriber missed, or null if they are no longer in the history;
+    // callers hold the history lock
+    private List<StreamEvent> replay(Subscriber subscriber, String lastEventId) {
+        List<StreamEvent> missed = new ArrayList<>();
+        if (lastEventId == null || lastEventId.isEmpty()) {
+            return missed;
+        }
+        long lastSequence = parseSequence(lastEventId);
+        if (lastSequence < 0) {
+            return null;
+        }
+        StreamEvent oldest = history.peekFirst();
+        if (oldest != null && oldest.sequence > lastSequence + 1) {
+            return null;
+        }
+        for (StreamEvent event : history) {
+            if (event.sequence > lastSequence && subscriber.accepts(event.change)) {
+                missed.add(event);
+            }
+        }
+        return missed.size() > subscriberBuffer ? null : missed;
+    }
+
+    private long parseSequence(String eventId) {
+        int dash = eventId.indexOf('-');
+        try {
+            if (dash < 0 || Long.parseLong(eventId.substring(0, dash)) != epoch) {
+                return -1;
+            }
+            return Long.parseLong(eventId.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final Long doctorId;
+        private final Long patientId;
+        private final BlockingQueue<StreamEvent> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private Subscriber(SseEmitter emitter, Long doctorId, Long patientId, int capacity) {
+            this.emitter = emitter;
+            this.doctorId = doctorId;
+            this.patientId = patientId;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        private boolean accepts(AppointmentChangedEvent change) {
+            return doctorId != null ? doctorId.equals(change.getDoctorId()) : patientId.equals(change.getPatientId());
+        }
+
+        // Never blocks the publisher; a subscriber that falls a full buffer behind is disconnected
+        // and resumes from Last-Event-ID when it reconnects
+        private void offer(StreamEvent event) {
+            if (!queue.offer(event)) {
+                if (event != StreamEvent.HEARTBEAT) {
+                    subscribers.remove(this);
+                    emitter.complete();
+                }
+                return;
+            }
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                dispatcher.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                StreamEvent event;
+                while ((event = queue.poll()) != null) {
+                    emitter.send(event.toSse(epoch));
+                }
+            } catch (IOException | IllegalStateException e) {
+                subscribers.remove(this);
+                queue.clear();
+                emitter.completeWithError(e);
+            } finally {
+                draining.set(false);
+            }
+            if (!queue.isEmpty() && subscribers.contains(this)) {
+                scheduleDrain();
+            }
+        }
+    }
+
+    private static final class StreamEvent {
+        private static final StreamEvent HEARTBEAT = new StreamEvent(0, null, null);
+
+        private final long sequence;
+        private final String name;
+        private final AppointmentChangedEvent change;
+
+        private StreamEvent(long sequence, String name, AppointmentChangedEvent change) {
+            this.sequence = sequence;
+            this.name = name;
+            this.change = change;
+        }
+
+        private static StreamEvent reset(long sequence) {
+            return new StreamEvent(sequence, RESET_EVENT, null);
+        }
+
+        private SseEmitter.SseEventBuilder toSse(long epoch) {
+            if (this == HEARTBEAT) {
+                return SseEmitter.event().comment("heartbeat");
+            }
+            SseEmitter.SseEventBuilder builder = SseEmitter.event()
+                    .id(epoch + "-" + sequence)
+                    .name(name);
+            // A reset tells the client its position is lost and it should refetch the full list
+            return change != null ? builder.data(change, MediaType.APPLICATION_JSON) : builder.data("{}");
+        }
+    }
+}
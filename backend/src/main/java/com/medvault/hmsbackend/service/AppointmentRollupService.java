@@ -0,0 +1,162 @@
+package com.medvault.hmsbackend.service;
+
+import com.medvault.hmsbackend.dto.AppointmentStats;
+import com.medvault.hmsbackend.event.AppointmentChangedEvent;
+import com.medvault.hmsbackend.model.Appointment;
+import com.medvault.hmsbackend.repository.AppointmentRepository;
+import com.medvault.hmsbackend.repository.AppointmentRollupRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Keeps appointment_rollups in step with the appointments table. Changes made inside a transaction
+// are applied as +1/-1 deltas that commit with the change; changes made without one recount the
+// single doctor-day they touched. Both take row locks on appointments before rollups, the same
+// order as RollupBackfillJob, so a backfill never double-counts or misses a concurrent change.
+@Service
+public class AppointmentRollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(AppointmentRollupService.class);
+
+    private static final int MAX_LOCK_RETRIES = 3;
+
+    private static final String UPSERT_DELTA = "INSERT INTO appointment_rollups (doctor_id, date, status, total)"
+            + " VALUES (?, ?, ?, ?) ON DUPLICATE KEY UPDATE total = total + ?";
+    private static final String INSERT = "INSERT INTO appointment_rollups (doctor_id, date, status, total) VALUES (?, ?, ?, ?)";
+
+    @Autowired
+    private AppointmentRollupRepository rollupRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onAppointmentChanged(AppointmentChangedEvent change) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            try {
+                rebuildRange(change.getDoctorId(), change.getDate(), change.getDate(), null);
+            } catch (RuntimeException e) {
+                // The appointment change has already committed; the next change to that day or a
+                // backfill corrects the rollup
+                log.warn("Could not update appointment rollups for doctor {} on {}", change.getDoctorId(), change.getDate(), e);
+            }
+            return;
+        }
+        if (change.getPreviousStatus() == change.getStatus()) {
+            return;
+        }
+        // Write the appointment rows first so their locks are held before the rollup rows'; flushing
+        // through the repository keeps the usual exception translation for optimistic lock failures
+        appointmentRepository.flush();
+        if (change.getPreviousStatus() != null) {
+            addDelta(change.getDoctorId(), change.getDate(), change.getPreviousStatus(), -1);
+        }
+        addDelta(change.getDoctorId(), change.getDate(), change.getStatus(), 1);
+    }
+
+    // Per-day counts; doctorId null covers every doctor
+    public Map<LocalDate, AppointmentStats> daily(Long doctorId, LocalDate from, LocalDate to) {
+        LocalDate today = LocalDate.now();
+        Map<LocalDate, AppointmentStats> days = new TreeMap<>();
+        for (Object[] row : rollupRepository.sumByDate(doctorId, from, to)) {
+            LocalDate date = (LocalDate) row[0];
+            long total = ((Number) row[2]).longValue();
+            days.computeIfAbsent(date, d -> new AppointmentStats())
+                    .add((Appointment.Status) row[1], total, date.isBefore(today) ? total : 0);
+        }
+        return days;
+    }
+
+    // Counts per doctor over the range; doctorId null covers every doctor
+    public Map<Long, AppointmentStats> byDoctor(Long doctorId, LocalDate from, LocalDate to) {
+        Map<Long, AppointmentStats> doctors = new TreeMap<>();
+        for (Object[] row : rollupRepository.sumByDoctor(doctorId, from, to, LocalDate.now())) {
+            doctors.computeIfAbsent((Long) row[0], id -> new AppointmentStats())
+                    .add((Appointment.Status) row[1], ((Number) row[2]).longValue(), ((Number) row[3]).longValue());
+        }
+        return doctors;
+    }
+
+    public Map<String, AppointmentStats> bySpecialization(LocalDate from, LocalDate to) {
+        Map<String, AppointmentStats> specializations = new TreeMap<>();
+        for (Object[] row : rollupRepository.sumBySpecialization(from, to, LocalDate.now())) {
+            String specialization = row[0] != null ? (String) row[0] : "Unspecified";
+            specializations.computeIfAbsent(specialization, s -> new AppointmentStats())
+                    .add((Appointment.Status) row[1], ((Number) row[2]).longValue(), ((Number) row[3]).longValue());
+        }
+        return specializations;
+    }
+
+    private void addDelta(Long doctorId, LocalDate date, Appointment.Status status, int delta) {
+        jdbcTemplate.update(UPSERT_DELTA, doctorId, Date.valueOf(date), status.name(), delta, delta);
+    }
+
+    // Replaces the rollups of one doctor between from and to (inclusive) with fresh counts. The
+    // locking read sees the latest committed appointments and holds them, and the gaps between them,
+    // until the rollups are written, so whichever rebuild of a range runs last leaves it correct.
+    // Rows are counted here because H2 rejects a locking clause on a grouped query.
+    // inTransaction, if given, runs before the commit.
+    public void rebuildRange(Long doctorId, LocalDate from, LocalDate to, Runnable inTransaction) {
+        withLockRetries(() -> transactionTemplate.executeWithoutResult(status -> {
+            Map<Date, Map<String, Long>> counts = new TreeMap<>();
+            jdbcTemplate.query("SELECT date, status FROM appointments WHERE doctor_id = ? AND date BETWEEN ? AND ? FOR UPDATE",
+                    (RowCallbackHandler) rs -> counts.computeIfAbsent(rs.getDate(1), d -> new TreeMap<>())
+                            .merge(rs.getString(2), 1L, Long::sum),
+                    doctorId, Date.valueOf(from), Date.valueOf(to));
+            List<Object[]> rows = new ArrayList<>();
+            counts.forEach((date, byStatus) -> byStatus.forEach((appointmentStatus, total) ->
+                    rows.add(new Object[] {doctorId, date, appointmentStatus, total})));
+            jdbcTemplate.update("DELETE FROM appointment_rollups WHERE doctor_id = ? AND date BETWEEN ? AND ?",
+                    doctorId, Date.valueOf(from), Date.valueOf(to));
+            jdbcTemplate.batchUpdate(INSERT, rows);
+            if (inTransaction != null) {
+                inTransaction.run();
+            }
+        }));
+    }
+
+    // InnoDB picks a victim when two transactions wait on each other; the loser simply runs again
+    private void withLockRetries(Runnable work) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                work.run();
+                return;
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt >= MAX_LOCK_RETRIES) {
+                    throw e;
+                }
+                log.debug("Retrying rollup update after lock failure", e);
+            }
+        }
+    }
+}
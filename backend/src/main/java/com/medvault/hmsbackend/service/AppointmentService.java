@@ -0,0 +1,120 @@
+package com.medvault.hmsbackend.service;
+
+import com.medvault.hmsbackend.dto.StatusUpdateItem;
+import com.medvault.hmsbackend.dto.StatusUpdateResult;
+import com.medvault.hmsbackend.dto.StatusUpdateResult.Outcome;
+import com.medvault.hmsbackend.event.AppointmentChangedEvent;
+import com.medvault.hmsbackend.model.Appointment;
+import com.medvault.hmsbackend.repository.AppointmentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+public class AppointmentService {
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private AppointmentSlotIndex slotIndex;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Applies many status changes for one doctor in a single transaction; the changed rows are
+    // flushed as one JDBC batch at commit
+    @Transactional
+    public List<StatusUpdateResult> applyStatusUpdates(Long doctorId, List<StatusUpdateItem> items) {
+        Set<Long> ids = items.stream()
+                .map(StatusUpdateItem::getId)
+                .filter(id -> id != null)
+                .collect(Collectors.toSet());
+
+        // Appointments of other doctors are simply not found, so ownership is enforced by the query
+        Map<Long, Appointment> owned = ids.isEmpty() ? Map.of()
+                : appointmentRepository.findByIdInAndDoctorId(ids, doctorId).stream()
+                        .collect(Collectors.toMap(Appointment::getId, Function.identity()));
+
+        List<Appointment> claimed = new ArrayList<>();
+        List<Appointment> released = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        List<StatusUpdateResult> results = new ArrayList<>(items.size());
+
+        for (StatusUpdateItem item : items) {
+            Appointment appointment = item.getId() != null ? owned.get(item.getId()) : null;
+            if (appointment == null) {
+                results.add(new StatusUpdateResult(item.getId(), Outcome.NOT_FOUND, "Appointment not found"));
+                continue;
+            }
+            if (!seen.add(item.getId())) {
+                results.add(new StatusUpdateResult(item.getId(), Outcome.INVALID, "Duplicate appointment in batch"));
+                continue;
+            }
+
+            Appointment.Status newStatus;
+            try {
+                newStatus = Appointment.Status.valueOf(item.getStatus().toUpperCase());
+            } catch (RuntimeException e) {
+                results.add(new StatusUpdateResult(item.getId(), Outcome.INVALID, "Invalid status: " + item.getStatus()));
+                continue;
+            }
+
+            Appointment.Status previousStatus = appointment.getStatus();
+            if (previousStatus == Appointment.Status.CANCELLED && newStatus != Appointment.Status.CANCELLED) {
+                if (!slotIndex.tryClaim(doctorId, appointment.getDate(), appointment.getTime())) {
+                    results.add(new StatusUpdateResult(item.getId(), Outcome.CONFLICT, "Time slot is already booked"));
+                    continue;
+                }
+                claimed.add(appointment);
+            } else if (previousStatus != Appointment.Status.CANCELLED && newStatus == Appointment.Status.CANCELLED) {
+                released.add(appointment);
+            }
+
+            appointment.setStatus(newStatus);
+            appointment.setSlotActive(newStatus == Appointment.Status.CANCELLED ? null : Boolean.TRUE);
+            if (item.getNotes() != null) {
+                appointment.setNotes(item.getNotes());
+            }
+            // Delivered to listeners once the transaction commits
+            eventPublisher.publishEvent(AppointmentChangedEvent.statusChanged(appointment, previousStatus));
+            results.add(new StatusUpdateResult(item.getId(), Outcome.UPDATED, null));
+        }
+
+        syncSlotIndexOnCompletion(doctorId, claimed, released);
+        return results;
+    }
+
+    // Slots freed by cancellation are only released once the commit succeeds, and slots claimed
+    // for reactivation are confirmed if it does and given back if it does not
+    private void syncSlotIndexOnCompletion(Long doctorId, List<Appointment> claimed, List<Appointment> released) {
+        if (claimed.isEmpty() && released.isEmpty()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    for (Appointment appointment : claimed) {
+                        slotIndex.confirm(doctorId, appointment.getDate(), appointment.getTime());
+                    }
+                }
+                List<Appointment> toRelease = status == STATUS_COMMITTED ? released : claimed;
+                for (Appointment appointment : toRelease) {
+                    slotIndex.release(doctorId, appointment.getDate(), appointment.getTime());
+                }
+            }
+        });
+    }
+}
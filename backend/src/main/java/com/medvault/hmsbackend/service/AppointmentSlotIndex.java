@@ -0,0 +1,210 @@
+package com.medvault.hmsbackend.service;
+
+import com.medvault.hmsbackend.repository.AppointmentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+@Component
+public class AppointmentSlotIndex {
+
+    private static final int STRIPES = 64;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    // Days further ahead than this are dropped by the purge and reloaded on their next use
+    @Value("${appointments.slot-index.max-days-ahead:90}")
+    private int maxDaysAhead;
+
+    // One bit per minute of the day, per doctor and date; days are loaded lazily on first use
+    private final Map<Long, Map<LocalDate, BitSet>> doctors = new ConcurrentHashMap<>();
+
+    // Claims whose row is not committed yet; a refresh keeps them, as the database cannot show them
+    private final Map<Long, Map<LocalDate, BitSet>> pending = new ConcurrentHashMap<>();
+
+    // Doctors hash onto a fixed set of locks so bookings for different doctors proceed in parallel
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    public AppointmentSlotIndex() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public boolean tryClaim(Long doctorId, LocalDate date, LocalTime time) {
+        ReentrantLock lock = lockFor(doctorId);
+        lock.lock();
+        try {
+            BitSet day = day(doctorId, date);
+            int minute = minuteOf(time);
+            if (day.get(minute)) {
+                return false;
+            }
+            day.set(minute);
+            pending.computeIfAbsent(doctorId, id -> new HashMap<>())
+                    .computeIfAbsent(date, d -> new BitSet(MINUTES_PER_DAY)).set(minute);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The claimed slot is now held by a committed row (or was found taken in the database)
+    public void confirm(Long doctorId, LocalDate date, LocalTime time) {
+        ReentrantLock lock = lockFor(doctorId);
+        lock.lock();
+        try {
+            clearPending(doctorId, date, minuteOf(time));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release(Long doctorId, LocalDate date, LocalTime time) {
+        ReentrantLock lock = lockFor(doctorId);
+        lock.lock();
+        try {
+            Map<LocalDate, BitSet> days = doctors.get(doctorId);
+            BitSet day = days != null ? days.get(date) : null;
+            if (day != null) {
+                day.clear(minuteOf(time));
+            }
+            clearPending(doctorId, date, minuteOf(time));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isBooked(Long doctorId, LocalDate date, LocalTime time) {
+        ReentrantLock lock = lockFor(doctorId);
+        lock.lock();
+        try {
+            return day(doctorId, date).get(minuteOf(time));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Returns a copy of the day's bitmap so callers can scan it without holding the lock
+    public BitSet bookedMinutes(Long doctorId, LocalDate date) {
+        ReentrantLock lock = lockFor(doctorId);
+        lock.lock();
+        try {
+            return (BitSet) day(doctorId, date).clone();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Loads every day of the range that is not cached yet with a single query, instead of one
+    // query per day as a scan across the range would otherwise cost on a cold cache
+    public void preload(Long doctorId, LocalDate from, LocalDate to) {
+        ReentrantLock lock = lockFor(doctorId);
+        lock.lock();
+        try {
+            Map<LocalDate, BitSet> days = doctors.computeIfAbsent(doctorId, id -> new HashMap<>());
+            if (from.datesUntil(to.plusDays(1)).allMatch(days::containsKey)) {
+                return;
+            }
+            Map<LocalDate, BitSet> loaded = new HashMap<>();
+            for (Object[] row : appointmentRepository.findBookedSlots(doctorId, from, to)) {
+                loaded.computeIfAbsent((LocalDate) row[0], date -> new BitSet(MINUTES_PER_DAY)).set(minuteOf((LocalTime) row[1]));
+            }
+            from.datesUntil(to.plusDays(1)).filter(date -> !days.containsKey(date)).forEach(date ->
+                    days.put(date, withPending(doctorId, date, loaded.getOrDefault(date, new BitSet(MINUTES_PER_DAY)))));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Reloads a day from the database, e.g. after another node booked or cancelled in it
+    public void refresh(Long doctorId, LocalDate date) {
+        ReentrantLock lock = lockFor(doctorId);
+        lock.lock();
+        try {
+            doctors.computeIfAbsent(doctorId, id -> new HashMap<>()).put(date, withPending(doctorId, date, load(doctorId, date)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Keeps the cache to the days between today and max-days-ahead; a booking far in the future
+    // would otherwise leave its day loaded for good. Pending claims are only dropped once past.
+    @Scheduled(cron = "${appointments.slot-index.purge-cron:0 0 * * * *}")
+    public void purge() {
+        LocalDate today = LocalDate.now();
+        LocalDate lastDay = today.plusDays(maxDaysAhead);
+        purge(doctors, date -> date.isBefore(today) || date.isAfter(lastDay));
+        purge(pending, date -> date.isBefore(today));
+    }
+
+    private void purge(Map<Long, Map<LocalDate, BitSet>> index, Predicate<LocalDate> expired) {
+        for (Map.Entry<Long, Map<LocalDate, BitSet>> entry : index.entrySet()) {
+            ReentrantLock lock = lockFor(entry.getKey());
+            lock.lock();
+            try {
+                entry.getValue().keySet().removeIf(expired);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private BitSet day(Long doctorId, LocalDate date) {
+        Map<LocalDate, BitSet> days = doctors.computeIfAbsent(doctorId, id -> new HashMap<>());
+        BitSet day = days.get(date);
+        if (day == null) {
+            day = withPending(doctorId, date, load(doctorId, date));
+            days.put(date, day);
+        }
+        return day;
+    }
+
+    // A day loaded from the database cannot show claims whose row is not committed yet
+    private BitSet withPending(Long doctorId, LocalDate date, BitSet day) {
+        Map<LocalDate, BitSet> claims = pending.get(doctorId);
+        if (claims != null && claims.containsKey(date)) {
+            day.or(claims.get(date));
+        }
+        return day;
+    }
+
+    private void clearPending(Long doctorId, LocalDate date, int minute) {
+        Map<LocalDate, BitSet> claims = pending.get(doctorId);
+        BitSet day = claims != null ? claims.get(date) : null;
+        if (day != null) {
+            day.clear(minute);
+            if (day.isEmpty()) {
+                claims.remove(date);
+            }
+        }
+    }
+
+    private BitSet load(Long doctorId, LocalDate date) {
+        BitSet day = new BitSet(MINUTES_PER_DAY);
+        for (LocalTime time : appointmentRepository.findBookedTimes(doctorId, date)) {
+            day.set(minuteOf(time));
+        }
+        return day;
+    }
+
+    private ReentrantLock lockFor(Long doctorId) {
+        return locks[Math.floorMod(doctorId.hashCode(), STRIPES)];
+    }
+
+    private static int minuteOf(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+}
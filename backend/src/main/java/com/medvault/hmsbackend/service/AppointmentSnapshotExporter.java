@@ -0,0 +1,182 @@
+package com.medvault.hmsbackend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Writes the appointments table to one columnar file per month (see AppointmentSnapshotFile) plus
+// a manifest.json listing them, for offline analysis. A cheap per-month fingerprint of the exported
+// columns is compared with the one stored in each file, so incremental runs only rewrite the
+// months that changed.
+@Service
+public class AppointmentSnapshotExporter {
+
+    private static final Logger log = LoggerFactory.getLogger(AppointmentSnapshotExporter.class);
+
+    private static final String MANIFEST = "manifest.json";
+
+    // Every exported column goes into the fingerprint, so any change to them changes it
+    private static final String ROW_COLUMNS = "CONCAT_WS(':', a.id, a.doctor_id, a.patient_id, a.date, a.time,"
+            + " a.status, d.specialization)";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${exports.snapshots.dir:data/exports/appointments}")
+    private String directoryPath;
+
+    @Value("${spring.sql.init.platform:mysql}")
+    private String platform;
+
+    private Path directory;
+    private String fingerprintQuery;
+    private JdbcTemplate streaming;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @PostConstruct
+    void init() {
+        directory = Paths.get(directoryPath).toAbsolutePath();
+        // The embedded H2 stand-in has ORA_HASH and BIT_XOR_AGG where MySQL has CRC32 and BIT_XOR
+        boolean h2 = "h2".equals(platform);
+        String checksum = (h2 ? "ORA_HASH(" : "CRC32(") + ROW_COLUMNS + ")";
+        fingerprintQuery = "SELECT YEAR(a.date) * 100 + MONTH(a.date) AS ym, COUNT(*), "
+                + (h2 ? "BIT_XOR_AGG(" : "BIT_XOR(") + checksum + "), SUM(" + checksum + ")"
+                + " FROM appointments a JOIN doctors d ON d.id = a.doctor_id GROUP BY ym";
+        // MySQL only streams a result set row by row with this fetch size; otherwise it buffers it
+        // whole. H2 rejects negative fetch sizes.
+        streaming = new JdbcTemplate(dataSource);
+        streaming.setFetchSize(h2 ? 1000 : Integer.MIN_VALUE);
+    }
+
+    @Scheduled(cron = "${exports.snapshots.cron:0 15 2 * * *}")
+    public void scheduledExport() {
+        try {
+            export();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Appointment snapshot export failed", e);
+        }
+    }
+
+    // Returns false if an export is already running
+    public boolean export() throws IOException {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            long started = System.currentTimeMillis();
+            Files.createDirectories(directory);
+            Map<Integer, Long> fingerprints = fingerprints();
+
+            int written = 0;
+            List<Map<String, Object>> partitions = new ArrayList<>();
+            for (Map.Entry<Integer, Long> month : fingerprints.entrySet()) {
+                Path file = directory.resolve(AppointmentSnapshotFile.fileName(month.getKey()));
+                AppointmentSnapshotFile.Header header = AppointmentSnapshotFile.readHeader(file);
+                if (header == null || header.getFingerprint() != month.getValue()) {
+                    writeMonth(month.getKey(), month.getValue(), file);
+                    header = AppointmentSnapshotFile.readHeader(file);
+                    written++;
+                }
+                Map<String, Object> partition = new LinkedHashMap<>();
+                partition.put("month", String.format("%04d-%02d", month.getKey() / 100, month.getKey() % 100));
+                partition.put("file", file.getFileName().toString());
+                partition.put("rows", header.getRows());
+                partition.put("bytes", Files.size(file));
+                partition.put("fingerprint", Long.toHexString(month.getValue()));
+                partitions.add(partition);
+            }
+            int removed = removeStale(fingerprints);
+            writeManifest(partitions);
+            log.info("Appointment snapshot: {} months written, {} unchanged, {} removed in {} ms",
+                    written, fingerprints.size() - written, removed, System.currentTimeMillis() - started);
+            return true;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    // One aggregate pass over the table; XOR and sum of row checksums together with the row count
+    // make an accidental match after a change vanishingly unlikely
+    private Map<Integer, Long> fingerprints() {
+        Map<Integer, Long> fingerprints = new TreeMap<>();
+        jdbcTemplate.query(fingerprintQuery,
+                rs -> {
+                    long fingerprint = rs.getLong(2) * 0x9E3779B97F4A7C15L ^ (rs.getLong(3) << 32) ^ rs.getLong(4);
+                    fingerprints.put(rs.getInt(1), fingerprint);
+                });
+        return fingerprints;
+    }
+
+    // Streams the month over the date index; only the month's columns are held in memory
+    private void writeMonth(int yearMonth, long fingerprint, Path file) throws IOException {
+        LocalDate first = LocalDate.of(yearMonth / 100, yearMonth % 100, 1);
+        AppointmentSnapshotFile.Writer writer = new AppointmentSnapshotFile.Writer(yearMonth, fingerprint);
+        streaming.query("SELECT a.id, a.doctor_id, a.patient_id, a.date, a.time, a.status, d.specialization"
+                        + " FROM appointments a JOIN doctors d ON d.id = a.doctor_id"
+                        + " WHERE a.date BETWEEN ? AND ? ORDER BY a.date, a.time, a.id",
+                rs -> {
+                    writer.add(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getDate(4).toLocalDate(),
+                            rs.getTime(5).toLocalTime(), rs.getString(6), rs.getString(7));
+                },
+                Date.valueOf(first), Date.valueOf(first.plusMonths(1).minusDays(1)));
+        writer.writeTo(file);
+    }
+
+    // Months whose appointments are all gone
+    private int removeStale(Map<Integer, Long> fingerprints) throws IOException {
+        List<Path> stale = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "appointments-*.col")) {
+            for (Path file : files) {
+                AppointmentSnapshotFile.Header header = AppointmentSnapshotFile.readHeader(file);
+                if (header == null || !fingerprints.containsKey(header.getYearMonth())) {
+                    stale.add(file);
+                }
+            }
+        }
+        for (Path file : stale) {
+            Files.deleteIfExists(file);
+        }
+        return stale.size();
+    }
+
+    private void writeManifest(List<Map<String, Object>> partitions) throws IOException {
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("format", "MVCOL");
+        manifest.put("version", AppointmentSnapshotFile.FORMAT_VERSION);
+        manifest.put("generatedAt", LocalDateTime.now().toString());
+        manifest.put("columns", AppointmentSnapshotFile.COLUMNS);
+        manifest.put("partitions", partitions);
+        Path temp = directory.resolve(MANIFEST + ".tmp");
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(temp.toFile(), manifest);
+        Files.move(temp, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
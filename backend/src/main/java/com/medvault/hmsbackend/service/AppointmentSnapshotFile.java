@@ -0,0 +1,409 @@
+package com.medvault.hmsbackend.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+// One month of appointments in a small columnar file, so bulk readers only decode the columns they
+// need. Layout, big-endian throughout:
+//
+//   "MVCOL" 0x01     magic and format version
+//   int              year * 100 + month
+//   long             fingerprint of the source rows, used to skip unchanged months
+//   int              row count
+//   short            column count, then per column: UTF name, byte encoding, int offset, int length
+//                    (offsets are relative to the end of this directory)
+//   ...              column data
+//   int              CRC32 of everything before it
+//
+// Encodings, with LEB128 varints:
+//   DELTA   zigzag varint difference from the previous row (the first from 0)
+//   VARINT  plain varint
+//   BYTE    one byte per row
+//   DICT    varint entry count; each entry as varint (UTF-8 length + 1), 0 meaning null, then the
+//           bytes; one byte bit width; then the row codes bit-packed, least significant bit first
+//
+// Rows are sorted by date, time and id. Columns: id (DELTA), doctor_id (VARINT), patient_id
+// (VARINT), day of month (BYTE), time as second of day (DELTA), status (DICT), specialization (DICT).
+public final class AppointmentSnapshotFile {
+
+    public static final int FORMAT_VERSION = 1;
+
+    public static final byte DELTA = 1;
+    public static final byte VARINT = 2;
+    public static final byte BYTE = 3;
+    public static final byte DICT = 4;
+
+    public static final List<String> COLUMNS = List.of("id", "doctor_id", "patient_id", "day", "time", "status", "specialization");
+
+    private static final byte[] MAGIC = {'M', 'V', 'C', 'O', 'L', FORMAT_VERSION};
+    private static final int HEADER_SIZE = MAGIC.length + 4 + 8 + 4;
+
+    private AppointmentSnapshotFile() {}
+
+    public static String fileName(int yearMonth) {
+        return String.format("appointments-%04d-%02d.col", yearMonth / 100, yearMonth % 100);
+    }
+
+    // Reads the fixed header only; null if the file is missing, truncated or in another format
+    public static Header readHeader(Path file) throws IOException {
+        if (!Files.isRegularFile(file) || Files.size(file) < HEADER_SIZE + 4) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            DataInputStream data = new DataInputStream(in);
+            byte[] magic = new byte[MAGIC.length];
+            data.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                return null;
+            }
+            return new Header(data.readInt(), data.readLong(), data.readInt());
+        }
+    }
+
+    public static Snapshot read(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length < HEADER_SIZE + 4 || !Arrays.equals(Arrays.copyOf(bytes, MAGIC.length), MAGIC)) {
+            throw new IOException("Not an appointment snapshot: " + file);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if ((int) crc.getValue() != buffer.getInt(bytes.length - 4)) {
+            throw new IOException("Corrupt appointment snapshot: " + file);
+        }
+        buffer.position(MAGIC.length);
+        Header header = new Header(buffer.getInt(), buffer.getLong(), buffer.getInt());
+
+        DataInputStream directory = new DataInputStream(
+                new ByteArrayInputStream(bytes, buffer.position(), bytes.length - buffer.position()));
+        int columnCount = directory.readShort();
+        Map<String, Column> columns = new LinkedHashMap<>();
+        List<Column> ordered = new ArrayList<>(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            Column column = new Column(directory.readUTF(), directory.readByte(), directory.readInt(), directory.readInt());
+            columns.put(column.name, column);
+            ordered.add(column);
+        }
+        // What is left unread in the stream is the column data and the CRC
+        int dataStart = bytes.length - directory.available();
+        for (Column column : ordered) {
+            if (column.offset < 0 || column.length < 0 || (long) dataStart + column.offset + column.length > bytes.length - 4) {
+                throw new IOException("Corrupt appointment snapshot directory: " + file);
+            }
+        }
+        return new Snapshot(header, bytes, dataStart, columns);
+    }
+
+    public static final class Header {
+        private final int yearMonth;
+        private final long fingerprint;
+        private final int rows;
+
+        private Header(int yearMonth, long fingerprint, int rows) {
+            this.yearMonth = yearMonth;
+            this.fingerprint = fingerprint;
+            this.rows = rows;
+        }
+
+        public int getYearMonth() { return yearMonth; }
+        public long getFingerprint() { return fingerprint; }
+        public int getRows() { return rows; }
+    }
+
+    private static final class Column {
+        private final String name;
+        private final byte encoding;
+        private final int offset;
+        private final int length;
+
+        private Column(String name, byte encoding, int offset, int length) {
+            this.name = name;
+            this.encoding = encoding;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    // A decoded file; columns are decoded on request
+    public static final class Snapshot {
+        private final Header header;
+        private final byte[] bytes;
+        private final int dataStart;
+        private final Map<String, Column> columns;
+
+        private Snapshot(Header header, byte[] bytes, int dataStart, Map<String, Column> columns) {
+            this.header = header;
+            this.bytes = bytes;
+            this.dataStart = dataStart;
+            this.columns = columns;
+        }
+
+        public Header getHeader() { return header; }
+        public List<String> getColumnNames() { return new ArrayList<>(columns.keySet()); }
+
+        // For DELTA, VARINT and BYTE columns
+        public long[] longs(String name) {
+            Column column = column(name);
+            ByteBuffer in = ByteBuffer.wrap(bytes, dataStart + column.offset, column.length);
+            long[] values = new long[header.rows];
+            long previous = 0;
+            for (int i = 0; i < values.length; i++) {
+                switch (column.encoding) {
+                    case DELTA -> {
+                        long zigzag = readVarLong(in);
+                        previous += (zigzag >>> 1) ^ -(zigzag & 1);
+                        values[i] = previous;
+                    }
+                    case VARINT -> values[i] = readVarLong(in);
+                    case BYTE -> values[i] = in.get() & 0xff;
+                    default -> throw new IllegalArgumentException("Column " + name + " is not numeric");
+                }
+            }
+            return values;
+        }
+
+        // For DICT columns; rows share the dictionary's String instances
+        public String[] strings(String name) {
+            Column column = column(name);
+            if (column.encoding != DICT) {
+                throw new IllegalArgumentException("Column " + name + " is not dictionary encoded");
+            }
+            ByteBuffer in = ByteBuffer.wrap(bytes, dataStart + column.offset, column.length);
+            String[] dictionary = new String[(int) readVarLong(in)];
+            for (int i = 0; i < dictionary.length; i++) {
+                int length = (int) readVarLong(in);
+                if (length > 0) {
+                    dictionary[i] = new String(bytes, in.position(), length - 1, StandardCharsets.UTF_8);
+                    in.position(in.position() + length - 1);
+                }
+            }
+            int width = in.get();
+            String[] values = new String[header.rows];
+            long bits = 0;
+            int available = 0;
+            int mask = (1 << width) - 1;
+            for (int i = 0; i < values.length; i++) {
+                while (available < width) {
+                    bits |= (long) (in.get() & 0xff) << available;
+                    available += 8;
+                }
+                values[i] = dictionary[(int) (bits & mask)];
+                bits >>>= width;
+                available -= width;
+            }
+            return values;
+        }
+
+        private Column column(String name) {
+            Column column = columns.get(name);
+            if (column == null) {
+                throw new IllegalArgumentException("No column " + name);
+            }
+            return column;
+        }
+    }
+
+    // Collects one month of rows in memory, in the order they are added, and writes them out
+    public static final class Writer {
+        private final int yearMonth;
+        private final long fingerprint;
+        private int rows;
+        private long[] ids = new long[1024];
+        private long[] doctorIds = new long[1024];
+        private long[] patientIds = new long[1024];
+        private byte[] days = new byte[1024];
+        private int[] seconds = new int[1024];
+        private int[] statuses = new int[1024];
+        private int[] specializations = new int[1024];
+        private final Map<String, Integer> statusDictionary = new LinkedHashMap<>();
+        private final Map<String, Integer> specializationDictionary = new LinkedHashMap<>();
+
+        public Writer(int yearMonth, long fingerprint) {
+            this.yearMonth = yearMonth;
+            this.fingerprint = fingerprint;
+        }
+
+        public void add(long id, long doctorId, long patientId, LocalDate date, LocalTime time,
+                        String status, String specialization) {
+            if (rows == ids.length) {
+                int capacity = rows * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                doctorIds = Arrays.copyOf(doctorIds, capacity);
+                patientIds = Arrays.copyOf(patientIds, capacity);
+                days = Arrays.copyOf(days, capacity);
+                seconds = Arrays.copyOf(seconds, capacity);
+                statuses = Arrays.copyOf(statuses, capacity);
+                specializations = Arrays.copyOf(specializations, capacity);
+            }
+            ids[rows] = id;
+            doctorIds[rows] = doctorId;
+            patientIds[rows] = patientId;
+            days[rows] = (byte) date.getDayOfMonth();
+            seconds[rows] = time.toSecondOfDay();
+            statuses[rows] = code(statusDictionary, status);
+            specializations[rows] = code(specializationDictionary, specialization);
+            rows++;
+        }
+
+        public int getRows() { return rows; }
+
+        // Written to a temporary file and moved into place, so readers never see a partial file
+        public void writeTo(Path target) throws IOException {
+            List<String> names = COLUMNS;
+            byte[] encodings = {DELTA, VARINT, VARINT, BYTE, DELTA, DICT, DICT};
+            List<byte[]> data = List.of(
+                    deltas(ids, rows),
+                    varints(doctorIds, rows),
+                    varints(patientIds, rows),
+                    Arrays.copyOf(days, rows),
+                    deltas(Arrays.stream(seconds, 0, rows).asLongStream().toArray(), rows),
+                    dictionary(statusDictionary, statuses, rows),
+                    dictionary(specializationDictionary, specializations, rows));
+
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(header);
+            out.write(MAGIC);
+            out.writeInt(yearMonth);
+            out.writeLong(fingerprint);
+            out.writeInt(rows);
+            out.writeShort(names.size());
+            int offset = 0;
+            for (int i = 0; i < names.size(); i++) {
+                out.writeUTF(names.get(i));
+                out.writeByte(encodings[i]);
+                out.writeInt(offset);
+                out.writeInt(data.get(i).length);
+                offset += data.get(i).length;
+            }
+
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            CRC32 crc = new CRC32();
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                write(channel, crc, header.toByteArray());
+                for (byte[] column : data) {
+                    write(channel, crc, column);
+                }
+                channel.write(ByteBuffer.allocate(4).putInt(0, (int) crc.getValue()));
+                channel.force(true);
+            } catch (IOException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private static int code(Map<String, Integer> dictionary, String value) {
+            Integer code = dictionary.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.put(value, code);
+            }
+            return code;
+        }
+
+        private static void write(FileChannel channel, CRC32 crc, byte[] bytes) throws IOException {
+            crc.update(bytes);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private static byte[] deltas(long[] values, int count) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(count * 2);
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            long delta = values[i] - previous;
+            writeVarLong(out, (delta << 1) ^ (delta >> 63));
+            previous = values[i];
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] varints(long[] values, int count) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(count * 2);
+        for (int i = 0; i < count; i++) {
+            writeVarLong(out, values[i]);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] dictionary(Map<String, Integer> dictionary, int[] codes, int count) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarLong(out, dictionary.size());
+        for (String value : dictionary.keySet()) {
+            if (value == null) {
+                writeVarLong(out, 0);
+            } else {
+                byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                writeVarLong(out, utf8.length + 1);
+                out.write(utf8, 0, utf8.length);
+            }
+        }
+        int width = Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.max(0, dictionary.size() - 1)));
+        out.write(width);
+        long bits = 0;
+        int used = 0;
+        for (int i = 0; i < count; i++) {
+            bits |= (long) codes[i] << used;
+            used += width;
+            while (used >= 8) {
+                out.write((int) bits);
+                bits >>>= 8;
+                used -= 8;
+            }
+        }
+        if (used > 0) {
+            out.write((int) bits);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeVarLong(OutputStream out, long value) {
+        try {
+            while ((value & ~0x7fL) != 0) {
+                out.write((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.medvault.hmsbackend.service;
+
+import com.medvault.hmsbackend.dto.AvailableSlot;
+import com.medvault.hmsbackend.dto.DoctorSchedule;
+import com.medvault.hmsbackend.event.DoctorChangedEvent;
+import com.medvault.hmsbackend.repository.DoctorRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+@Service
+public class AvailableSlotFinder {
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private AppointmentSlotIndex slotIndex;
+
+    @Value("${appointments.availability.horizon-days:60}")
+    private int horizonDays;
+
+    // Schedules grouped by normalized specialization; replaced wholesale so readers need no lock
+    private volatile Map<String, List<DoctorSchedule>> bySpecialization = Map.of();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reload() {
+        Map<String, List<DoctorSchedule>> grouped = new HashMap<>();
+        for (DoctorSchedule schedule : doctorRepository.findAllSchedules()) {
+            grouped.computeIfAbsent(normalize(schedule.getSpecialization()), key -> new ArrayList<>()).add(schedule);
+        }
+        bySpecialization = grouped;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onDoctorChanged(DoctorChangedEvent event) {
+        DoctorSchedule updated = doctorRepository.findScheduleById(event.getDoctorId()).orElse(null);
+        Map<String, List<DoctorSchedule>> grouped = new HashMap<>();
+        for (Map.Entry<String, List<DoctorSchedule>> entry : bySpecialization.entrySet()) {
+            List<DoctorSchedule> schedules = new ArrayList<>(entry.getValue());
+            schedules.removeIf(schedule -> schedule.getDoctorId().equals(event.getDoctorId()));
+            if (!schedules.isEmpty()) {
+                grouped.put(entry.getKey(), schedules);
+            }
+        }
+        if (updated != null) {
+            grouped.computeIfAbsent(normalize(updated.getSpecialization()), key -> new ArrayList<>()).add(updated);
+        }
+        bySpecialization = grouped;
+    }
+
+    // First `limit` free slots at or after `after` across every doctor of the specialization,
+    // earliest first. Each doctor contributes a lazy cursor over its slot grid and the cursors
+    // are merged through a heap, so a doctor's bookings are only consulted once its next
+    // candidate slot reaches the front.
+    public List<AvailableSlot> findFirstAvailable(String specialization, LocalDateTime after, int limit) {
+        List<AvailableSlot> slots = new ArrayList<>(limit);
+        List<DoctorSchedule> schedules = bySpecialization.get(normalize(specialization));
+        if (schedules == null || limit <= 0) {
+            return slots;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime start = after == null || after.isBefore(now) ? now : after;
+        LocalDate lastDay = start.toLocalDate().plusDays(horizonDays);
+
+        List<SlotCursor> cursors = new ArrayList<>(schedules.size());
+        for (DoctorSchedule schedule : schedules) {
+            SlotCursor cursor = new SlotCursor(schedule, start, lastDay);
+            if (!cursor.exhausted) {
+                cursors.add(cursor);
+            }
+        }
+        PriorityQueue<SlotCursor> queue = new PriorityQueue<>(cursors);
+
+        while (slots.size() < limit && !queue.isEmpty()) {
+            SlotCursor cursor = queue.poll();
+            if (cursor.settle()) {
+                slots.add(cursor.toSlot());
+                cursor.next();
+            }
+            // Cursors only ever move forward, so re-queueing keeps the heap order valid
+            if (!cursor.exhausted) {
+                queue.offer(cursor);
+            }
+        }
+        return slots;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Walks one doctor's slot grid (work start + k * slot length) day by day up to the horizon
+    private final class SlotCursor implements Comparable<SlotCursor> {
+        private final DoctorSchedule schedule;
+        private final LocalDate lastDay;
+        private final int startMinute;
+        private final int endMinute;
+        private final int length;
+
+        private LocalDate date;
+        private int minute;
+        private BitSet booked;
+        private boolean preloaded;
+        private boolean exhausted;
+
+        private SlotCursor(DoctorSchedule schedule, LocalDateTime from, LocalDate lastDay) {
+            this.schedule = schedule;
+            this.lastDay = lastDay;
+            this.startMinute = schedule.getStartMinute();
+            this.endMinute = schedule.getEndMinute();
+            this.length = schedule.getSlotMinutes();
+            this.date = from.toLocalDate();
+            int fromMinute = from.getHour() * 60 + from.getMinute() + (from.getSecond() > 0 || from.getNano() > 0 ? 1 : 0);
+            if (startMinute + length > endMinute) {
+                exhausted = true;
+            } else if (!schedule.worksOn(date.getDayOfWeek())) {
+                nextDay();
+            } else {
+                moveTo(fromMinute);
+            }
+        }
+
+        // Checks the candidate against the doctor's bookings. Returns true if it is free; otherwise
+        // skips past the clashing booking and returns false so the cursor goes back into the heap.
+        private boolean settle() {
+            if (booked == null) {
+                if (!preloaded) {
+                    // One query for the rest of the horizon rather than one per day as the cursor advances
+                    slotIndex.preload(schedule.getDoctorId(), date, lastDay);
+                    preloaded = true;
+                }
+                booked = slotIndex.bookedMinutes(schedule.getDoctorId(), date);
+            }
+            // An existing booking is assumed to last one slot, so it clashes with this slot
+            // if it starts within `length` minutes either side of the candidate
+            int clash = booked.nextSetBit(Math.max(0, minute - length + 1));
+            if (clash < 0 || clash >= minute + length) {
+                return true;
+            }
+            moveTo(clash + length);
+            return false;
+        }
+
+        private void next() {
+            moveTo(minute + 1);
+        }
+
+        // Moves to the first grid slot starting at or after `target` on the current day,
+        // rolling over to the next working day when none fits before work end
+        private void moveTo(int target) {
+            int slot = target <= startMinute ? 0 : (target - startMinute + length - 1) / length;
+            int candidate = startMinute + slot * length;
+            if (candidate + length > endMinute) {
+                nextDay();
+            } else {
+                minute = candidate;
+            }
+        }
+
+        private void nextDay() {
+            booked = null;
+            for (int i = 0; i < 7; i++) {
+                date = date.plusDays(1);
+                if (date.isAfter(lastDay)) {
+                    exhausted = true;
+                    return;
+                }
+                if (schedule.worksOn(date.getDayOfWeek())) {
+                    minute = startMinute;
+                    return;
+                }
+            }
+            // Works no day of the week
+            exhausted = true;
+        }
+
+        private AvailableSlot toSlot() {
+            return new AvailableSlot(schedule.getDoctorId(), schedule.getDoctorName(), schedule.getSpecialization(),
+                    date, LocalTime.of(minute / 60, minute % 60), length);
+        }
+
+        @Override
+        public int compareTo(SlotCursor other) {
+            int byDate = date.compareTo(other.date);
+            if (byDate != 0) {
+                return byDate;
+            }
+            if (minute != other.minute) {
+                return Integer.compare(minute, other.minute);
+            }
+            return schedule.getDoctorId().compareTo(other.schedule.getDoctorId());
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.medvault.hmsbackend.service;
+
+import jakarta.annotation.PostConstruct;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+// Content-addressed file storage on local disk. Blobs live at <root>/<aa>/<bb>/<sha256>, so the
+// same bytes uploaded for many patients are stored once, and a stored blob never changes.
+@Service
+public class BlobStore {
+
+    private static final Logger log = LoggerFactory.getLogger(BlobStore.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    @Value("${storage.blobs.root:data/blobs}")
+    private String rootPath;
+
+    @Value("${storage.blobs.max-size:1073741824}")
+    private long maxSize;
+
+    // Its own key, never the JWT secret, so a leak of one does not compromise the other
+    @Value("${storage.blobs.etag-key:}")
+    private String etagKey;
+
+    private Path root;
+    private Path incoming;
+    private Path uploads;
+
+    @PostConstruct
+    void init() throws IOException {
+        root = Paths.get(rootPath).toAbsolutePath().normalize();
+        incoming = root.resolve("incoming");
+        uploads = root.resolve("uploads");
+        Files.createDirectories(incoming);
+        Files.createDirectories(uploads);
+        if (etagKey == null || etagKey.isBlank()) {
+            byte[] key = new byte[32];
+            new SecureRandom().nextBytes(key);
+            etagKey = Base64.getEncoder().encodeToString(key);
+            log.warn("storage.blobs.etag-key is not set; using a random key, so download ETags change on restart and differ between instances");
+        }
+    }
+
+    // Streams the input to a temp file through a fixed buffer while hashing it, then moves it
+    // into place; memory use does not depend on the size of the upload
+    public StoredBlob store(InputStream in) throws IOException {
+        MessageDigest digest = sha256();
+        Path temp = Files.createTempFile(incoming, "upload-", ".part");
+        try {
+            long size = 0;
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxSize) {
+                        throw new TooLargeException(maxSize);
+                    }
+                    digest.update(buffer, 0, read);
+                    wrapped.clear().limit(read);
+                    while (wrapped.hasRemaining()) {
+                        out.write(wrapped);
+                    }
+                }
+                out.force(true);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            publish(temp, hash);
+            return new StoredBlob(hash, size);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public boolean exists(String hash) {
+        return Files.isRegularFile(pathOf(hash));
+    }
+
+    public long size(String hash) throws IOException {
+        return Files.size(pathOf(hash));
+    }
+
+    // Copies a byte range of the blob to the response. The target is an OutputStream wrapped by
+    // Channels.newChannel, so transferTo still copies through buffers on the way; memory use is
+    // bounded, but this is not a zero-copy path
+    public void transfer(String hash, long position, long count, OutputStream out) throws IOException {
+        transfer(pathOf(hash), position, count, out);
+    }
+
+    // Entity tag for one attachment's content: an HMAC of the file id and the content hash. It
+    // changes with the content, but unlike the hash it cannot be compared between attachments.
+    public String etagOf(Long fileId, String hash) {
+        return etag(fileId + ":" + hash);
+    }
+
+    public String previewEtagOf(Long fileId, String hash) {
+        return etag(fileId + ":" + hash + ":preview");
+    }
+
+    // Previews are derived from the content alone, so they sit next to the blob and are shared
+    // by every attachment with the same hash
+    public boolean hasPreview(String hash) {
+        return Files.isRegularFile(previewPathOf(hash));
+    }
+
+    public long previewSize(String hash) throws IOException {
+        return Files.size(previewPathOf(hash));
+    }
+
+    public void transferPreview(String hash, OutputStream out) throws IOException {
+        transfer(previewPathOf(hash), 0, previewSize(hash), out);
+    }
+
+    private static void transfer(Path path, long position, long count, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long end = position + count;
+            while (position < end) {
+                long sent = channel.transferTo(position, end - position, target);
+                if (sent <= 0) {
+                    throw new EOFException(path.getFileName() + " is shorter than expected");
+                }
+                position += sent;
+            }
+        }
+    }
+
+    private String etag(String value) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(etagKey.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            byte[] tag = mac.doFinal(value.getBytes(StandardCharsets.UTF_8));
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(tag, 16)) + "\"";
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Moves a fully written temp file to its content address; if the blob already exists the
+    // copy is simply dropped
+    void publish(Path temp, String hash) throws IOException {
+        Path target = pathOf(hash);
+        if (Files.exists(target)) {
+            return;
+        }
+        Files.createDirectories(target.getParent());
+        // Replacing a blob that appeared concurrently is harmless: the content is identical
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    Path incomingDirectory() {
+        return incoming;
+    }
+
+    // Partial uploads live under the same root so a finished one can be moved into place
+    Path uploadsDirectory() {
+        return uploads;
+    }
+
+    Path pathOf(String hash) {
+        if (hash == null || !HASH.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Invalid content hash");
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    Path previewPathOf(String hash) {
+        return pathOf(hash).resolveSibling(hash + ".preview.jpg");
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public long getMaxSize() { return maxSize; }
+
+    public static final class StoredBlob {
+        private final String hash;
+        private final long size;
+
+        StoredBlob(String hash, long size) {
+            this.hash = hash;
+            this.size = size;
+        }
+
+        public String getHash() { return hash; }
+        public long getSize() { return size; }
+    }
+
+    public static final class TooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private TooLargeException(long maxSize) {
+            super("File exceeds the maximum size of " + maxSize + " bytes");
+        }
+    }
+}
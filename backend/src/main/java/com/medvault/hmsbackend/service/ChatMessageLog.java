@@ -0,0 +1,506 @@
+package com.medvault.hmsbackend.service;
+
+import com.medvault.hmsbackend.model.ChatMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+// Append-only chat message log on local disk, split into segment files named after the offset of
+// their first message. Offsets are consecutive, so a segment's index is just the file position of
+// each of its messages: sealed segments keep it in a memory-mapped .idx file, the active one in
+// memory. Every message also points at the previous message of its conversation, so a page of
+// history is a walk of direct reads rather than a scan.
+class ChatMessageLog {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatMessageLog.class);
+
+    private static final Pattern SEGMENT_FILE = Pattern.compile("(\\d{20})\\.log");
+    // offset, previous offset, doctor id, patient id, sender, sent at
+    private static final int FIXED_BYTES = 8 + 8 + 8 + 8 + 1 + 8;
+    private static final int MAX_ENTRY = 1024 * 1024;
+
+    private final Path directory;
+    private final long segmentBytes;
+
+    // By base offset; the last one is the active segment
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    // Newest message of each conversation seen by this process, or -1 for none
+    private final Map<Conversation, Long> heads = new ConcurrentHashMap<>();
+    private volatile long nextOffset;
+
+    private ChatMessageLog(Path directory, long segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+
+    // Recovers the segments in the directory, dropping a torn tail, and rebuilds the conversation
+    // heads. minNextOffset is the first offset not yet in the database; a log that ends before it
+    // (e.g. a lost volume) is discarded so offsets are never reused.
+    static ChatMessageLog open(Path directory, long segmentBytes, long minNextOffset) throws IOException {
+        Files.createDirectories(directory);
+        ChatMessageLog messageLog = new ChatMessageLog(directory, segmentBytes);
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                Matcher matcher = SEGMENT_FILE.matcher(file.getFileName().toString());
+                if (file.getFileName().toString().endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                } else if (matcher.matches()) {
+                    files.put(Long.parseLong(matcher.group(1)), file);
+                }
+            }
+        }
+
+        long expected = files.isEmpty() ? minNextOffset : files.firstKey();
+        for (Map.Entry<Long, Path> file : files.entrySet()) {
+            if (file.getKey() != expected) {
+                log.warn("Chat log segment {} does not follow offset {}; discarding it and later segments", file.getValue().getFileName(), expected);
+                for (Path stale : files.tailMap(file.getKey()).values()) {
+                    deleteSegmentFiles(stale);
+                }
+                break;
+            }
+            Segment segment = messageLog.recover(file.getKey(), file.getValue(), file.getKey().equals(files.lastKey()));
+            messageLog.segments.put(segment.baseOffset, segment);
+            expected = segment.baseOffset + segment.count;
+            if (segment.isWritable() && !file.getKey().equals(files.lastKey())) {
+                // Corrupt in the middle of the log: keep what precedes the damage and continue from there
+                for (Path stale : files.tailMap(file.getKey(), false).values()) {
+                    deleteSegmentFiles(stale);
+                }
+                break;
+            }
+        }
+
+        if (expected < minNextOffset) {
+            log.warn("Chat log ends at offset {} but the database holds messages up to {}; starting a new log", expected, minNextOffset - 1);
+            messageLog.closeAll();
+            for (Segment segment : messageLog.segments.values()) {
+                deleteSegmentFiles(segment.path);
+            }
+            messageLog.segments.clear();
+            messageLog.heads.clear();
+            expected = minNextOffset;
+        }
+        messageLog.nextOffset = expected;
+        if (messageLog.segments.isEmpty()) {
+            messageLog.segments.put(expected, Segment.create(directory, expected));
+        } else {
+            messageLog.segments.lastEntry().getValue().activate();
+        }
+        return messageLog;
+    }
+
+    Entry append(Conversation conversation, ChatMessage.Sender sender, String body) throws IOException {
+        byte[] text = body.getBytes(StandardCharsets.UTF_8);
+        synchronized (this) {
+            long offset = nextOffset;
+            Long previous = heads.get(conversation);
+            Entry entry = new Entry(offset, previous != null ? previous : -1, conversation.doctorId, conversation.patientId,
+                    sender, System.currentTimeMillis(), body);
+            ByteBuffer record = entry.toRecord(text);
+
+            Segment active = segments.lastEntry().getValue();
+            if (active.count > 0 && active.size + record.remaining() > segmentBytes) {
+                active.seal();
+                active = Segment.create(directory, offset);
+                active.activate();
+                segments.put(offset, active);
+            }
+            active.append(record);
+            heads.put(conversation, offset);
+            nextOffset = offset + 1;
+            return entry;
+        }
+    }
+
+    // Null if the offset is not in a retained segment
+    Entry read(long offset) {
+        Segment segment;
+        long position;
+        long end;
+        synchronized (this) {
+            if (offset < 0 || offset >= nextOffset) {
+                return null;
+            }
+            Map.Entry<Long, Segment> floor = segments.floorEntry(offset);
+            if (floor == null) {
+                return null;
+            }
+            segment = floor.getValue();
+            int index = (int) (offset - segment.baseOffset);
+            position = segment.position(index);
+            end = index + 1 < segment.count ? segment.position(index + 1) : segment.size;
+        }
+        try {
+            ByteBuffer record = ByteBuffer.allocate((int) (end - position));
+            while (record.hasRemaining()) {
+                if (segment.channel.read(record, position + record.position()) < 0) {
+                    throw new EOFException();
+                }
+            }
+            record.flip();
+            record.position(8);
+            return Entry.fromPayload(record);
+        } catch (IOException e) {
+            // The segment was deleted by retention while this read was in flight
+            return null;
+        }
+    }
+
+    // Up to max consecutive messages starting at offset, for the database flush
+    List<Entry> readFrom(long offset, int max) {
+        List<Entry> entries = new ArrayList<>();
+        for (long current = offset; current < nextOffset && entries.size() < max; current++) {
+            Entry entry = read(current);
+            if (entry == null) {
+                break;
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    Long head(Conversation conversation) {
+        return heads.get(conversation);
+    }
+
+    // Seeds the head of a conversation whose messages are only in the database
+    void initHead(Conversation conversation, long offset) {
+        heads.putIfAbsent(conversation, offset);
+    }
+
+    long getNextOffset() {
+        return nextOffset;
+    }
+
+    synchronized long getFirstOffset() {
+        return segments.firstKey();
+    }
+
+    synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    int getConversationCount() {
+        return heads.size();
+    }
+
+    // Appends reach the OS on write but are only forced to disk here
+    void force() throws IOException {
+        Segment active;
+        synchronized (this) {
+            active = segments.lastEntry().getValue();
+        }
+        try {
+            active.channel.force(false);
+        } catch (IOException e) {
+            // Sealed and replaced by a roll since; the roll forced it
+            if (active.channel.isOpen()) {
+                throw e;
+            }
+        }
+    }
+
+    // Deletes the oldest sealed segments that lie entirely before offset, keeping at least retain
+    int deleteBefore(long offset, int retain) throws IOException {
+        List<Segment> removed = new ArrayList<>();
+        synchronized (this) {
+            while (segments.size() > Math.max(1, retain)) {
+                Map.Entry<Long, Segment> oldest = segments.firstEntry();
+                Long nextBase = segments.higherKey(oldest.getKey());
+                if (nextBase == null || nextBase > offset) {
+                    break;
+                }
+                segments.pollFirstEntry();
+                removed.add(oldest.getValue());
+            }
+        }
+        for (Segment segment : removed) {
+            segment.close();
+            deleteSegmentFiles(segment.path);
+        }
+        return removed.size();
+    }
+
+    synchronized void close() throws IOException {
+        Segment active = segments.lastEntry().getValue();
+        active.channel.force(false);
+        closeAll();
+    }
+
+    private void closeAll() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+    }
+
+    // Reads a segment front to back, rebuilding its index and the conversation heads, and truncates
+    // it at the first torn or corrupt record. Returns it writable if it is the last or was truncated.
+    private Segment recover(long baseOffset, Path path, boolean last) throws IOException {
+        int[] positions = new int[1024];
+        int count = 0;
+        long position = 0;
+        try (InputStream in = Files.newInputStream(path);
+             DataInputStream data = new DataInputStream(new BufferedInputStream(in, 64 * 1024))) {
+            while (true) {
+                int length;
+                try {
+                    length = data.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length < FIXED_BYTES || length > MAX_ENTRY) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                long checksum;
+                try {
+                    checksum = data.readInt() & 0xffffffffL;
+                    data.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                Entry entry = crc.getValue() == checksum ? Entry.fromPayload(ByteBuffer.wrap(payload)) : null;
+                if (entry == null || entry.offset != baseOffset + count) {
+                    break;
+                }
+                if (count == positions.length) {
+                    positions = Arrays.copyOf(positions, count * 2);
+                }
+                positions[count++] = (int) position;
+                position += 8 + length;
+                heads.put(new Conversation(entry.doctorId, entry.patientId), entry.offset);
+            }
+        }
+
+        long fileSize = Files.size(path);
+        boolean truncated = position < fileSize;
+        if (truncated) {
+            log.warn("Dropping {} bytes of torn or corrupt records at the end of chat log segment {}", fileSize - position, path.getFileName());
+        }
+        return Segment.open(path, baseOffset, Arrays.copyOf(positions, Math.max(count, 16)), count, position, last || truncated);
+    }
+
+    private static void deleteSegmentFiles(Path logFile) throws IOException {
+        Files.deleteIfExists(logFile);
+        Files.deleteIfExists(indexPath(logFile));
+    }
+
+    private static Path indexPath(Path logFile) {
+        String name = logFile.getFileName().toString();
+        return logFile.resolveSibling(name.substring(0, name.length() - ".log".length()) + ".idx");
+    }
+
+    private static final class Segment {
+        private final long baseOffset;
+        private final Path path;
+        private final FileChannel channel;
+        private int count;
+        private long size;
+        // The active segment's index; sealed segments read theirs from the mapped .idx file
+        private int[] positions;
+        private MappedByteBuffer index;
+
+        private Segment(long baseOffset, Path path, FileChannel channel, int[] positions, int count, long size) {
+            this.baseOffset = baseOffset;
+            this.path = path;
+            this.channel = channel;
+            this.positions = positions;
+            this.count = count;
+            this.size = size;
+        }
+
+        private static Segment create(Path directory, long baseOffset) throws IOException {
+            Path path = directory.resolve(String.format("%020d.log", baseOffset));
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Files.deleteIfExists(indexPath(path));
+            return new Segment(baseOffset, path, channel, new int[1024], 0, 0);
+        }
+
+        private static Segment open(Path path, long baseOffset, int[] positions, int count, long size, boolean active) throws IOException {
+            FileChannel channel = active
+                    ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                    : FileChannel.open(path, StandardOpenOption.READ);
+            if (active) {
+                channel.truncate(size);
+            }
+            Segment segment = new Segment(baseOffset, path, channel, positions, count, size);
+            if (!active) {
+                segment.writeIndex();
+            }
+            return segment;
+        }
+
+        // Makes a recovered segment the one appends go to; a stale index from before a crash is dropped
+        private void activate() throws IOException {
+            Files.deleteIfExists(indexPath(path));
+            index = null;
+        }
+
+        private void append(ByteBuffer record) throws IOException {
+            int length = record.remaining();
+            long position = size;
+            while (record.hasRemaining()) {
+                position += channel.write(record, position);
+            }
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+            }
+            positions[count++] = (int) size;
+            size += length;
+        }
+
+        private boolean isWritable() {
+            return index == null;
+        }
+
+        private long position(int index) {
+            return this.index != null ? this.index.getInt(index * 4) : positions[index];
+        }
+
+        private void seal() throws IOException {
+            channel.force(false);
+            writeIndex();
+        }
+
+        // Rewrites the .idx file unless an intact one is already there, then maps it
+        private void writeIndex() throws IOException {
+            Path indexFile = indexPath(path);
+            if (!Files.exists(indexFile) || Files.size(indexFile) != count * 4L) {
+                Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+                ByteBuffer bytes = ByteBuffer.allocate(count * 4);
+                for (int i = 0; i < count; i++) {
+                    bytes.putInt(positions[i]);
+                }
+                bytes.flip();
+                try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE)) {
+                    while (bytes.hasRemaining()) {
+                        out.write(bytes);
+                    }
+                    out.force(true);
+                }
+                Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            try (FileChannel in = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+                index = in.map(FileChannel.MapMode.READ_ONLY, 0, count * 4L);
+            }
+            positions = null;
+        }
+
+        private void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    static final class Conversation {
+        private final long doctorId;
+        private final long patientId;
+
+        Conversation(long doctorId, long patientId) {
+            this.doctorId = doctorId;
+            this.patientId = patientId;
+        }
+
+        long getDoctorId() { return doctorId; }
+        long getPatientId() { return patientId; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Conversation)) return false;
+            Conversation that = (Conversation) o;
+            return doctorId == that.doctorId && patientId == that.patientId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(doctorId, patientId);
+        }
+    }
+
+    static final class Entry {
+        private final long offset;
+        private final long previousOffset;
+        private final long doctorId;
+        private final long patientId;
+        private final ChatMessage.Sender sender;
+        private final long sentAt;
+        private final String body;
+
+        Entry(long offset, long previousOffset, long doctorId, long patientId, ChatMessage.Sender sender, long sentAt, String body) {
+            this.offset = offset;
+            this.previousOffset = previousOffset;
+            this.doctorId = doctorId;
+            this.patientId = patientId;
+            this.sender = sender;
+            this.sentAt = sentAt;
+            this.body = body;
+        }
+
+        long getOffset() { return offset; }
+        long getPreviousOffset() { return previousOffset; }
+        long getDoctorId() { return doctorId; }
+        long getPatientId() { return patientId; }
+        ChatMessage.Sender getSender() { return sender; }
+        long getSentAt() { return sentAt; }
+        String getBody() { return body; }
+
+        // length, CRC32, then the payload; a torn tail fails the length or checksum on recovery
+        private ByteBuffer toRecord(byte[] text) {
+            ByteBuffer record = ByteBuffer.allocate(8 + FIXED_BYTES + text.length);
+            record.position(8);
+            record.putLong(offset).putLong(previousOffset).putLong(doctorId).putLong(patientId)
+                    .put((byte) sender.ordinal()).putLong(sentAt).put(text);
+            CRC32 crc = new CRC32();
+            crc.update(record.array(), 8, FIXED_BYTES + text.length);
+            record.putInt(0, FIXED_BYTES + text.length).putInt(4, (int) crc.getValue());
+            record.flip();
+            return record;
+        }
+
+        private static Entry fromPayload(ByteBuffer in) {
+            long offset = in.getLong();
+            long previousOffset = in.getLong();
+            long doctorId = in.getLong();
+            long patientId = in.getLong();
+            int sender = in.get();
+            long sentAt = in.getLong();
+            byte[] text = new byte[in.remaining()];
+            in.get(text);
+            if (sender < 0 || sender >= ChatMessage.Sender.values().length) {
+                return null;
+            }
+            return new Entry(offset, previousOffset, doctorId, patientId, ChatMessage.Sender.values()[sender], sentAt,
+                    new String(text, StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,525 @@
+package com.medvault.hmsbackend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medvault.hmsbackend.model.ChatMessage;
+import com.medvault.hmsbackend.repository.AppointmentRepository;
+import com.medvault.hmsbackend.repository.ChatMessageRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Patient-doctor messaging. A message is appended to the local ChatMessageLog, pushed to every open
+// connection of both participants, and copied to the chat_messages table in batches by flush().
+// Conversations are open to a patient and doctor who share an appointment.
+@Service
+public class ChatService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatService.class);
+
+    private static final String INSERT = "INSERT INTO chat_messages (id, doctor_id, patient_id, sender, sent_at, body)"
+            + " VALUES (?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE id = id";
+
+    // Tomcat's per-session limit on a blocking send; a stalled client gives up its dispatcher
+    // thread after this instead of the 20 second default
+    private static final String BLOCKING_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    private static final long HEARTBEAT_TICK_MS = 1000;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${chat.log.dir:data/chat}")
+    private String directoryPath;
+
+    @Value("${chat.log.segment-bytes:67108864}")
+    private long segmentBytes;
+
+    @Value("${chat.log.retained-segments:8}")
+    private int retainedSegments;
+
+    @Value("${chat.flush.interval-ms:500}")
+    private long flushIntervalMs;
+
+    @Value("${chat.log.fsync-interval-ms:1000}")
+    private long fsyncIntervalMs;
+
+    @Value("${chat.flush.batch-size:500}")
+    private int flushBatchSize;
+
+    @Value("${chat.max-message-chars:2000}")
+    private int maxMessageChars;
+
+    @Value("${chat.history.default-size:50}")
+    private int defaultHistorySize;
+
+    @Value("${chat.history.max-size:200}")
+    private int maxHistorySize;
+
+    @Value("${chat.connection.buffer:64}")
+    private int connectionBuffer;
+
+    @Value("${chat.connection.send-timeout-ms:5000}")
+    private long sendTimeoutMs;
+
+    @Value("${chat.dispatcher-threads:4}")
+    private int dispatcherThreads;
+
+    @Value("${chat.heartbeat-ms:30000}")
+    private long heartbeatMs;
+
+    private ChatMessageLog messageLog;
+    private TransactionTemplate transactionTemplate;
+    private ExecutorService dispatcher;
+    // Not Spring's shared scheduler thread: a slow export or index merge queued ahead of the
+    // heartbeat would hold back pings past the idle timeout, and the flush behind them
+    private ScheduledExecutorService scheduler;
+
+    // Every offset below this is in the database
+    private volatile long flushedOffset;
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    // Open connections by doctor or patient id; arrays because most people have one or two
+    private final Map<Long, Connection[]> doctorConnections = new ConcurrentHashMap<>();
+    private final Map<Long, Connection[]> patientConnections = new ConcurrentHashMap<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final AtomicInteger nextSlot = new AtomicInteger();
+    // Only advanced by the heartbeat task, whose runs never overlap
+    private long heartbeatTicks;
+
+    @PostConstruct
+    void init() throws IOException {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        Long maxId = chatMessageRepository.findMaxId();
+        flushedOffset = maxId != null ? maxId + 1 : 0;
+        // Segment positions are ints
+        long segmentLimit = Math.min(segmentBytes, Integer.MAX_VALUE);
+        messageLog = ChatMessageLog.open(Paths.get(directoryPath).toAbsolutePath().normalize(), segmentLimit, flushedOffset);
+        if (flushedOffset < messageLog.getFirstOffset()) {
+            log.warn("Chat messages {} to {} are in neither the log nor the database", flushedOffset, messageLog.getFirstOffset() - 1);
+            flushedOffset = messageLog.getFirstOffset();
+        }
+        log.info("Chat log open: {} segments, next offset {}, {} messages to flush", messageLog.getSegmentCount(),
+                messageLog.getNextOffset(), messageLog.getNextOffset() - flushedOffset);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        dispatcher = Executors.newFixedThreadPool(dispatcherThreads, runnable -> {
+            Thread thread = new Thread(runnable, "chat-dispatch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // One thread per task, so none of them waits for another
+        AtomicInteger schedulerCount = new AtomicInteger();
+        scheduler = Executors.newScheduledThreadPool(3, runnable -> {
+            Thread thread = new Thread(runnable, "chat-scheduler-" + schedulerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        every(flushIntervalMs, this::flush);
+        every(fsyncIntervalMs, this::forceLog);
+        every(HEARTBEAT_TICK_MS, this::heartbeat);
+    }
+
+    @PreDestroy
+    void shutdown() throws IOException {
+        // Lets a running flush finish, so the final one below is not skipped
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dispatcher.shutdownNow();
+        flush();
+        messageLog.close();
+    }
+
+    public Connection register(WebSocketSession session, ChatMessage.Sender role, long partyId, long expiresAt) {
+        if (session instanceof NativeWebSocketSession) {
+            jakarta.websocket.Session nativeSession = ((NativeWebSocketSession) session).getNativeSession(jakarta.websocket.Session.class);
+            if (nativeSession != null) {
+                nativeSession.getUserProperties().put(BLOCKING_SEND_TIMEOUT, sendTimeoutMs);
+            }
+        }
+        Connection connection = new Connection(session, role, partyId, expiresAt);
+        connectionsOf(role).compute(partyId, (id, current) -> {
+            if (current == null) {
+                return new Connection[] {connection};
+            }
+            Connection[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = connection;
+            return updated;
+        });
+        connectionCount.incrementAndGet();
+        return connection;
+    }
+
+    public void unregister(Connection connection) {
+        if (!connection.registered.compareAndSet(true, false)) {
+            return;
+        }
+        connectionsOf(connection.role).computeIfPresent(connection.partyId, (id, current) -> {
+            Connection[] remaining = Arrays.stream(current).filter(c -> c != connection).toArray(Connection[]::new);
+            return remaining.length > 0 ? remaining : null;
+        });
+        connection.queue.clear();
+        connectionCount.decrementAndGet();
+    }
+
+    // Appends the message and pushes it to both participants, the sender's own connections
+    // included; clientId is echoed so the sending client can match it to its pending message
+    public void send(Connection from, long peerId, String body, String clientId) {
+        if (body == null || body.isBlank()) {
+            throw new IllegalArgumentException("Message must not be empty");
+        }
+        if (body.length() > maxMessageChars) {
+            throw new IllegalArgumentException("Message exceeds " + maxMessageChars + " characters");
+        }
+        ChatMessageLog.Conversation conversation = conversationOf(from, peerId);
+        ensureConversation(conversation);
+
+        ChatMessageLog.Entry entry;
+        try {
+            entry = messageLog.append(conversation, from.role, body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Map<String, Object> frame = messageFrame(entry);
+        if (clientId != null) {
+            frame.put("clientId", clientId);
+        }
+        TextMessage message = new TextMessage(toJson(frame));
+        deliver(doctorConnections.get(conversation.getDoctorId()), message);
+        deliver(patientConnections.get(conversation.getPatientId()), message);
+    }
+
+    // A page of the conversation, newest first, ending before the message with id before (or at
+    // the newest message). Walks the log's per-conversation links and continues in the database
+    // for messages whose segments have been retired.
+    public Map<String, Object> history(Connection from, long peerId, Long before, Integer size) {
+        ChatMessageLog.Conversation conversation = conversationOf(from, peerId);
+        ensureConversation(conversation);
+        int limit = Math.min(size != null && size > 0 ? size : defaultHistorySize, maxHistorySize);
+
+        List<ChatMessageLog.Entry> page = new ArrayList<>(Math.min(limit, 64));
+        long cursor;
+        // Exclusive upper bound for the database, or 0 when the walk reached the first message
+        long databaseBefore = 0;
+        if (before == null) {
+            cursor = messageLog.head(conversation);
+        } else {
+            ChatMessageLog.Entry anchor = messageLog.read(before);
+            if (anchor != null) {
+                if (anchor.getDoctorId() != conversation.getDoctorId() || anchor.getPatientId() != conversation.getPatientId()) {
+                    throw new IllegalArgumentException("Invalid cursor");
+                }
+                cursor = anchor.getPreviousOffset();
+            } else if (before <= 0 || before >= messageLog.getNextOffset()) {
+                throw new IllegalArgumentException("Invalid cursor");
+            } else {
+                cursor = -1;
+                databaseBefore = before;
+            }
+        }
+        while (cursor >= 0 && page.size() < limit) {
+            ChatMessageLog.Entry entry = messageLog.read(cursor);
+            if (entry == null) {
+                databaseBefore = cursor + 1;
+                break;
+            }
+            page.add(entry);
+            cursor = entry.getPreviousOffset();
+        }
+        if (databaseBefore > 0 && page.size() < limit) {
+            for (ChatMessage message : chatMessageRepository.findByDoctorIdAndPatientIdAndIdLessThanOrderByIdDesc(
+                    conversation.getDoctorId(), conversation.getPatientId(), databaseBefore, PageRequest.of(0, limit - page.size()))) {
+                page.add(new ChatMessageLog.Entry(message.getId(), -1, message.getDoctorId(), message.getPatientId(),
+                        message.getSender(), message.getSentAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(), message.getBody()));
+            }
+        }
+
+        List<Map<String, Object>> messages = new ArrayList<>(page.size());
+        for (ChatMessageLog.Entry entry : page) {
+            messages.add(messageFrame(entry));
+        }
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("type", "history");
+        frame.put("doctorId", conversation.getDoctorId());
+        frame.put("patientId", conversation.getPatientId());
+        frame.put("messages", messages);
+        frame.put("next", page.size() == limit ? page.get(page.size() - 1).getOffset() : null);
+        return frame;
+    }
+
+    // Replies to one connection go through its queue so they never interleave with pushed messages
+    public void reply(Connection connection, Map<String, Object> frame) {
+        connection.offer(new TextMessage(toJson(frame)));
+    }
+
+    // Copies everything appended since the last flush to the database, oldest first, one
+    // transaction per batch; the log is the source of truth, so a failed batch is retried next time
+    public void flush() {
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            while (true) {
+                List<ChatMessageLog.Entry> batch = messageLog.readFrom(flushedOffset, flushBatchSize);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT, batch, batch.size(), (ps, entry) -> {
+                    ps.setLong(1, entry.getOffset());
+                    ps.setLong(2, entry.getDoctorId());
+                    ps.setLong(3, entry.getPatientId());
+                    ps.setString(4, entry.getSender().name());
+                    ps.setTimestamp(5, Timestamp.valueOf(toLocalDateTime(entry.getSentAt())));
+                    ps.setString(6, entry.getBody());
+                }));
+                flushedOffset = batch.get(batch.size() - 1).getOffset() + 1;
+                if (batch.size() < flushBatchSize) {
+                    break;
+                }
+            }
+            messageLog.deleteBefore(flushedOffset, retainedSegments);
+        } catch (DataAccessException | IOException e) {
+            log.warn("Could not flush chat messages from offset {}", flushedOffset, e);
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    // Appends are in the page cache as soon as they are acknowledged, which survives a process
+    // crash; this bounds what an OS crash or power loss can take
+    public void forceLog() {
+        try {
+            messageLog.force();
+        } catch (IOException e) {
+            log.warn("Could not sync the chat log", e);
+        }
+    }
+
+    // Keeps idle connections open through proxies, surfaces dead ones through failed writes, and
+    // closes connections whose token has expired. Each tick covers one slice of the connections so
+    // every one is pinged once per heartbeat interval without a burst of pings and pongs.
+    public void heartbeat() {
+        long now = System.currentTimeMillis();
+        int slices = (int) Math.max(1, heartbeatMs / HEARTBEAT_TICK_MS);
+        int slice = (int) (heartbeatTicks++ % slices);
+        PingMessage ping = new PingMessage();
+        for (Map<Long, Connection[]> connections : List.of(doctorConnections, patientConnections)) {
+            for (Connection[] group : connections.values()) {
+                for (Connection connection : group) {
+                    if (connection.slot % slices != slice) {
+                        continue;
+                    }
+                    if (connection.isExpired(now)) {
+                        close(connection, CloseStatus.POLICY_VIOLATION.withReason("Token expired"));
+                    } else {
+                        connection.offer(ping);
+                    }
+                }
+            }
+        }
+    }
+
+    public void close(Connection connection, CloseStatus status) {
+        unregister(connection);
+        try {
+            connection.session.close(status);
+        } catch (IOException e) {
+            // Already gone
+        }
+    }
+
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    public long getFlushLag() {
+        return messageLog.getNextOffset() - flushedOffset;
+    }
+
+    // A task that throws would otherwise never run again
+    private void every(long delayMs, Runnable task) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.warn("Chat maintenance task failed", e);
+            }
+        }, delayMs, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private Map<Long, Connection[]> connectionsOf(ChatMessage.Sender role) {
+        return role == ChatMessage.Sender.DOCTOR ? doctorConnections : patientConnections;
+    }
+
+    private static ChatMessageLog.Conversation conversationOf(Connection from, long peerId) {
+        return from.role == ChatMessage.Sender.DOCTOR
+                ? new ChatMessageLog.Conversation(from.partyId, peerId)
+                : new ChatMessageLog.Conversation(peerId, from.partyId);
+    }
+
+    // A conversation known to the log was authorized when it was first used; otherwise the pair
+    // must share an appointment, and its newest stored message seeds the history links
+    private void ensureConversation(ChatMessageLog.Conversation conversation) {
+        if (messageLog.head(conversation) != null) {
+            return;
+        }
+        if (!appointmentRepository.existsByPatientIdAndDoctorId(conversation.getPatientId(), conversation.getDoctorId())) {
+            throw new AccessDeniedException("Messaging is only available between a patient and their doctors");
+        }
+        Long latest = chatMessageRepository.findLatestId(conversation.getDoctorId(), conversation.getPatientId());
+        messageLog.initHead(conversation, latest != null ? latest : -1);
+    }
+
+    private void deliver(Connection[] connections, TextMessage message) {
+        if (connections != null) {
+            for (Connection connection : connections) {
+                connection.offer(message);
+            }
+        }
+    }
+
+    private static Map<String, Object> messageFrame(ChatMessageLog.Entry entry) {
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("type", "message");
+        frame.put("id", entry.getOffset());
+        frame.put("doctorId", entry.getDoctorId());
+        frame.put("patientId", entry.getPatientId());
+        frame.put("sender", entry.getSender());
+        frame.put("sentAt", toLocalDateTime(entry.getSentAt()));
+        frame.put("body", entry.getBody());
+        return frame;
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    private String toJson(Map<String, Object> frame) {
+        try {
+            return objectMapper.writeValueAsString(frame);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // One open socket. Idle, it holds only the session and an empty queue; outgoing frames are
+    // queued and written by the shared dispatcher, one drain at a time per connection.
+    public final class Connection {
+        private final WebSocketSession session;
+        private final ChatMessage.Sender role;
+        private final long partyId;
+        private final long expiresAt;
+        private final Queue<WebSocketMessage<?>> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean registered = new AtomicBoolean(true);
+        // Heartbeat slice
+        private final int slot = nextSlot.getAndIncrement() & Integer.MAX_VALUE;
+
+        private Connection(WebSocketSession session, ChatMessage.Sender role, long partyId, long expiresAt) {
+            this.session = session;
+            this.role = role;
+            this.partyId = partyId;
+            this.expiresAt = expiresAt;
+        }
+
+        public boolean isExpired(long nowMillis) {
+            return expiresAt <= nowMillis;
+        }
+
+        // Never blocks the sender; a connection that falls a full buffer behind is closed and the
+        // client catches up from history when it reconnects
+        private void offer(WebSocketMessage<?> message) {
+            if (!registered.get()) {
+                return;
+            }
+            if (queued.incrementAndGet() > connectionBuffer) {
+                queued.decrementAndGet();
+                if (!(message instanceof PingMessage)) {
+                    dispatcher.execute(() -> close(this, CloseStatus.SESSION_NOT_RELIABLE));
+                }
+                return;
+            }
+            queue.add(message);
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                dispatcher.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                WebSocketMessage<?> message;
+                while ((message = queue.poll()) != null) {
+                    queued.decrementAndGet();
+                    session.sendMessage(message);
+                }
+            } catch (IOException | IllegalStateException e) {
+                close(this, CloseStatus.SESSION_NOT_RELIABLE);
+            } finally {
+                draining.set(false);
+            }
+            if (!queue.isEmpty() && registered.get()) {
+                scheduleDrain();
+            }
+        }
+    }
+}
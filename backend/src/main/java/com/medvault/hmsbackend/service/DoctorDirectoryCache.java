@@ -0,0 +1,138 @@
+package com.medvault.hmsbackend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medvault.hmsbackend.event.DoctorChangedEvent;
+import com.medvault.hmsbackend.repository.DoctorRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+public class DoctorDirectoryCache {
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${doctors.cache.ttl-ms:300000}")
+    private long ttlMs;
+
+    @Value("${doctors.cache.max-entries:1000}")
+    private int maxEntries;
+
+    private volatile Snapshot directory;
+
+    // Individual doctor documents, least recently used evicted first
+    private final Map<Long, Snapshot> doctors = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Snapshot> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    // Bumped on every change so a rebuild racing with it is not published
+    private volatile long generation;
+
+    public Snapshot getDirectory() {
+        Snapshot current = directory;
+        if (current != null && !current.isExpired()) {
+            return current;
+        }
+        synchronized (this) {
+            current = directory;
+            if (current == null || current.isExpired()) {
+                long buildGeneration = generation;
+                Snapshot rebuilt = build(doctorRepository.findAllViews(), current);
+                if (buildGeneration == generation) {
+                    directory = rebuilt;
+                }
+                current = rebuilt;
+            }
+            return current;
+        }
+    }
+
+    public Optional<Snapshot> getDoctor(Long id) {
+        synchronized (doctors) {
+            Snapshot cached = doctors.get(id);
+            if (cached != null && !cached.isExpired()) {
+                return Optional.of(cached);
+            }
+        }
+        long buildGeneration = generation;
+        Optional<Snapshot> loaded = doctorRepository.findViewById(id).map(view -> build(view, null));
+        loaded.ifPresent(snapshot -> {
+            synchronized (doctors) {
+                if (buildGeneration == generation) {
+                    doctors.put(id, snapshot);
+                }
+            }
+        });
+        return loaded;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDoctorChanged(DoctorChangedEvent event) {
+        synchronized (doctors) {
+            generation++;
+            doctors.remove(event.getDoctorId());
+        }
+        directory = null;
+    }
+
+    // Serializes once so every hit is a plain byte copy; keeps the previous Last-Modified if the
+    // content did not actually change
+    private Snapshot build(Object value, Snapshot previous) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(value);
+            String etag = "\"" + digest(body) + "\"";
+            long now = System.currentTimeMillis();
+            long lastModified = previous != null && previous.etag.equals(etag) ? previous.lastModified : now;
+            return new Snapshot(body, etag, lastModified, now + ttlMs);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize doctor directory", e);
+        }
+    }
+
+    private static String digest(byte[] body) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(body);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash).substring(0, 27);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public static final class Snapshot {
+        private final byte[] body;
+        private final String etag;
+        private final long lastModified;
+        private final long expiresAt;
+
+        private Snapshot(byte[] body, String etag, long lastModified, long expiresAt) {
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expiresAt = expiresAt;
+        }
+
+        public byte[] getBody() { return body; }
+        public String getEtag() { return etag; }
+        public long getLastModified() { return lastModified; }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+}
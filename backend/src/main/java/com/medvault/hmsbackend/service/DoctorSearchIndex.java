@@ -0,0 +1,544 @@
+package com.medvault.hmsbackend.service;
+
+import com.medvault.hmsbackend.dto.DoctorView;
+import com.medvault.hmsbackend.event.DoctorChangedEvent;
+import com.medvault.hmsbackend.repository.DoctorRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Service
+public class DoctorSearchIndex {
+
+    // Field bits stored per posting; the weights decide how much a match in that field counts
+    private static final int NAME = 1;
+    private static final int SPECIALIZATION = 2;
+    private static final int DEPARTMENT = 4;
+    private static final int BIO = 8;
+
+    private static final float EXACT = 1.0f;
+    private static final float PREFIX = 0.7f;
+    private static final float FUZZY = 0.4f;
+
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final int MIN_FUZZY_LENGTH = 4;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "the", "of", "in", "on", "for", "with", "to", "at", "by", "is", "dr");
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Doctors are addressed by a dense ordinal so query state fits in flat arrays; a changed
+    // doctor gets a new ordinal and its old one becomes a tombstone until the next compaction
+    private DoctorView[] documents = new DoctorView[0];
+    private int[] specializationOf = new int[0];
+    private int[] departmentOf = new int[0];
+    private int nextOrdinal;
+    private int tombstones;
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+
+    // term -> postings sorted by ordinal; a sorted map so prefix queries are a range scan
+    private final NavigableMap<String, Postings> postings = new TreeMap<>();
+
+    // Single-deletion variants of every term -> the terms that produced them, for typo tolerance
+    private final Map<String, Set<String>> deletions = new HashMap<>();
+
+    private final FacetValues specializations = new FacetValues();
+    private final FacetValues departments = new FacetValues();
+
+    private final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<DoctorView> views = doctorRepository.findAllViews();
+        lock.writeLock().lock();
+        try {
+            rebuild(views);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDoctorChanged(DoctorChangedEvent event) {
+        DoctorView view = doctorRepository.findViewById(event.getDoctorId()).orElse(null);
+        lock.writeLock().lock();
+        try {
+            Integer previous = ordinals.remove(event.getDoctorId());
+            if (previous != null) {
+                documents[previous] = null;
+                tombstones++;
+            }
+            if (view != null) {
+                add(view);
+            }
+            // Compact once tombstones make up a quarter of the ordinals
+            if (tombstones > 64 && tombstones * 4 > nextOrdinal) {
+                List<DoctorView> live = new ArrayList<>(ordinals.size());
+                for (int ordinal = 0; ordinal < nextOrdinal; ordinal++) {
+                    if (documents[ordinal] != null) {
+                        live.add(documents[ordinal]);
+                    }
+                }
+                rebuild(live);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Result search(String query, String specialization, String department, boolean sortByRating, int limit) {
+        List<String> terms = tokenize(query);
+
+        lock.readLock().lock();
+        try {
+            Workspace ws = workspaces.get();
+            ws.ensureCapacity(nextOrdinal);
+            int matched = terms.isEmpty() ? matchAll(ws) : match(terms, ws);
+
+            int specializationFilter = filter(specializations, specialization);
+            int departmentFilter = filter(departments, department);
+
+            // Facet counts describe the text matches before the facet filters are applied
+            int[] specializationCounts = new int[specializations.labels.size()];
+            int[] departmentCounts = new int[departments.labels.size()];
+
+            float[] scores = ws.scores;
+            Comparator<Integer> order = sortByRating
+                    ? Comparator.<Integer>comparingDouble(this::rating).thenComparingDouble(o -> scores[o])
+                    : Comparator.<Integer>comparingDouble(o -> scores[o]).thenComparingDouble(this::rating);
+            order = order.thenComparing(o -> documents[o].getId(), Comparator.reverseOrder());
+
+            // Bounded min-heap keeps only the best `limit` hits
+            PriorityQueue<Integer> top = new PriorityQueue<>(limit + 1, order);
+            int total = 0;
+            for (int i = 0; i < matched; i++) {
+                int ordinal = ws.matches[i];
+                int spec = specializationOf[ordinal];
+                int dept = departmentOf[ordinal];
+                if (spec >= 0) {
+                    specializationCounts[spec]++;
+                }
+                if (dept >= 0) {
+                    departmentCounts[dept]++;
+                }
+                if (specializationFilter != -1 && spec != specializationFilter) {
+                    continue;
+                }
+                if (departmentFilter != -1 && dept != departmentFilter) {
+                    continue;
+                }
+                total++;
+                if (top.size() < limit) {
+                    top.offer(ordinal);
+                } else if (order.compare(ordinal, top.peek()) > 0) {
+                    top.poll();
+                    top.offer(ordinal);
+                }
+            }
+
+            List<Hit> hits = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                int ordinal = top.poll();
+                hits.add(new Hit(documents[ordinal], scores[ordinal]));
+            }
+            Collections.reverse(hits);
+
+            Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+            facets.put("specialization", specializations.counts(specializationCounts));
+            facets.put("department", departments.counts(departmentCounts));
+            return new Result(total, hits, facets);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Completes the last word of the input from indexed terms, most common first
+    public List<String> autocomplete(String prefix, int limit) {
+        List<String> terms = tokenize(prefix);
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        String last = terms.get(terms.size() - 1);
+
+        lock.readLock().lock();
+        try {
+            PriorityQueue<Map.Entry<String, Postings>> top = new PriorityQueue<>(
+                    Comparator.comparingInt((Map.Entry<String, Postings> e) -> e.getValue().size));
+            for (Map.Entry<String, Postings> entry : prefixRange(last).entrySet()) {
+                top.offer(entry);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+            List<String> suggestions = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                suggestions.add(top.poll().getKey());
+            }
+            Collections.reverse(suggestions);
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int matchAll(Workspace ws) {
+        int matched = 0;
+        for (int ordinal = 0; ordinal < nextOrdinal; ordinal++) {
+            if (documents[ordinal] != null) {
+                ws.scores[ordinal] = 0f;
+                ws.matches[matched++] = ordinal;
+            }
+        }
+        return matched;
+    }
+
+    // Every query term has to match (exactly, as a prefix or within one edit); each term adds
+    // its best match per doctor to the score. Leaves the matching ordinals in ws.matches.
+    private int match(List<String> terms, Workspace ws) {
+        ws.nextQuery();
+        int matched = 0;
+        for (int t = 0; t < terms.size(); t++) {
+            String term = terms.get(t);
+            int mark = ws.stamp + t;
+
+            List<Postings> exact = new ArrayList<>(1);
+            Postings exactPostings = postings.get(term);
+            if (exactPostings != null) {
+                exact.add(exactPostings);
+            }
+            List<Postings> prefixed = new ArrayList<>();
+            for (Map.Entry<String, Postings> entry : prefixRange(term).entrySet()) {
+                if (!entry.getKey().equals(term)) {
+                    prefixed.add(entry.getValue());
+                    if (prefixed.size() >= MAX_PREFIX_EXPANSIONS) {
+                        break;
+                    }
+                }
+            }
+            List<Postings> fuzzy = new ArrayList<>();
+            if (exact.isEmpty() && prefixed.isEmpty() && term.length() >= MIN_FUZZY_LENGTH) {
+                for (String candidate : fuzzyCandidates(term)) {
+                    fuzzy.add(postings.get(candidate));
+                }
+            }
+
+            int touched = 0;
+            touched = collect(exact, EXACT, t, mark, touched, ws);
+            touched = collect(prefixed, PREFIX, t, mark, touched, ws);
+            touched = collect(fuzzy, FUZZY, t, mark, touched, ws);
+
+            // Only doctors that matched this term go on to the next one
+            for (int i = 0; i < touched; i++) {
+                int ordinal = ws.touched[i];
+                ws.progress[ordinal] = mark + 1;
+                ws.scores[ordinal] = (t == 0 ? 0f : ws.scores[ordinal]) + ws.termBest[ordinal];
+            }
+            matched = touched;
+            if (matched == 0) {
+                break;
+            }
+        }
+        System.arraycopy(ws.touched, 0, ws.matches, 0, matched);
+        ws.stamp += terms.size() + 1;
+        return matched;
+    }
+
+    private int collect(List<Postings> lists, float quality, int termIndex, int mark, int touched, Workspace ws) {
+        for (Postings list : lists) {
+            for (int i = 0; i < list.size; i++) {
+                int ordinal = list.ordinals[i];
+                if (documents[ordinal] == null) {
+                    continue;
+                }
+                if (termIndex > 0 && ws.progress[ordinal] != mark) {
+                    continue;
+                }
+                float score = quality * fieldWeight(list.fields[i]);
+                if (ws.termMark[ordinal] != mark) {
+                    ws.termMark[ordinal] = mark;
+                    ws.termBest[ordinal] = score;
+                    ws.touched[touched++] = ordinal;
+                } else if (score > ws.termBest[ordinal]) {
+                    ws.termBest[ordinal] = score;
+                }
+            }
+        }
+        return touched;
+    }
+
+    private static float fieldWeight(int fields) {
+        float weight = 0;
+        if ((fields & NAME) != 0) {
+            weight += 3;
+        }
+        if ((fields & SPECIALIZATION) != 0) {
+            weight += 2;
+        }
+        if ((fields & DEPARTMENT) != 0) {
+            weight += 1.5f;
+        }
+        if ((fields & BIO) != 0) {
+            weight += 0.5f;
+        }
+        return weight;
+    }
+
+    // Terms within one insertion, deletion or substitution of the query term
+    private Set<String> fuzzyCandidates(String term) {
+        Set<String> candidates = new HashSet<>();
+        Set<String> direct = deletions.get(term);
+        if (direct != null) {
+            candidates.addAll(direct);
+        }
+        for (String variant : deletionsOf(term)) {
+            if (postings.containsKey(variant)) {
+                candidates.add(variant);
+            }
+            Set<String> shared = deletions.get(variant);
+            if (shared != null) {
+                candidates.addAll(shared);
+            }
+        }
+        return candidates;
+    }
+
+    private NavigableMap<String, Postings> prefixRange(String prefix) {
+        return postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    // -1 means no filter; an unknown value maps to an id no doctor has
+    private static int filter(FacetValues values, String value) {
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+        return values.ids.getOrDefault(normalize(value), -2);
+    }
+
+    private double rating(int ordinal) {
+        Double rating = documents[ordinal].getRating();
+        return rating != null ? rating : 0.0;
+    }
+
+    private void rebuild(List<DoctorView> views) {
+        documents = new DoctorView[Math.max(16, views.size() + views.size() / 4)];
+        specializationOf = new int[documents.length];
+        departmentOf = new int[documents.length];
+        nextOrdinal = 0;
+        tombstones = 0;
+        ordinals.clear();
+        postings.clear();
+        deletions.clear();
+        specializations.clear();
+        departments.clear();
+        for (DoctorView view : views) {
+            add(view);
+        }
+    }
+
+    private void add(DoctorView view) {
+        if (nextOrdinal == documents.length) {
+            int capacity = Math.max(16, documents.length * 2);
+            documents = Arrays.copyOf(documents, capacity);
+            specializationOf = Arrays.copyOf(specializationOf, capacity);
+            departmentOf = Arrays.copyOf(departmentOf, capacity);
+        }
+        int ordinal = nextOrdinal++;
+        documents[ordinal] = view;
+        ordinals.put(view.getId(), ordinal);
+        specializationOf[ordinal] = specializations.idOf(view.getSpecialization());
+        departmentOf[ordinal] = departments.idOf(view.getDepartment());
+
+        Map<String, Integer> fields = new HashMap<>();
+        index(fields, view.getName(), NAME);
+        index(fields, view.getSpecialization(), SPECIALIZATION);
+        index(fields, view.getDepartment(), DEPARTMENT);
+        index(fields, view.getBio(), BIO);
+        for (Map.Entry<String, Integer> field : fields.entrySet()) {
+            Postings list = postings.get(field.getKey());
+            if (list == null) {
+                list = new Postings();
+                postings.put(field.getKey(), list);
+                for (String variant : deletionsOf(field.getKey())) {
+                    deletions.computeIfAbsent(variant, v -> new HashSet<>()).add(field.getKey());
+                }
+            }
+            // Ordinals only grow, so appending keeps each list sorted
+            list.add(ordinal, field.getValue());
+        }
+    }
+
+    private static void index(Map<String, Integer> fields, String text, int field) {
+        for (String term : tokenize(text)) {
+            fields.merge(term, field, (a, b) -> a | b);
+        }
+    }
+
+    private static List<String> deletionsOf(String term) {
+        List<String> variants = new ArrayList<>(term.length());
+        if (term.length() < MIN_FUZZY_LENGTH - 1) {
+            return variants;
+        }
+        for (int i = 0; i < term.length(); i++) {
+            variants.add(term.substring(0, i) + term.substring(i + 1));
+        }
+        return variants;
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty() && !STOP_WORDS.contains(token)) {
+                terms.add(token);
+            }
+        }
+        return terms;
+    }
+
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Postings {
+        private int[] ordinals = new int[4];
+        private byte[] fields = new byte[4];
+        private int size;
+
+        private void add(int ordinal, int fieldBits) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+                fields = Arrays.copyOf(fields, size * 2);
+            }
+            ordinals[size] = ordinal;
+            fields[size] = (byte) fieldBits;
+            size++;
+        }
+    }
+
+    // Distinct facet values keyed by their normalized form, labelled as first seen
+    private static final class FacetValues {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> labels = new ArrayList<>();
+
+        private int idOf(String value) {
+            if (value == null || value.isBlank()) {
+                return -1;
+            }
+            return ids.computeIfAbsent(normalize(value), key -> {
+                labels.add(value.trim());
+                return labels.size() - 1;
+            });
+        }
+
+        private Map<String, Integer> counts(int[] counts) {
+            Map<String, Integer> result = new TreeMap<>();
+            for (int id = 0; id < counts.length; id++) {
+                if (counts[id] > 0) {
+                    result.put(labels.get(id), counts[id]);
+                }
+            }
+            return result;
+        }
+
+        private void clear() {
+            ids.clear();
+            labels.clear();
+        }
+    }
+
+    // Per-thread scratch arrays reused across queries; stamps avoid clearing them every time
+    private static final class Workspace {
+        private float[] scores = new float[0];
+        private float[] termBest = new float[0];
+        private int[] termMark = new int[0];
+        private int[] progress = new int[0];
+        private int[] touched = new int[0];
+        private int[] matches = new int[0];
+        private int stamp = 1;
+
+        private void ensureCapacity(int size) {
+            if (scores.length < size) {
+                int capacity = Math.max(size, scores.length * 2);
+                scores = new float[capacity];
+                termBest = new float[capacity];
+                termMark = new int[capacity];
+                progress = new int[capacity];
+                touched = new int[capacity];
+                matches = new int[capacity];
+                stamp = 1;
+            }
+        }
+
+        private void nextQuery() {
+            // Restart the stamps well before they could overflow
+            if (stamp > Integer.MAX_VALUE - 1024) {
+                Arrays.fill(termMark, 0);
+                Arrays.fill(progress, 0);
+                stamp = 1;
+            }
+        }
+    }
+
+    public static final class Hit {
+        private final DoctorView doctor;
+        private final double score;
+
+        private Hit(DoctorView doctor, double score) {
+            this.doctor = doctor;
+            this.score = score;
+        }
+
+        public DoctorView getDoctor() { return doctor; }
+        public double getScore() { return score; }
+    }
+
+    public static final class Result {
+        private final int total;
+        private final List<Hit> hits;
+        private final Map<String, Map<String, Integer>> facets;
+
+        private Result(int total, List<Hit> hits, Map<String, Map<String, Integer>> facets) {
+            this.total = total;
+            this.hits = hits;
+            this.facets = facets;
+        }
+
+        public int getTotal() { return total; }
+        public List<Hit> getHits() { return hits; }
+        public Map<String, Map<String, Integer>> getFacets() { return facets; }
+    }
+}
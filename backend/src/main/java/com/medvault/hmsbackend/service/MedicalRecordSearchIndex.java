@@ -0,0 +1,1362 @@
+package com.medvault.hmsbackend.service;
+
+import com.medvault.hmsbackend.dto.MedicalRecordView;
+import com.medvault.hmsbackend.event.MedicalRecordChangedEvent;
+import com.medvault.hmsbackend.model.Prescription;
+import com.medvault.hmsbackend.repository.MedicalRecordRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+// Full-text index over medical records and their prescriptions, kept on local disk. Changed
+// records go to an in-memory buffer backed by an append-only journal; the buffer is flushed to
+// immutable, memory-mapped segment files, and small segments are merged into larger ones in the
+// background, so a write never rewrites the whole index. A newer copy of a record shadows the
+// older ones until a merge drops them.
+@Service
+public class MedicalRecordSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(MedicalRecordSearchIndex.class);
+
+    // Field bits stored per posting; the weights decide how much a match in that field counts
+    private static final int TITLE = 1;
+    private static final int TYPE = 2;
+    private static final int DESCRIPTION = 4;
+    private static final int MEDICATION = 8;
+    private static final int PRESCRIPTION = 16;
+
+    private static final float EXACT = 1.0f;
+    private static final float PREFIX = 0.7f;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    // BM25 term-frequency saturation and length normalization
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    private static final int MAGIC = 0x4d524958;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    // record id, patient id, doctor id, length, deleted flag
+    private static final int DOC_BYTES = 8 + 8 + 8 + 4 + 1;
+
+    private static final String JOURNAL = "journal.log";
+    private static final int MAX_JOURNAL_ENTRY = 64 * 1024 * 1024;
+    private static final Pattern SEGMENT_FILE = Pattern.compile("seg-(\\d+)\\.idx");
+    private static final Pattern JOURNAL_FILE = Pattern.compile("journal-(\\d+)\\.log");
+
+    private static final int REBUILD_PAGE_SIZE = 500;
+    private static final int REBUILD_SEGMENT_DOCS = 50_000;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "the", "of", "in", "on", "for", "with", "to", "at", "by", "is", "was", "as", "or");
+
+    @Autowired
+    private MedicalRecordRepository medicalRecordRepository;
+
+    @Value("${search.records.dir:data/search/records}")
+    private String directoryPath;
+
+    @Value("${search.records.max-results:1000}")
+    private int maxResults;
+
+    private Path directory;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Serializes flushes, merges and rebuilds; searches and writes only need the read/write lock
+    private final ReentrantLock maintenance = new ReentrantLock();
+
+    // Oldest first
+    private List<Segment> segments = new ArrayList<>();
+    private Map<Long, Doc> buffer = new HashMap<>();
+    // The batch currently being written out as a segment; still searchable until it lands
+    private Map<Long, Doc> flushing = new HashMap<>();
+    // Document frequencies for terms in the buffer and the flushing batch
+    private final Map<String, Integer> bufferFrequencies = new HashMap<>();
+    private FileChannel journal;
+    private long nextGeneration;
+
+    // Live (unshadowed, not deleted) documents and their total length, for BM25
+    private long liveDocs;
+    private long liveLength;
+
+    @PostConstruct
+    void init() throws IOException {
+        directory = Paths.get(directoryPath).toAbsolutePath().normalize();
+        Files.createDirectories(directory);
+
+        TreeMap<Long, Path> segmentFiles = new TreeMap<>();
+        TreeMap<Long, Path> journalFiles = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                Matcher segment = SEGMENT_FILE.matcher(name);
+                Matcher rotated = JOURNAL_FILE.matcher(name);
+                if (name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                } else if (segment.matches()) {
+                    segmentFiles.put(Long.parseLong(segment.group(1)), file);
+                } else if (rotated.matches()) {
+                    journalFiles.put(Long.parseLong(rotated.group(1)), file);
+                }
+            }
+        }
+
+        for (Map.Entry<Long, Path> entry : segmentFiles.entrySet()) {
+            try {
+                segments.add(Segment.open(entry.getValue()));
+            } catch (IOException | RuntimeException e) {
+                // The index can always be rebuilt from the database; drop what cannot be read
+                log.warn("Discarding unreadable search segment {}", entry.getValue().getFileName(), e);
+                Files.deleteIfExists(entry.getValue());
+            }
+            nextGeneration = Math.max(nextGeneration, entry.getKey() + 1);
+        }
+        applyShadows();
+
+        // Journals whose segment was written are stale; the rest are replayed oldest first
+        List<Path> replay = new ArrayList<>();
+        for (Map.Entry<Long, Path> entry : journalFiles.entrySet()) {
+            nextGeneration = Math.max(nextGeneration, entry.getKey() + 1);
+            if (segmentFiles.containsKey(entry.getKey())) {
+                Files.deleteIfExists(entry.getValue());
+            } else {
+                replay.add(entry.getValue());
+            }
+        }
+        Path current = directory.resolve(JOURNAL);
+        if (Files.exists(current)) {
+            replay.add(current);
+        }
+        for (Path file : replay) {
+            for (Doc doc : readJournal(file)) {
+                replace(doc);
+            }
+        }
+
+        // Compact everything replayed into a fresh journal before the old ones go away
+        Path temp = directory.resolve(JOURNAL + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Doc doc : buffer.values()) {
+                out.write(ByteBuffer.wrap(doc.journalEntry()));
+            }
+            out.force(true);
+        }
+        Files.move(temp, current, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (Path file : replay) {
+            if (!file.equals(current)) {
+                Files.deleteIfExists(file);
+            }
+        }
+        journal = openJournal();
+    }
+
+    @PreDestroy
+    void shutdown() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (journal != null) {
+                journal.force(true);
+                journal.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // The journal is not forced on every write, so a crash can lose the last few entries; a count
+    // mismatch with the table at startup triggers a full rebuild
+    @EventListener(ApplicationReadyEvent.class)
+    public void verify() {
+        long expected = medicalRecordRepository.count();
+        long indexed;
+        lock.readLock().lock();
+        try {
+            indexed = liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (indexed != expected) {
+            log.info("Search index holds {} records but the table has {}; rebuilding", indexed, expected);
+            rebuild();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRecordChanged(MedicalRecordChangedEvent event) {
+        Doc doc = medicalRecordRepository.findViewById(event.getRecordId())
+                .map(view -> toDoc(view, prescriptionsOf(List.of(view.getId())).get(view.getId())))
+                .orElseGet(() -> Doc.deleted(event.getRecordId()));
+        lock.writeLock().lock();
+        try {
+            try {
+                journal.write(ByteBuffer.wrap(doc.journalEntry()));
+            } catch (IOException e) {
+                // Still searchable until restart, where the count check rebuilds the index
+                log.warn("Could not journal search update for record {}", doc.recordId, e);
+            }
+            replace(doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Ranks records matching every query term, restricted to one patient and/or one doctor
+    public Result search(String query, Long patientId, Long doctorId, int offset, int limit) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty() || offset >= maxResults) {
+            return new Result(0, List.of());
+        }
+        int wanted = Math.min(offset + limit, maxResults);
+        Scope scope = new Scope(patientId, doctorId);
+
+        lock.readLock().lock();
+        try {
+            Query q = new Query(terms);
+            // Rarest term first, so later terms only have to be checked against a few candidates
+            q.terms.sort(Comparator.comparingLong(q::frequency));
+
+            Comparator<Hit> order = Comparator.comparingDouble(Hit::getScore).thenComparing(Hit::getRecordId);
+            PriorityQueue<Hit> top = new PriorityQueue<>(wanted + 1, order);
+            long[] total = new long[1];
+            HitSink sink = (recordId, score) -> {
+                total[0]++;
+                Hit hit = new Hit(recordId, score);
+                if (top.size() < wanted) {
+                    top.offer(hit);
+                } else if (order.compare(hit, top.peek()) > 0) {
+                    top.poll();
+                    top.offer(hit);
+                }
+            };
+
+            for (Segment segment : segments) {
+                matchSegment(segment, q, scope, sink);
+            }
+            for (Doc doc : flushing.values()) {
+                if (!buffer.containsKey(doc.recordId)) {
+                    matchDoc(doc, q, scope, sink);
+                }
+            }
+            for (Doc doc : buffer.values()) {
+                matchDoc(doc, q, scope, sink);
+            }
+
+            List<Hit> hits = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                hits.add(top.poll());
+            }
+            Collections.reverse(hits);
+            return new Result(total[0], offset < hits.size() ? hits.subList(offset, hits.size()) : List.of());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Writes the buffer out as a segment, then merges segments of similar size
+    @Scheduled(fixedDelayString = "${search.records.flush-ms:10000}")
+    public void flush() {
+        if (!maintenance.tryLock()) {
+            return;
+        }
+        try {
+            long generation;
+            Map<Long, Doc> batch;
+            lock.writeLock().lock();
+            try {
+                if (buffer.isEmpty()) {
+                    return;
+                }
+                generation = nextGeneration++;
+                batch = buffer;
+                flushing = batch;
+                buffer = new HashMap<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            Segment segment;
+            try {
+                rotateJournal(generation);
+                segment = writeSegment(generation, SegmentData.of(batch.values()));
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not flush search segment {}; keeping the updates in the journal", generation, e);
+                restore(batch, generation);
+                return;
+            }
+
+            lock.writeLock().lock();
+            try {
+                shadowFromBuffer(segment);
+                segments.add(segment);
+                flushing = new HashMap<>();
+                for (Doc doc : batch.values()) {
+                    forgetFrequencies(doc);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            Files.deleteIfExists(journalPath(generation));
+
+            merge();
+        } catch (IOException e) {
+            log.warn("Search index maintenance failed", e);
+        } finally {
+            maintenance.unlock();
+        }
+    }
+
+    // Re-indexes every record from the database into new segments written beside the current
+    // ones, which keep answering searches until the new set is swapped in. Updates that arrive
+    // meanwhile wait in the buffer and shadow whatever the rebuild read for the same record.
+    public void rebuild() {
+        maintenance.lock();
+        List<Segment> rebuilt = new ArrayList<>();
+        boolean installed = false;
+        try {
+            long afterId = 0;
+            List<Doc> batch = new ArrayList<>();
+            while (true) {
+                List<MedicalRecordView> page = medicalRecordRepository.findViewsAfter(afterId, PageRequest.of(0, REBUILD_PAGE_SIZE));
+                if (page.isEmpty()) {
+                    break;
+                }
+                List<Long> ids = new ArrayList<>(page.size());
+                for (MedicalRecordView view : page) {
+                    ids.add(view.getId());
+                }
+                Map<Long, List<Prescription>> prescriptions = prescriptionsOf(ids);
+                for (MedicalRecordView view : page) {
+                    batch.add(toDoc(view, prescriptions.get(view.getId())));
+                }
+                afterId = page.get(page.size() - 1).getId();
+                if (batch.size() >= REBUILD_SEGMENT_DOCS) {
+                    rebuilt.add(writeRebuilt(batch));
+                    batch = new ArrayList<>();
+                }
+            }
+            if (!batch.isEmpty()) {
+                rebuilt.add(writeRebuilt(batch));
+            }
+
+            List<Segment> old;
+            lock.writeLock().lock();
+            try {
+                old = segments;
+                segments = rebuilt;
+                installed = true;
+                liveDocs = 0;
+                liveLength = 0;
+                for (Doc doc : buffer.values()) {
+                    live(doc);
+                }
+                // Rebuilt segments hold disjoint id ranges, so only the buffer can shadow them
+                for (Segment segment : segments) {
+                    shadowFromBuffer(segment);
+                    for (int doc = 0; doc < segment.docCount; doc++) {
+                        if (!segment.shadowed.get(doc) && !segment.deleted(doc)) {
+                            liveDocs++;
+                            liveLength += segment.length(doc);
+                        }
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            for (Segment segment : old) {
+                Files.deleteIfExists(segment.path);
+            }
+            merge();
+        } catch (IOException e) {
+            log.warn("Search index rebuild failed", e);
+        } finally {
+            if (!installed) {
+                discard(rebuilt);
+            }
+            maintenance.unlock();
+        }
+    }
+
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Segment writeRebuilt(List<Doc> batch) throws IOException {
+        long generation;
+        lock.writeLock().lock();
+        try {
+            generation = nextGeneration++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return writeSegment(generation, SegmentData.of(batch));
+    }
+
+    // Drops what a failed rebuild wrote; the segments in use stay as they are
+    private void discard(List<Segment> abandoned) {
+        for (Segment segment : abandoned) {
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                log.warn("Could not delete search segment {}", segment.path.getFileName(), e);
+            }
+        }
+    }
+
+    // Puts a batch that failed to flush back into the buffer, unless newer updates replaced it
+    private void restore(Map<Long, Doc> batch, long generation) throws IOException {
+        lock.writeLock().lock();
+        try {
+            for (Doc doc : batch.values()) {
+                if (!buffer.containsKey(doc.recordId)) {
+                    buffer.put(doc.recordId, doc);
+                    journal.write(ByteBuffer.wrap(doc.journalEntry()));
+                } else {
+                    forgetFrequencies(doc);
+                }
+            }
+            flushing = new HashMap<>();
+            journal.force(true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Files.deleteIfExists(journalPath(generation));
+    }
+
+    // Merges the newest run of segments where each older one is at most twice the size of
+    // everything newer in the run; this keeps the segment count logarithmic in the index size
+    private void merge() throws IOException {
+        while (true) {
+            List<Segment> run;
+            List<BitSet> shadows = new ArrayList<>();
+            boolean includesOldest;
+            long generation;
+            lock.writeLock().lock();
+            try {
+                int count = segments.size();
+                if (count < 2) {
+                    return;
+                }
+                int start = count - 1;
+                long runDocs = segments.get(start).docCount;
+                while (start > 0 && segments.get(start - 1).docCount <= 2 * Math.max(runDocs, 1)) {
+                    start--;
+                    runDocs += segments.get(start).docCount;
+                }
+                if (start == count - 1) {
+                    return;
+                }
+                run = new ArrayList<>(segments.subList(start, count));
+                for (Segment segment : run) {
+                    shadows.add((BitSet) segment.shadowed.clone());
+                }
+                includesOldest = start == 0;
+                generation = nextGeneration++;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            Segment merged = writeMerged(generation, run, shadows, includesOldest);
+
+            lock.writeLock().lock();
+            try {
+                // Records updated since the snapshot already count as replaced by the buffer
+                shadowFromBuffer(merged);
+                int start = segments.indexOf(run.get(0));
+                segments.subList(start, start + run.size()).clear();
+                segments.add(start, merged);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            for (Segment segment : run) {
+                Files.deleteIfExists(segment.path);
+            }
+        }
+    }
+
+    private Segment writeMerged(long generation, List<Segment> run, List<BitSet> shadows, boolean dropDeleted) throws IOException {
+        // Surviving documents keep record id order; docMaps translate old ordinals to new ones
+        int[][] docMaps = new int[run.size()][];
+        int[] cursors = new int[run.size()];
+        int survivors = 0;
+        for (int s = 0; s < run.size(); s++) {
+            docMaps[s] = new int[run.get(s).docCount];
+            Arrays.fill(docMaps[s], -1);
+        }
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Comparator.comparingLong(head -> run.get(head[0]).recordId(head[1])));
+        for (int s = 0; s < run.size(); s++) {
+            if (run.get(s).docCount > 0) {
+                heads.offer(new int[] {s, 0});
+            }
+        }
+        List<int[]> order = new ArrayList<>();
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            int s = head[0];
+            int doc = head[1];
+            Segment segment = run.get(s);
+            if (!shadows.get(s).get(doc) && !(dropDeleted && segment.deleted(doc))) {
+                docMaps[s][doc] = survivors++;
+                order.add(new int[] {s, doc});
+            }
+            if (doc + 1 < segment.docCount) {
+                heads.offer(new int[] {s, doc + 1});
+            }
+        }
+
+        Path temp = directory.resolve("seg-" + generation + ".idx.tmp");
+        try (SegmentWriter writer = new SegmentWriter(temp, survivors)) {
+            for (int[] entry : order) {
+                Segment segment = run.get(entry[0]);
+                int doc = entry[1];
+                writer.doc(segment.recordId(doc), segment.patientId(doc), segment.doctorId(doc),
+                        segment.length(doc), segment.deleted(doc));
+            }
+
+            // Walk the sorted dictionaries together, one term at a time
+            int[] termCursors = new int[run.size()];
+            PriorityQueue<Integer> pending = new PriorityQueue<>(Comparator.comparing((Integer s) -> run.get(s).terms[termCursors[s]]));
+            for (int s = 0; s < run.size(); s++) {
+                if (run.get(s).terms.length > 0) {
+                    pending.offer(s);
+                }
+            }
+            PostingList postings = new PostingList();
+            while (!pending.isEmpty()) {
+                String term = run.get(pending.peek()).terms[termCursors[pending.peek()]];
+                postings.clear();
+                while (!pending.isEmpty() && run.get(pending.peek()).terms[termCursors[pending.peek()]].equals(term)) {
+                    int s = pending.poll();
+                    PostingReader reader = run.get(s).postings(termCursors[s]);
+                    while (reader.next()) {
+                        int mapped = docMaps[s][reader.doc];
+                        if (mapped >= 0) {
+                            postings.add(mapped, reader.fields, reader.frequency);
+                        }
+                    }
+                    if (++termCursors[s] < run.get(s).terms.length) {
+                        pending.offer(s);
+                    }
+                }
+                if (postings.size > 0) {
+                    postings.sort();
+                    writer.term(term, postings);
+                }
+            }
+        }
+        return publishSegment(generation, temp);
+    }
+
+    private Segment writeSegment(long generation, SegmentData data) throws IOException {
+        Path temp = directory.resolve("seg-" + generation + ".idx.tmp");
+        try {
+            try (SegmentWriter writer = new SegmentWriter(temp, data.docs.size())) {
+                for (Doc doc : data.docs) {
+                    writer.doc(doc.recordId, doc.patientId, doc.doctorId, doc.length, doc.deleted);
+                }
+                for (Map.Entry<String, PostingList> entry : data.postings.entrySet()) {
+                    writer.term(entry.getKey(), entry.getValue());
+                }
+            }
+            return publishSegment(generation, temp);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Segment publishSegment(long generation, Path temp) throws IOException {
+        Path target = directory.resolve("seg-" + generation + ".idx");
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        return Segment.open(target);
+    }
+
+    private void matchSegment(Segment segment, Query q, Scope scope, HitSink sink) {
+        int[] candidates = null;
+        float[] scores = null;
+        int count = 0;
+        for (String term : q.terms) {
+            List<int[]> expansions = segment.expand(term);
+            if (candidates == null) {
+                Map<Integer, Float> best = new HashMap<>();
+                for (int[] expansion : expansions) {
+                    float weight = (expansion[1] == 1 ? EXACT : PREFIX) * q.idf(segment.terms[expansion[0]]);
+                    PostingReader reader = segment.postings(expansion[0]);
+                    while (reader.next()) {
+                        int doc = reader.doc;
+                        if (segment.shadowed.get(doc) || segment.deleted(doc) || !scope.matches(segment, doc)) {
+                            continue;
+                        }
+                        float score = weight * q.saturation(reader.frequency, segment.length(doc)) * fieldWeight(reader.fields);
+                        best.merge(doc, score, Math::max);
+                    }
+                }
+                candidates = new int[best.size()];
+                for (int doc : best.keySet()) {
+                    candidates[count++] = doc;
+                }
+                Arrays.sort(candidates);
+                scores = new float[count];
+                for (int i = 0; i < count; i++) {
+                    scores[i] = best.get(candidates[i]);
+                }
+            } else {
+                float[] termBest = new float[count];
+                for (int[] expansion : expansions) {
+                    float weight = (expansion[1] == 1 ? EXACT : PREFIX) * q.idf(segment.terms[expansion[0]]);
+                    PostingReader reader = segment.postings(expansion[0]);
+                    // Both lists are sorted by ordinal, so one forward pass intersects them
+                    int i = 0;
+                    while (i < count && reader.next()) {
+                        while (i < count && candidates[i] < reader.doc) {
+                            i++;
+                        }
+                        if (i < count && candidates[i] == reader.doc) {
+                            float score = weight * q.saturation(reader.frequency, segment.length(reader.doc)) * fieldWeight(reader.fields);
+                            termBest[i] = Math.max(termBest[i], score);
+                        }
+                    }
+                }
+                int kept = 0;
+                for (int i = 0; i < count; i++) {
+                    if (termBest[i] > 0) {
+                        candidates[kept] = candidates[i];
+                        scores[kept] = scores[i] + termBest[i];
+                        kept++;
+                    }
+                }
+                count = kept;
+            }
+            if (count == 0) {
+                return;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            sink.accept(segment.recordId(candidates[i]), scores[i]);
+        }
+    }
+
+    private void matchDoc(Doc doc, Query q, Scope scope, HitSink sink) {
+        if (doc.deleted || !scope.matches(doc)) {
+            return;
+        }
+        float score = 0;
+        for (String term : q.terms) {
+            float best = 0;
+            int prefixed = 0;
+            for (Map.Entry<String, Posting> entry : doc.terms.entrySet()) {
+                String candidate = entry.getKey();
+                float quality;
+                if (candidate.equals(term)) {
+                    quality = EXACT;
+                } else if (candidate.startsWith(term) && prefixed < MAX_PREFIX_EXPANSIONS) {
+                    quality = PREFIX;
+                    prefixed++;
+                } else {
+                    continue;
+                }
+                Posting posting = entry.getValue();
+                float termScore = quality * q.idf(candidate) * q.saturation(posting.frequency, doc.length) * fieldWeight(posting.fields);
+                best = Math.max(best, termScore);
+            }
+            if (best == 0) {
+                return;
+            }
+            score += best;
+        }
+        sink.accept(doc.recordId, score);
+    }
+
+    // Makes a record's new version the live one; callers hold the write lock
+    private void replace(Doc doc) {
+        Doc previous = buffer.put(doc.recordId, doc);
+        if (previous != null) {
+            unlive(previous);
+            forgetFrequencies(previous);
+        } else {
+            Doc pending = flushing.get(doc.recordId);
+            if (pending != null) {
+                // The flushing copy is now shadowed by the buffer
+                unlive(pending);
+            } else {
+                for (int s = segments.size() - 1; s >= 0; s--) {
+                    Segment segment = segments.get(s);
+                    int ordinal = segment.find(doc.recordId);
+                    if (ordinal >= 0) {
+                        if (!segment.shadowed.get(ordinal)) {
+                            segment.shadowed.set(ordinal);
+                            if (!segment.deleted(ordinal)) {
+                                liveDocs--;
+                                liveLength -= segment.length(ordinal);
+                            }
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        live(doc);
+        for (String term : doc.terms.keySet()) {
+            bufferFrequencies.merge(term, 1, Integer::sum);
+        }
+    }
+
+    private void live(Doc doc) {
+        if (!doc.deleted) {
+            liveDocs++;
+            liveLength += doc.length;
+        }
+    }
+
+    private void unlive(Doc doc) {
+        if (!doc.deleted) {
+            liveDocs--;
+            liveLength -= doc.length;
+        }
+    }
+
+    private void forgetFrequencies(Doc doc) {
+        for (String term : doc.terms.keySet()) {
+            bufferFrequencies.computeIfPresent(term, (t, n) -> n > 1 ? n - 1 : null);
+        }
+    }
+
+    private void shadowFromBuffer(Segment segment) {
+        for (Long recordId : buffer.keySet()) {
+            int ordinal = segment.find(recordId);
+            if (ordinal >= 0) {
+                segment.shadowed.set(ordinal);
+            }
+        }
+    }
+
+    // At startup: a record's copy in a newer segment shadows the copies in older ones
+    private void applyShadows() {
+        liveDocs = 0;
+        liveLength = 0;
+        for (int s = segments.size() - 1; s >= 0; s--) {
+            Segment segment = segments.get(s);
+            for (int doc = 0; doc < segment.docCount; doc++) {
+                long recordId = segment.recordId(doc);
+                for (int newer = s + 1; newer < segments.size(); newer++) {
+                    if (segments.get(newer).find(recordId) >= 0) {
+                        segment.shadowed.set(doc);
+                        break;
+                    }
+                }
+                if (!segment.shadowed.get(doc) && !segment.deleted(doc)) {
+                    liveDocs++;
+                    liveLength += segment.length(doc);
+                }
+            }
+        }
+    }
+
+    private Map<Long, List<Prescription>> prescriptionsOf(Collection<Long> recordIds) {
+        Map<Long, List<Prescription>> byRecord = new HashMap<>();
+        for (Object[] row : medicalRecordRepository.findPrescriptionsByRecordIds(recordIds)) {
+            byRecord.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((Prescription) row[1]);
+        }
+        return byRecord;
+    }
+
+    private static Doc toDoc(MedicalRecordView view, List<Prescription> prescriptions) {
+        Doc doc = new Doc(view.getId(), view.getPatientId(), view.getDoctorId(), false);
+        doc.field(TITLE, view.getTitle());
+        doc.field(TYPE, view.getType());
+        doc.field(DESCRIPTION, view.getDescription());
+        if (prescriptions != null) {
+            for (Prescription prescription : prescriptions) {
+                doc.field(MEDICATION, prescription.getMedication());
+                doc.field(PRESCRIPTION, String.join(" ", nonNull(prescription.getDosage()), nonNull(prescription.getFrequency()),
+                        nonNull(prescription.getDuration()), nonNull(prescription.getInstructions())));
+            }
+        }
+        return doc;
+    }
+
+    private List<Doc> readJournal(Path file) throws IOException {
+        List<Doc> docs = new ArrayList<>();
+        try (InputStream in = Files.newInputStream(file);
+             DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+            while (true) {
+                int length;
+                try {
+                    length = data.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length < 0 || length > MAX_JOURNAL_ENTRY) {
+                    log.warn("Ignoring corrupt entry at the end of search journal {}", file.getFileName());
+                    break;
+                }
+                byte[] payload = new byte[length];
+                long checksum;
+                try {
+                    checksum = data.readInt() & 0xffffffffL;
+                    data.readFully(payload);
+                } catch (EOFException e) {
+                    log.warn("Ignoring torn entry at the end of search journal {}", file.getFileName());
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if (crc.getValue() != checksum) {
+                    log.warn("Ignoring corrupt entry at the end of search journal {}", file.getFileName());
+                    break;
+                }
+                docs.add(Doc.fromJournal(payload));
+            }
+        }
+        return docs;
+    }
+
+    // Entries for a batch stay in the rotated journal until its segment is on disk
+    private void rotateJournal(long generation) throws IOException {
+        lock.writeLock().lock();
+        try {
+            journal.force(true);
+            journal.close();
+            try {
+                Files.move(directory.resolve(JOURNAL), journalPath(generation), StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                journal = openJournal();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private FileChannel openJournal() throws IOException {
+        return FileChannel.open(directory.resolve(JOURNAL), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private Path journalPath(long generation) {
+        return directory.resolve("journal-" + generation + ".log");
+    }
+
+    private static float fieldWeight(int fields) {
+        float weight = 0;
+        if ((fields & TITLE) != 0) {
+            weight += 3;
+        }
+        if ((fields & MEDICATION) != 0) {
+            weight += 2.5f;
+        }
+        if ((fields & TYPE) != 0) {
+            weight += 2;
+        }
+        if ((fields & DESCRIPTION) != 0) {
+            weight += 1;
+        }
+        if ((fields & PRESCRIPTION) != 0) {
+            weight += 1;
+        }
+        return weight;
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty() && !STOP_WORDS.contains(token)) {
+                terms.add(token);
+            }
+        }
+        return terms;
+    }
+
+    private static String nonNull(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    // Per-query state: the distinct terms and their IDF, cached across sources
+    private final class Query {
+        private final List<String> terms;
+        private final Map<String, Float> idfs = new HashMap<>();
+        private final Map<String, Long> frequencies = new HashMap<>();
+        private final float averageLength;
+        private final long documents;
+
+        private Query(List<String> terms) {
+            this.terms = new ArrayList<>(new LinkedHashSet<>(terms));
+            this.documents = Math.max(1, liveDocs);
+            this.averageLength = liveDocs > 0 ? (float) liveLength / liveDocs : 1f;
+        }
+
+        private long frequency(String term) {
+            return frequencies.computeIfAbsent(term, t -> {
+                long frequency = bufferFrequencies.getOrDefault(t, 0);
+                for (Segment segment : segments) {
+                    int index = Arrays.binarySearch(segment.terms, t);
+                    if (index >= 0) {
+                        frequency += segment.frequencies[index];
+                    }
+                }
+                return frequency;
+            });
+        }
+
+        private float idf(String term) {
+            return idfs.computeIfAbsent(term, t -> {
+                long frequency = Math.min(frequency(t), documents);
+                return (float) Math.log(1 + (documents - frequency + 0.5) / (frequency + 0.5));
+            });
+        }
+
+        private float saturation(int frequency, int length) {
+            return frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * length / averageLength));
+        }
+    }
+
+    private static final class Scope {
+        private final Long patientId;
+        private final Long doctorId;
+
+        private Scope(Long patientId, Long doctorId) {
+            this.patientId = patientId;
+            this.doctorId = doctorId;
+        }
+
+        private boolean matches(Segment segment, int doc) {
+            return (patientId == null || segment.patientId(doc) == patientId)
+                    && (doctorId == null || segment.doctorId(doc) == doctorId);
+        }
+
+        private boolean matches(Doc doc) {
+            return (patientId == null || doc.patientId == patientId)
+                    && (doctorId == null || doc.doctorId == doctorId);
+        }
+    }
+
+    private interface HitSink {
+        void accept(long recordId, float score);
+    }
+
+    private static final class Posting {
+        private int fields;
+        private int frequency;
+    }
+
+    // One version of a record, tokenized; also the unit written to the journal
+    private static final class Doc {
+        private final long recordId;
+        private final long patientId;
+        private final long doctorId;
+        private final boolean deleted;
+        private final List<Integer> fieldBits = new ArrayList<>();
+        private final List<String> fieldTexts = new ArrayList<>();
+        private final Map<String, Posting> terms = new HashMap<>();
+        private int length;
+
+        private Doc(long recordId, long patientId, long doctorId, boolean deleted) {
+            this.recordId = recordId;
+            this.patientId = patientId;
+            this.doctorId = doctorId;
+            this.deleted = deleted;
+        }
+
+        private static Doc deleted(long recordId) {
+            return new Doc(recordId, 0, 0, true);
+        }
+
+        private void field(int field, String text) {
+            if (text == null || text.isBlank()) {
+                return;
+            }
+            fieldBits.add(field);
+            fieldTexts.add(text);
+            for (String term : tokenize(text)) {
+                Posting posting = terms.computeIfAbsent(term, t -> new Posting());
+                posting.fields |= field;
+                posting.frequency++;
+                length++;
+            }
+        }
+
+        // length, CRC32, then the payload; a torn tail fails the length or checksum on replay
+        private byte[] journalEntry() {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeLong(recordId);
+                out.writeLong(patientId);
+                out.writeLong(doctorId);
+                out.writeBoolean(deleted);
+                out.writeInt(fieldBits.size());
+                for (int i = 0; i < fieldBits.size(); i++) {
+                    byte[] text = fieldTexts.get(i).getBytes(StandardCharsets.UTF_8);
+                    out.writeByte(fieldBits.get(i));
+                    out.writeInt(text.length);
+                    out.write(text);
+                }
+                byte[] payload = bytes.toByteArray();
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                ByteBuffer entry = ByteBuffer.allocate(8 + payload.length);
+                entry.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+                return entry.array();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static Doc fromJournal(byte[] payload) {
+            ByteBuffer in = ByteBuffer.wrap(payload);
+            Doc doc = new Doc(in.getLong(), in.getLong(), in.getLong(), in.get() != 0);
+            int fields = in.getInt();
+            for (int i = 0; i < fields; i++) {
+                int field = in.get();
+                byte[] text = new byte[in.getInt()];
+                in.get(text);
+                doc.field(field, new String(text, StandardCharsets.UTF_8));
+            }
+            return doc;
+        }
+    }
+
+    private static final class PostingList {
+        private int[] docs = new int[8];
+        private byte[] fields = new byte[8];
+        private int[] frequencies = new int[8];
+        private int size;
+
+        private void add(int doc, int fieldBits, int frequency) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                fields = Arrays.copyOf(fields, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            docs[size] = doc;
+            fields[size] = (byte) fieldBits;
+            frequencies[size] = frequency;
+            size++;
+        }
+
+        private void clear() {
+            size = 0;
+        }
+
+        // Postings gathered from several segments interleave; order them by their new ordinal
+        private void sort() {
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = ((long) docs[i] << 32) | i;
+            }
+            Arrays.sort(keys);
+            int[] sortedDocs = new int[size];
+            byte[] sortedFields = new byte[size];
+            int[] sortedFrequencies = new int[size];
+            for (int i = 0; i < size; i++) {
+                int from = (int) keys[i];
+                sortedDocs[i] = docs[from];
+                sortedFields[i] = fields[from];
+                sortedFrequencies[i] = frequencies[from];
+            }
+            docs = sortedDocs;
+            fields = sortedFields;
+            frequencies = sortedFrequencies;
+        }
+    }
+
+    // A batch of documents in record id order with their postings, ready to be written
+    private static final class SegmentData {
+        private final List<Doc> docs;
+        private final TreeMap<String, PostingList> postings = new TreeMap<>();
+
+        private SegmentData(List<Doc> docs) {
+            this.docs = docs;
+        }
+
+        private static SegmentData of(Collection<Doc> docs) {
+            List<Doc> sorted = new ArrayList<>(docs);
+            sorted.sort(Comparator.comparingLong(doc -> doc.recordId));
+            SegmentData data = new SegmentData(sorted);
+            for (int ordinal = 0; ordinal < sorted.size(); ordinal++) {
+                for (Map.Entry<String, Posting> entry : sorted.get(ordinal).terms.entrySet()) {
+                    data.postings.computeIfAbsent(entry.getKey(), t -> new PostingList())
+                            .add(ordinal, entry.getValue().fields, entry.getValue().frequency);
+                }
+            }
+            return data;
+        }
+    }
+
+    // Segment file: header, fixed-width document table, postings, then the term dictionary.
+    // Documents are added first, then terms in sorted order.
+    private static final class SegmentWriter implements AutoCloseable {
+        private final Path path;
+        private final FileChannel channel;
+        private final DataOutputStream out;
+        private final int docCount;
+        private final ByteArrayOutputStream dictionary = new ByteArrayOutputStream();
+        private final DataOutputStream dictionaryOut = new DataOutputStream(dictionary);
+        private final int postingsStart;
+        private int termCount;
+
+        private SegmentWriter(Path path, int docCount) throws IOException {
+            this.path = path;
+            this.docCount = docCount;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+            this.postingsStart = HEADER_BYTES + docCount * DOC_BYTES;
+            out.write(new byte[HEADER_BYTES]);
+        }
+
+        private void doc(long recordId, long patientId, long doctorId, int length, boolean deleted) throws IOException {
+            out.writeLong(recordId);
+            out.writeLong(patientId);
+            out.writeLong(doctorId);
+            out.writeInt(length);
+            out.writeBoolean(deleted);
+        }
+
+        private void term(String term, PostingList postings) throws IOException {
+            int offset = out.size() - postingsStart;
+            int previous = 0;
+            for (int i = 0; i < postings.size; i++) {
+                writeVarInt(out, postings.docs[i] - previous);
+                out.writeByte(postings.fields[i]);
+                writeVarInt(out, postings.frequencies[i]);
+                previous = postings.docs[i];
+            }
+            byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+            dictionaryOut.writeShort(bytes.length);
+            dictionaryOut.write(bytes);
+            dictionaryOut.writeInt(postings.size);
+            dictionaryOut.writeInt(offset);
+            termCount++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                int dictionaryStart = out.size();
+                dictionary.writeTo(out);
+                out.flush();
+                // Offsets are ints and the file is mapped as one buffer
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IOException("Search segment " + path.getFileName() + " exceeds 2 GB");
+                }
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(docCount).putInt(termCount)
+                        .putInt(postingsStart).putInt(dictionaryStart).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    // A memory-mapped segment. Everything but the shadow bits is immutable once written.
+    private static final class Segment {
+        private final Path path;
+        private final ByteBuffer data;
+        private final int docCount;
+        private final int postingsStart;
+        private final String[] terms;
+        private final int[] frequencies;
+        private final int[] offsets;
+        // Documents replaced by a newer copy elsewhere; guarded by the index lock
+        private final BitSet shadowed = new BitSet();
+
+        private Segment(Path path, ByteBuffer data) {
+            this.path = path;
+            this.data = data;
+            if (data.getInt(0) != MAGIC || data.getInt(4) != FORMAT_VERSION) {
+                throw new IllegalStateException("Not a search segment: " + path.getFileName());
+            }
+            this.docCount = data.getInt(8);
+            int termCount = data.getInt(12);
+            this.postingsStart = data.getInt(16);
+            this.terms = new String[termCount];
+            this.frequencies = new int[termCount];
+            this.offsets = new int[termCount];
+            ByteBuffer dictionary = data.duplicate().position(data.getInt(20));
+            for (int i = 0; i < termCount; i++) {
+                byte[] bytes = new byte[dictionary.getShort() & 0xffff];
+                dictionary.get(bytes);
+                terms[i] = new String(bytes, StandardCharsets.UTF_8);
+                frequencies[i] = dictionary.getInt();
+                offsets[i] = dictionary.getInt();
+            }
+        }
+
+        private static Segment open(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                return new Segment(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+
+        private long recordId(int doc) { return data.getLong(HEADER_BYTES + doc * DOC_BYTES); }
+        private long patientId(int doc) { return data.getLong(HEADER_BYTES + doc * DOC_BYTES + 8); }
+        private long doctorId(int doc) { return data.getLong(HEADER_BYTES + doc * DOC_BYTES + 16); }
+        private int length(int doc) { return data.getInt(HEADER_BYTES + doc * DOC_BYTES + 24); }
+        private boolean deleted(int doc) { return data.get(HEADER_BYTES + doc * DOC_BYTES + 28) != 0; }
+
+        // Documents are stored in record id order
+        private int find(long recordId) {
+            int low = 0;
+            int high = docCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long id = recordId(mid);
+                if (id < recordId) {
+                    low = mid + 1;
+                } else if (id > recordId) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        // {term index, 1 if exact else 0} for the term and a bounded number of its extensions
+        private List<int[]> expand(String term) {
+            List<int[]> expansions = new ArrayList<>();
+            int index = Arrays.binarySearch(terms, term);
+            if (index >= 0) {
+                expansions.add(new int[] {index, 1});
+            }
+            int next = index >= 0 ? index + 1 : -index - 1;
+            while (next < terms.length && terms[next].startsWith(term) && expansions.size() <= MAX_PREFIX_EXPANSIONS) {
+                expansions.add(new int[] {next++, 0});
+            }
+            return expansions;
+        }
+
+        private PostingReader postings(int termIndex) {
+            return new PostingReader(data, postingsStart + offsets[termIndex], frequencies[termIndex]);
+        }
+    }
+
+    // Decodes delta-encoded postings straight from the mapped file
+    private static final class PostingReader {
+        private final ByteBuffer data;
+        private int position;
+        private int remaining;
+        private int doc;
+        private int fields;
+        private int frequency;
+
+        private PostingReader(ByteBuffer data, int position, int count) {
+            this.data = data;
+            this.position = position;
+            this.remaining = count;
+        }
+
+        private boolean next() {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            doc += readVarInt();
+            fields = data.get(position++);
+            frequency = readVarInt();
+            return true;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data.get(position++);
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+    }
+
+    public static final class Hit {
+        private final long recordId;
+        private final double score;
+
+        private Hit(long recordId, double score) {
+            this.recordId = recordId;
+            this.score = score;
+        }
+
+        public long getRecordId() { return recordId; }
+        public double getScore() { return score; }
+    }
+
+    public static final class Result {
+        private final long total;
+        private final List<Hit> hits;
+
+        private Result(long total, List<Hit> hits) {
+            this.total = total;
+            this.hits = hits;
+        }
+
+        public long getTotal() { return total; }
+        public List<Hit> getHits() { return hits; }
+    }
+}
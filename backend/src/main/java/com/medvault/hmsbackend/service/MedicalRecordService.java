@@ -0,0 +1,78 @@
+package com.medvault.hmsbackend.service;
+
+import com.medvault.hmsbackend.dto.MedicalRecordView;
+import com.medvault.hmsbackend.event.MedicalRecordChangedEvent;
+import com.medvault.hmsbackend.model.FileAttachment;
+import com.medvault.hmsbackend.model.MedicalRecord;
+import com.medvault.hmsbackend.model.Prescription;
+import com.medvault.hmsbackend.repository.MedicalRecordRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class MedicalRecordService {
+
+    @Autowired
+    private MedicalRecordRepository medicalRecordRepository;
+
+    @Autowired
+    private ThumbnailPipeline thumbnailPipeline;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Fills in prescriptions and files for a page of records with one query per child type,
+    // instead of a lazy load per record
+    @Transactional(readOnly = true)
+    public List<MedicalRecordView> attachChildren(List<MedicalRecordView> views) {
+        if (views.isEmpty()) {
+            return views;
+        }
+        Map<Long, MedicalRecordView> byId = new HashMap<>();
+        for (MedicalRecordView view : views) {
+            byId.put(view.getId(), view);
+        }
+        for (Object[] row : medicalRecordRepository.findPrescriptionsByRecordIds(byId.keySet())) {
+            byId.get((Long) row[0]).getPrescriptions().add((Prescription) row[1]);
+        }
+        for (Object[] row : medicalRecordRepository.findFilesByRecordIds(byId.keySet())) {
+            byId.get((Long) row[0]).getFiles().add((FileAttachment) row[1]);
+        }
+        return views;
+    }
+
+    // The record and its children share pooled ids and are flushed together, so Hibernate sends
+    // one batched insert per table
+    @Transactional
+    public MedicalRecordView create(MedicalRecord record) {
+        if (record.getPrescriptions() == null) {
+            record.setPrescriptions(new ArrayList<>());
+        }
+        if (record.getFiles() == null) {
+            record.setFiles(new ArrayList<>());
+        }
+        MedicalRecord saved = medicalRecordRepository.saveAndFlush(record);
+        eventPublisher.publishEvent(new MedicalRecordChangedEvent(saved.getId()));
+        return MedicalRecordView.from(saved);
+    }
+
+    // Adds an attachment whose content is already in the blob store; its url points at the
+    // download endpoint, which needs the id assigned on flush
+    @Transactional
+    public FileAttachment addFile(Long recordId, FileAttachment file) {
+        MedicalRecord record = medicalRecordRepository.findById(recordId)
+                .orElseThrow(() -> new IllegalArgumentException("Medical record not found"));
+        record.getFiles().add(file);
+        medicalRecordRepository.saveAndFlush(record);
+        file.setUrl("/api/medical-records/" + recordId + "/files/" + file.getId() + "/content");
+        thumbnailPipeline.enqueue(recordId, file);
+        return file;
+    }
+}
@@ -0,0 +1,250 @@
+package com.medvault.hmsbackend.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medvault.hmsbackend.dto.AppointmentView;
+import com.medvault.hmsbackend.dto.MedicalRecordView;
+import com.medvault.hmsbackend.model.Patient;
+import com.medvault.hmsbackend.repository.AppointmentRepository;
+import com.medvault.hmsbackend.repository.MedicalRecordRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Streams a patient's complete history as NDJSON, optionally zipped together with the attachment
+// blobs. Rows come from streaming queries and are written as they arrive, so memory use does not
+// depend on the length of the history and the first line goes out before the rest is read.
+@Service
+public class PatientHistoryExporter {
+
+    private static final String HISTORY_ENTRY = "history.ndjson";
+    private static final int ATTACHMENT_PAGE_SIZE = 100;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private MedicalRecordRepository medicalRecordRepository;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // A streaming export holds a pooled connection for as long as the client takes to read it
+    @Value("${exports.max-concurrent:4}")
+    private int maxConcurrent;
+
+    private Semaphore permits;
+    private TransactionTemplate readOnly;
+
+    @PostConstruct
+    void init() {
+        permits = new Semaphore(maxConcurrent);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    // Callers that get a permit must release it once the export has been written
+    public boolean tryAcquire() {
+        return permits.tryAcquire();
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    // doctorId limits the export to that doctor's appointments and records; null exports everything
+    public void writeNdjson(Patient patient, Long doctorId, OutputStream out) throws IOException {
+        writeHistory(patient, doctorId, false, out);
+    }
+
+    // history.ndjson first, then every stored attachment under attachments/<record id>/
+    public void writeZip(Patient patient, Long doctorId, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        zip.putNextEntry(new ZipEntry(HISTORY_ENTRY));
+        writeHistory(patient, doctorId, true, zip);
+        zip.closeEntry();
+
+        // Paged by file id in short queries, so no connection is held while blobs are copied
+        long afterId = 0;
+        while (true) {
+            List<Object[]> page = medicalRecordRepository.findPatientBlobsAfter(
+                    patient.getId(), doctorId, afterId, PageRequest.of(0, ATTACHMENT_PAGE_SIZE));
+            if (page.isEmpty()) {
+                break;
+            }
+            for (Object[] row : page) {
+                Long recordId = (Long) row[0];
+                Long fileId = (Long) row[1];
+                String hash = (String) row[4];
+                if (!blobStore.exists(hash)) {
+                    continue;
+                }
+                // Images, PDFs and archives are already compressed; deflating them again only costs CPU
+                zip.setLevel(isCompressed((String) row[3]) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+                zip.putNextEntry(new ZipEntry(attachmentPath(recordId, fileId, (String) row[2])));
+                blobStore.transfer(hash, 0, blobStore.size(hash), zip);
+                zip.closeEntry();
+            }
+            afterId = (Long) page.get(page.size() - 1)[1];
+        }
+        zip.finish();
+        zip.flush();
+    }
+
+    private void writeHistory(Patient patient, Long doctorId, boolean zipped, OutputStream out) throws IOException {
+        JsonGenerator json = objectMapper.getFactory().createGenerator(out);
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        json.setRootValueSeparator(new SerializedString("\n"));
+
+        Map<String, Object> header = new LinkedHashMap<>();
+        header.put("type", "patient");
+        header.put("id", patient.getId());
+        header.put("name", patient.getName());
+        header.put("age", patient.getAge());
+        header.put("phone", patient.getPhone());
+        header.put("address", patient.getAddress());
+        header.put("emergencyContact", patient.getEmergencyContact());
+        header.put("medicalHistory", patient.getMedicalHistory());
+        header.put("exportedAt", LocalDateTime.now());
+        json.writeObject(header);
+        // Get the first bytes to the client before the queries run
+        json.flush();
+        out.flush();
+
+        try {
+            readOnly.executeWithoutResult(status -> {
+                try (Stream<AppointmentView> rows = appointmentRepository.streamPatientHistory(patient.getId(), doctorId)) {
+                    rows.forEach(view -> write(json, appointment(view)));
+                }
+                try (Stream<MedicalRecordView> rows = medicalRecordRepository.streamPatientHistory(patient.getId(), doctorId)) {
+                    rows.forEach(view -> write(json, record(view)));
+                }
+                try (Stream<Object[]> rows = medicalRecordRepository.streamPatientPrescriptions(patient.getId(), doctorId)) {
+                    rows.forEach(row -> write(json, prescription(row)));
+                }
+                try (Stream<Object[]> rows = medicalRecordRepository.streamPatientFiles(patient.getId(), doctorId)) {
+                    rows.forEach(row -> write(json, file(row, zipped, doctorId == null)));
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        json.writeRaw('\n');
+        json.close();
+    }
+
+    private static void write(JsonGenerator json, Map<String, Object> line) {
+        try {
+            json.writeObject(line);
+        } catch (IOException e) {
+            // Usually the client went away; abandon the queries
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Map<String, Object> appointment(AppointmentView view) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("type", "appointment");
+        line.put("id", view.getId());
+        line.put("date", view.getDate());
+        line.put("time", view.getTime());
+        line.put("status", view.getStatus());
+        line.put("reason", view.getReason());
+        line.put("notes", view.getNotes());
+        line.put("doctorId", view.getDoctor().getId());
+        line.put("doctorName", view.getDoctor().getName());
+        line.put("specialization", view.getDoctor().getSpecialization());
+        line.put("department", view.getDoctor().getDepartment());
+        return line;
+    }
+
+    private static Map<String, Object> record(MedicalRecordView view) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("type", "record");
+        line.put("id", view.getId());
+        line.put("date", view.getDate());
+        line.put("recordType", view.getType());
+        line.put("title", view.getTitle());
+        line.put("description", view.getDescription());
+        line.put("doctorId", view.getDoctorId());
+        line.put("doctorName", view.getDoctorName());
+        return line;
+    }
+
+    private static Map<String, Object> prescription(Object[] row) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("type", "prescription");
+        line.put("recordId", row[0]);
+        line.put("id", row[1]);
+        line.put("medication", row[2]);
+        line.put("dosage", row[3]);
+        line.put("frequency", row[4]);
+        line.put("duration", row[5]);
+        line.put("instructions", row[6]);
+        return line;
+    }
+
+    // The content hash only goes into the patient's own export, to check the attachments
+    // against; in a doctor's copy it would show which files two patients have in common
+    private static Map<String, Object> file(Object[] row, boolean zipped, boolean withHash) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("type", "file");
+        line.put("recordId", row[0]);
+        line.put("id", row[1]);
+        line.put("name", row[2]);
+        line.put("fileType", row[3]);
+        line.put("size", row[4]);
+        line.put("uploadDate", row[5]);
+        if (withHash) {
+            line.put("sha256", row[6]);
+        }
+        if (zipped && row[6] != null) {
+            line.put("path", attachmentPath((Long) row[0], (Long) row[1], (String) row[2]));
+        }
+        return line;
+    }
+
+    // File ids keep entries unique; the name is reduced to characters safe in any unzip tool
+    private static String attachmentPath(Long recordId, Long fileId, String name) {
+        String safe = name == null ? "" : name.replaceAll("[^A-Za-z0-9._-]", "_");
+        return "attachments/" + recordId + "/" + fileId + (safe.isEmpty() ? "" : "-" + safe);
+    }
+
+    private static boolean isCompressed(String type) {
+        if (type == null) {
+            return false;
+        }
+        String mimeType = type.split(";")[0].trim().toLowerCase(Locale.ROOT);
+        return (mimeType.startsWith("image/") && !mimeType.equals("image/bmp") && !mimeType.equals("image/svg+xml"))
+                || mimeType.startsWith("video/")
+                || mimeType.startsWith("audio/")
+                || mimeType.equals("application/pdf")
+                || mimeType.equals("application/zip")
+                || mimeType.equals("application/gzip");
+    }
+}
@@ -0,0 +1,220 @@
+package com.medvault.hmsbackend.service;
+
+import com.medvault.hmsbackend.model.RollupBackfillPartition;
+import com.medvault.hmsbackend.repository.RollupBackfillPartitionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Rebuilds appointment_rollups from the appointments table. Each doctor's history is split into
+// date windows that are read in parallel, each in its own short transaction over a range of the
+// (doctor_id, date) index. Windows cover disjoint rollup rows, so their results need no merging,
+// and each window is checkpointed as it commits so an interrupted run resumes where it stopped.
+@Service
+public class RollupBackfillJob {
+
+    private static final Logger log = LoggerFactory.getLogger(RollupBackfillJob.class);
+
+    // The range of a MySQL DATE. A doctor's first and last windows are open-ended, so rollups left
+    // outside the span of their appointments are cleared too.
+    private static final LocalDate MIN_DATE = LocalDate.of(1000, 1, 1);
+    private static final LocalDate MAX_DATE = LocalDate.of(9999, 12, 31);
+
+    @Autowired
+    private AppointmentRollupService rollupService;
+
+    @Autowired
+    private RollupBackfillPartitionRepository partitionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${reports.backfill.threads:0}")
+    private int threads;
+
+    @Value("${reports.backfill.partition-days:90}")
+    private int partitionDays;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int connectionPoolSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Progress progress;
+
+    // Finishes a run interrupted by a restart, or backfills the rollups on first start
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        Long unfinished = partitionRepository.findUnfinishedRunId();
+        if (unfinished != null) {
+            log.info("Resuming appointment rollup backfill {}", unfinished);
+            launch(unfinished);
+            return;
+        }
+        boolean empty = jdbcTemplate.queryForList("SELECT 1 FROM appointment_rollups LIMIT 1").isEmpty();
+        if (empty && !jdbcTemplate.queryForList("SELECT 1 FROM appointments LIMIT 1").isEmpty()) {
+            log.info("Appointment rollups are empty; backfilling");
+            launch(null);
+        }
+    }
+
+    // Optional drift repair (e.g. after manual edits to appointments); disabled unless a cron is set
+    @Scheduled(cron = "${reports.rollups.rebuild-cron:-}")
+    public void scheduledRebuild() {
+        start();
+    }
+
+    // Starts a full rebuild in the background; returns false if one is already running
+    public boolean start() {
+        return launch(null);
+    }
+
+    public Progress getProgress() {
+        return progress;
+    }
+
+    private boolean launch(Long resumeRunId) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread coordinator = new Thread(() -> {
+            try {
+                run(resumeRunId);
+            } catch (RuntimeException e) {
+                log.warn("Appointment rollup backfill failed", e);
+            } finally {
+                running.set(false);
+            }
+        }, "rollup-backfill");
+        coordinator.setDaemon(true);
+        coordinator.start();
+        return true;
+    }
+
+    private void run(Long resumeRunId) {
+        long runId = resumeRunId != null ? resumeRunId : plan();
+        partitionRepository.deleteOtherRuns(runId);
+        List<RollupBackfillPartition> pending = partitionRepository.findByRunIdAndCompletedAtIsNullOrderById(runId);
+        long total = partitionRepository.countByRunId(runId);
+        Progress current = new Progress(runId, total, total - pending.size());
+        progress = current;
+
+        // Every worker holds a pooled connection while it runs; leave a couple for requests
+        int poolSize = threads > 0 ? threads
+                : Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), connectionPoolSize - 2));
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "rollup-backfill-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>(pending.size());
+            for (RollupBackfillPartition partition : pending) {
+                tasks.add(() -> {
+                    backfill(partition, current);
+                    return null;
+                });
+            }
+            workers.invokeAll(tasks);
+            if (current.failed.get() == 0) {
+                jdbcTemplate.update("DELETE FROM appointment_rollups WHERE doctor_id NOT IN (SELECT id FROM doctors)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            workers.shutdownNow();
+            current.finishedAt = LocalDateTime.now();
+        }
+        log.info("Appointment rollup backfill {} stopped: {} of {} partitions done, {} failed, {} threads, {} ms",
+                runId, current.completed.get(), total, current.failed.get(), poolSize,
+                Duration.between(current.startedAt, current.finishedAt).toMillis());
+    }
+
+    // A failed partition stays pending and is retried when the run resumes
+    private void backfill(RollupBackfillPartition partition, Progress current) {
+        try {
+            rollupService.rebuildRange(partition.getDoctorId(), partition.getFromDate(), partition.getToDate(),
+                    () -> jdbcTemplate.update("UPDATE rollup_backfill_partitions SET completed_at = ? WHERE id = ?",
+                            Timestamp.valueOf(LocalDateTime.now()), partition.getId()));
+            current.completed.incrementAndGet();
+        } catch (RuntimeException e) {
+            current.failed.incrementAndGet();
+            log.warn("Rollup backfill of doctor {} from {} to {} failed", partition.getDoctorId(),
+                    partition.getFromDate(), partition.getToDate(), e);
+        }
+    }
+
+    // Splits each doctor's appointment span into windows of partitionDays; doctors without
+    // appointments get a single window that clears any rollups they still have
+    private long plan() {
+        long runId = System.currentTimeMillis();
+        Map<Long, LocalDate[]> spans = new HashMap<>();
+        jdbcTemplate.query("SELECT doctor_id, MIN(date), MAX(date) FROM appointments GROUP BY doctor_id",
+                rs -> {
+                    spans.put(rs.getLong(1), new LocalDate[] {rs.getDate(2).toLocalDate(), rs.getDate(3).toLocalDate()});
+                });
+
+        List<Long> doctorIds = jdbcTemplate.queryForList("SELECT id FROM doctors ORDER BY id", Long.class);
+        List<RollupBackfillPartition> partitions = new ArrayList<>();
+        for (Long doctorId : doctorIds) {
+            LocalDate[] span = spans.get(doctorId);
+            LocalDate from = MIN_DATE;
+            if (span != null) {
+                LocalDate windowEnd = span[0].plusDays(partitionDays - 1);
+                while (windowEnd.isBefore(span[1])) {
+                    partitions.add(new RollupBackfillPartition(runId, doctorId, from, windowEnd));
+                    from = windowEnd.plusDays(1);
+                    windowEnd = from.plusDays(partitionDays - 1);
+                }
+            }
+            partitions.add(new RollupBackfillPartition(runId, doctorId, from, MAX_DATE));
+        }
+        partitionRepository.saveAll(partitions);
+        log.info("Planned appointment rollup backfill {}: {} partitions over {} doctors", runId, partitions.size(), doctorIds.size());
+        return runId;
+    }
+
+    public static class Progress {
+        private final long runId;
+        private final long totalPartitions;
+        private final AtomicLong completed;
+        private final AtomicLong failed = new AtomicLong();
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private volatile LocalDateTime finishedAt;
+
+        Progress(long runId, long totalPartitions, long alreadyCompleted) {
+            this.runId = runId;
+            this.totalPartitions = totalPartitions;
+            this.completed = new AtomicLong(alreadyCompleted);
+        }
+
+        public long getRunId() { return runId; }
+        public long getTotalPartitions() { return totalPartitions; }
+        public long getCompletedPartitions() { return completed.get(); }
+        public long getFailedPartitions() { return failed.get(); }
+        public LocalDateTime getStartedAt() { return startedAt; }
+        public LocalDateTime getFinishedAt() { return finishedAt; }
+        public boolean isRunning() { return finishedAt == null; }
+    }
+}
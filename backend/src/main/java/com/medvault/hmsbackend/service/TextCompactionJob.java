@@ -0,0 +1,115 @@
+package com.medvault.hmsbackend.service;
+
+import com.medvault.hmsbackend.model.CompressedTextConverter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Rewrites rows stored before compression was switched on (or in an older format) so the whole
+// table benefits, not just rows written since. Works through each table by primary key in small
+// batches with a pause in between, and only replaces a value if it has not changed meanwhile.
+@Service
+public class TextCompactionJob {
+
+    private static final Logger log = LoggerFactory.getLogger(TextCompactionJob.class);
+
+    // Every column mapped with CompressedTextConverter, as {table, column}
+    private static final String[][] COLUMNS = {
+            {"medical_records", "description"},
+            {"appointments", "notes"},
+            {"patients", "medical_history"},
+            {"doctors", "bio"},
+            {"prescriptions", "instructions"}
+    };
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CompressedTextConverter converter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${storage.text-compression.compaction-batch-size:500}")
+    private int batchSize;
+
+    @Value("${storage.text-compression.compaction-pause-ms:50}")
+    private long pauseMs;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Scheduled(cron = "${storage.text-compression.compaction-cron:0 30 3 * * *}")
+    public void compactAll() {
+        if (!converter.isEnabled() || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            for (String[] column : COLUMNS) {
+                compact(column[0], column[1]);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void compact(String table, String column) throws InterruptedException {
+        Counter rewritten = meterRegistry.counter("storage.text-compression.rewritten", "column", table + "." + column);
+        Counter saved = meterRegistry.counter("storage.text-compression.saved-bytes", "column", table + "." + column);
+        String select = "SELECT id, " + column + " FROM " + table
+                + " WHERE id > ? AND " + column + " IS NOT NULL ORDER BY id LIMIT ?";
+        // Byte comparison so a concurrent edit that differs only in case or accents is not overwritten
+        String update = "UPDATE " + table + " SET " + column + " = ?"
+                + " WHERE id = ? AND CAST(" + column + " AS BINARY) = CAST(? AS BINARY)";
+
+        long afterId = 0;
+        long rows = 0;
+        long bytesBefore = 0;
+        long bytesAfter = 0;
+        while (true) {
+            List<Object[]> page = jdbcTemplate.query(select,
+                    (rs, rowNum) -> new Object[] {rs.getLong(1), rs.getString(2)}, afterId, batchSize);
+            if (page.isEmpty()) {
+                break;
+            }
+            List<Object[]> updates = new ArrayList<>();
+            for (Object[] row : page) {
+                String stored = (String) row[1];
+                String current = converter.convertToDatabaseColumn(converter.convertToEntityAttribute(stored));
+                if (!current.equals(stored)) {
+                    updates.add(new Object[] {current, row[0], stored});
+                    bytesBefore += stored.getBytes(StandardCharsets.UTF_8).length;
+                    bytesAfter += current.getBytes(StandardCharsets.UTF_8).length;
+                }
+            }
+            if (!updates.isEmpty()) {
+                int[] counts = jdbcTemplate.batchUpdate(update, updates);
+                for (int count : counts) {
+                    // Rewritten batches only report success, not a row count
+                    rows += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+                }
+            }
+            afterId = (Long) page.get(page.size() - 1)[0];
+            Thread.sleep(pauseMs);
+        }
+        rewritten.increment(rows);
+        saved.increment(Math.max(0, bytesBefore - bytesAfter));
+        if (rows > 0) {
+            log.info("Compacted {} rows of {}.{}: {} -> {} bytes", rows, table, column, bytesBefore, bytesAfter);
+        }
+    }
+}
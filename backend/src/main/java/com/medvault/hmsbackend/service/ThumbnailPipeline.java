@@ -0,0 +1,315 @@
+package com.medvault.hmsbackend.service;
+
+import com.medvault.hmsbackend.model.FileAttachment;
+import com.medvault.hmsbackend.model.ThumbnailJob;
+import com.medvault.hmsbackend.repository.FileAttachmentRepository;
+import com.medvault.hmsbackend.repository.ThumbnailJobRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Generates downscaled JPEG previews for image attachments in the background. Jobs are rows in
+// thumbnail_jobs, written in the same transaction as the attachment, so a burst of uploads only
+// grows the table; a small pool of low-priority workers drains it at its own pace and never
+// takes request threads.
+@Service
+public class ThumbnailPipeline {
+
+    @Autowired
+    private ThumbnailJobRepository jobRepository;
+
+    @Autowired
+    private FileAttachmentRepository fileAttachmentRepository;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${attachments.previews.threads:0}")
+    private int threads;
+
+    @Value("${attachments.previews.max-dimension:320}")
+    private int maxDimension;
+
+    @Value("${attachments.previews.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${attachments.previews.lease-ms:600000}")
+    private long leaseMs;
+
+    private ThreadPoolExecutor workers;
+    private ThreadPoolExecutor dispatcher;
+    private Semaphore permits;
+    private Timer generateTimer;
+    private Counter failedCounter;
+
+    @PostConstruct
+    void init() {
+        // Image decoding is CPU and memory heavy; keep it to a fraction of the cores by default
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+        permits = new Semaphore(poolSize);
+        AtomicInteger threadCount = new AtomicInteger();
+        workers = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(poolSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "thumbnail-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+        // One dispatcher run at a time; wake-ups that arrive while one is pending are dropped
+        dispatcher = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "thumbnail-dispatch");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.DiscardPolicy());
+
+        generateTimer = Timer.builder("attachments.preview.latency")
+                .description("Time spent generating an attachment preview")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("attachments.preview.failed")
+                .description("Preview jobs that gave up after their last attempt")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        dispatcher.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    public static boolean supports(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String mimeType = contentType.split(";")[0].trim().toLowerCase(Locale.ROOT);
+        return mimeType.startsWith("image/") && ImageIO.getImageReadersByMIMEType(mimeType).hasNext();
+    }
+
+    // Records a preview job for a freshly saved attachment; call inside the transaction that
+    // saved it. Workers are woken once that transaction commits.
+    public void enqueue(Long recordId, FileAttachment file) {
+        if (file.getContentHash() == null || !supports(file.getType())) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        ThumbnailJob job = new ThumbnailJob();
+        job.setMedicalRecordId(recordId);
+        job.setFileAttachmentId(file.getId());
+        job.setContentHash(file.getContentHash());
+        job.setContentType(file.getType());
+        job.setStatus(ThumbnailJob.Status.PENDING);
+        job.setNextAttemptAt(now);
+        job.setUpdatedAt(now);
+        jobRepository.save(job);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wake();
+                }
+            });
+        } else {
+            wake();
+        }
+    }
+
+    public void wake() {
+        dispatcher.execute(this::dispatch);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        LocalDateTime now = LocalDateTime.now();
+        jobRepository.requeueStale(now.minusNanos(leaseMs * 1_000_000), now);
+        wake();
+    }
+
+    // Picks up retries whose backoff has elapsed and anything a missed wake-up left behind
+    @Scheduled(fixedDelayString = "${attachments.previews.poll-ms:30000}")
+    public void poll() {
+        recover();
+    }
+
+    // Claims only as many jobs as there are idle workers; the rest stay queued in the table
+    private void dispatch() {
+        int idle = permits.availablePermits();
+        if (idle == 0) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> ready = jobRepository.findReadyIds(now, PageRequest.of(0, idle));
+        for (Long id : ready) {
+            if (!permits.tryAcquire()) {
+                return;
+            }
+            if (jobRepository.claim(id, now) != 1) {
+                permits.release();
+                continue;
+            }
+            try {
+                workers.execute(() -> {
+                    try {
+                        run(id);
+                    } finally {
+                        permits.release();
+                        wake();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Shutting down; the claimed job is requeued once its lease runs out
+                permits.release();
+                return;
+            }
+        }
+    }
+
+    private void run(Long id) {
+        ThumbnailJob job = jobRepository.findById(id).orElse(null);
+        if (job == null) {
+            return;
+        }
+        LocalDateTime now;
+        try {
+            boolean generated = generateTimer.recordCallable(() -> generate(job.getContentHash()));
+            now = LocalDateTime.now();
+            if (generated) {
+                fileAttachmentRepository.setPreviewUrl(job.getFileAttachmentId(),
+                        "/api/medical-records/" + job.getMedicalRecordId() + "/files/" + job.getFileAttachmentId() + "/preview");
+                job.setStatus(ThumbnailJob.Status.DONE);
+                job.setLastError(null);
+            } else {
+                // Not a decodable image; retrying will not help
+                job.setStatus(ThumbnailJob.Status.FAILED);
+                job.setLastError("Unsupported or unreadable image");
+                failedCounter.increment();
+            }
+        } catch (Exception | OutOfMemoryError e) {
+            now = LocalDateTime.now();
+            job.setAttempts(job.getAttempts() + 1);
+            job.setLastError(truncate(e.toString()));
+            if (job.getAttempts() >= maxAttempts) {
+                job.setStatus(ThumbnailJob.Status.FAILED);
+                failedCounter.increment();
+            } else {
+                // Exponential backoff: 1, 2, 4, 8... minutes
+                job.setStatus(ThumbnailJob.Status.PENDING);
+                job.setNextAttemptAt(now.plusMinutes(1L << (job.getAttempts() - 1)));
+            }
+        }
+        job.setUpdatedAt(now);
+        jobRepository.save(job);
+    }
+
+    // Returns false if the content is not an image ImageIO can decode
+    private boolean generate(String hash) throws IOException {
+        Path target = blobStore.previewPathOf(hash);
+        if (Files.exists(target)) {
+            // Same content was attached before
+            return true;
+        }
+        BufferedImage source;
+        try (ImageInputStream in = ImageIO.createImageInputStream(blobStore.pathOf(hash).toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                return false;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                // Subsample while decoding so a large scan is never held at full resolution;
+                // keep about twice the target size for a clean final downscale
+                int step = Math.max(1, Math.max(width, height) / (maxDimension * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                source = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+        BufferedImage preview = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = preview.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            // JPEG has no alpha, so transparent areas become white rather than black
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        Path temp = Files.createTempFile(blobStore.incomingDirectory(), "preview-", ".part");
+        try {
+            ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(temp.toFile())) {
+                writer.setOutput(out);
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(0.8f);
+                writer.write(null, new IIOImage(preview, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return true;
+    }
+
+    private static String truncate(String message) {
+        return message.length() <= 1000 ? message : message.substring(0, 1000);
+    }
+}
@@ -0,0 +1,339 @@
+package com.medvault.hmsbackend.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+// Resumable uploads. A session preallocates a file of the declared size and accepts fixed-size
+// chunks at their offsets in any order and in parallel; each chunk is a positional write, so
+// concurrent chunks only share the session lock for the moment it takes to record them.
+// Session metadata and the received-chunk bitmap sit next to the data on disk, so sessions
+// survive a restart.
+@Service
+public class UploadSessionStore {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadSessionStore.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String DATA_FILE = "data";
+    private static final String META_FILE = "session.properties";
+    private static final String CHUNKS_FILE = "chunks.bin";
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Value("${storage.uploads.chunk-size:8388608}")
+    private int chunkSize;
+
+    @Value("${storage.uploads.ttl-ms:86400000}")
+    private long ttlMs;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() throws IOException {
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(blobStore.uploadsDirectory())) {
+            for (Path dir : dirs) {
+                try {
+                    Session session = Session.load(dir);
+                    sessions.put(session.id, session);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Discarding unreadable upload session {}", dir.getFileName(), e);
+                    deleteTree(dir);
+                }
+            }
+        }
+    }
+
+    public Session create(Long recordId, String owner, String name, String type, long size) throws IOException {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Upload size must be positive");
+        }
+        if (size > blobStore.getMaxSize()) {
+            throw new IllegalArgumentException("File exceeds the maximum size of " + blobStore.getMaxSize() + " bytes");
+        }
+        String id = UUID.randomUUID().toString().replace("-", "");
+        Path dir = blobStore.uploadsDirectory().resolve(id);
+        Files.createDirectories(dir);
+        Session session = new Session(id, dir, recordId, owner, name, type, size, chunkSize, System.currentTimeMillis());
+        try (FileChannel data = FileChannel.open(session.dataFile(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            // Sparse on most filesystems; reserves the length so chunks can land at any offset
+            data.write(ByteBuffer.allocate(1), size - 1);
+        }
+        session.saveMeta();
+        session.saveChunks();
+        sessions.put(id, session);
+        return session;
+    }
+
+    public Optional<Session> find(String id) {
+        return Optional.ofNullable(sessions.get(id));
+    }
+
+    // Writes one chunk at its offset. The chunk only counts as received once all of its bytes
+    // are on disk, so an interrupted request simply has to be repeated.
+    public Session writeChunk(Session session, long offset, InputStream in) throws IOException {
+        if (offset < 0 || offset % session.chunkSize != 0 || offset >= session.size) {
+            throw new IllegalArgumentException("Offset must be a multiple of " + session.chunkSize + " within the file");
+        }
+        synchronized (session) {
+            if (session.committing) {
+                throw new IllegalStateException("Upload is being committed");
+            }
+            session.activeWriters++;
+        }
+        int index = (int) (offset / session.chunkSize);
+        long expected = Math.min(session.chunkSize, session.size - offset);
+
+        long written = 0;
+        try (FileChannel data = FileChannel.open(session.dataFile(), StandardOpenOption.WRITE)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (written + read > expected) {
+                    throw new IllegalArgumentException("Chunk at offset " + offset + " must be " + expected + " bytes");
+                }
+                wrapped.clear().limit(read);
+                while (wrapped.hasRemaining()) {
+                    written += data.write(wrapped, offset + written);
+                }
+            }
+            if (written != expected) {
+                throw new IllegalArgumentException("Chunk at offset " + offset + " must be " + expected + " bytes, got " + written);
+            }
+            data.force(false);
+
+            synchronized (session) {
+                session.received.set(index);
+                session.lastActivity = System.currentTimeMillis();
+                session.saveChunks();
+            }
+        } finally {
+            synchronized (session) {
+                session.activeWriters--;
+            }
+        }
+        return session;
+    }
+
+    // Verifies the assembled file against the client's SHA-256 and moves it into the blob store
+    public BlobStore.StoredBlob commit(Session session, String sha256) throws IOException {
+        String expected = sha256 == null ? "" : sha256.trim().toLowerCase(Locale.ROOT);
+        synchronized (session) {
+            if (session.committing) {
+                throw new IllegalStateException("Upload is already being committed");
+            }
+            // A chunk still being rewritten could change the bytes after they were hashed
+            if (session.activeWriters > 0) {
+                throw new IllegalStateException("Chunks are still being written");
+            }
+            if (session.received.cardinality() != session.chunkCount()) {
+                throw new IllegalStateException("Upload is missing " + (session.chunkCount() - session.received.cardinality()) + " chunks");
+            }
+            session.committing = true;
+        }
+        try {
+            MessageDigest digest = BlobStore.sha256();
+            try (FileChannel data = FileChannel.open(session.dataFile(), StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+                while (data.read(buffer) != -1) {
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            if (!hash.equals(expected)) {
+                throw new DigestMismatchException(hash);
+            }
+            blobStore.publish(session.dataFile(), hash);
+            remove(session);
+            return new BlobStore.StoredBlob(hash, session.size);
+        } finally {
+            synchronized (session) {
+                session.committing = false;
+            }
+        }
+    }
+
+    public void remove(Session session) throws IOException {
+        sessions.remove(session.id);
+        deleteTree(session.dir);
+    }
+
+    // Drops sessions nobody has touched within the TTL, and temp files left by interrupted
+    // single-request uploads
+    @Scheduled(fixedDelayString = "${storage.uploads.gc-interval-ms:3600000}")
+    public void collectGarbage() {
+        long cutoff = System.currentTimeMillis() - ttlMs;
+        for (Session session : new ArrayList<>(sessions.values())) {
+            if (session.lastActivity < cutoff && !session.committing) {
+                try {
+                    remove(session);
+                } catch (IOException e) {
+                    log.warn("Could not remove upload session {}", session.id, e);
+                }
+            }
+        }
+        try (DirectoryStream<Path> temps = Files.newDirectoryStream(blobStore.incomingDirectory())) {
+            for (Path temp : temps) {
+                if (Files.getLastModifiedTime(temp).toMillis() < cutoff) {
+                    Files.deleteIfExists(temp);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not clean up incoming uploads", e);
+        }
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            List<Path> all = paths.sorted(Comparator.reverseOrder()).toList();
+            for (Path path : all) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    public static final class Session {
+        private final String id;
+        private final Path dir;
+        private final Long recordId;
+        private final String owner;
+        private final String name;
+        private final String type;
+        private final long size;
+        private final int chunkSize;
+        private final long createdAt;
+        private final BitSet received = new BitSet();
+        private volatile long lastActivity;
+        private volatile boolean committing;
+        private int activeWriters;
+
+        private Session(String id, Path dir, Long recordId, String owner, String name, String type,
+                        long size, int chunkSize, long createdAt) {
+            this.id = id;
+            this.dir = dir;
+            this.recordId = recordId;
+            this.owner = owner;
+            this.name = name;
+            this.type = type;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.createdAt = createdAt;
+            this.lastActivity = createdAt;
+        }
+
+        private static Session load(Path dir) throws IOException {
+            Properties meta = new Properties();
+            try (Reader reader = Files.newBufferedReader(dir.resolve(META_FILE))) {
+                meta.load(reader);
+            }
+            Session session = new Session(
+                    dir.getFileName().toString(),
+                    dir,
+                    Long.valueOf(meta.getProperty("recordId")),
+                    meta.getProperty("owner"),
+                    meta.getProperty("name"),
+                    meta.getProperty("type"),
+                    Long.parseLong(meta.getProperty("size")),
+                    Integer.parseInt(meta.getProperty("chunkSize")),
+                    Long.parseLong(meta.getProperty("createdAt")));
+            Path chunks = dir.resolve(CHUNKS_FILE);
+            session.received.or(BitSet.valueOf(Files.readAllBytes(chunks)));
+            session.lastActivity = Files.getLastModifiedTime(chunks).toMillis();
+            return session;
+        }
+
+        private void saveMeta() throws IOException {
+            Properties meta = new Properties();
+            meta.setProperty("recordId", String.valueOf(recordId));
+            meta.setProperty("owner", owner);
+            meta.setProperty("name", name);
+            meta.setProperty("type", type);
+            meta.setProperty("size", String.valueOf(size));
+            meta.setProperty("chunkSize", String.valueOf(chunkSize));
+            meta.setProperty("createdAt", String.valueOf(createdAt));
+            try (Writer writer = Files.newBufferedWriter(dir.resolve(META_FILE))) {
+                meta.store(writer, null);
+            }
+        }
+
+        // Replaced atomically so a crash never leaves a torn bitmap; callers hold the session lock
+        private void saveChunks() throws IOException {
+            Path temp = dir.resolve(CHUNKS_FILE + ".tmp");
+            Files.write(temp, received.toByteArray());
+            Files.move(temp, dir.resolve(CHUNKS_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private Path dataFile() {
+            return dir.resolve(DATA_FILE);
+        }
+
+        public int chunkCount() {
+            return (int) ((size + chunkSize - 1) / chunkSize);
+        }
+
+        public synchronized List<Integer> missingChunks() {
+            List<Integer> missing = new ArrayList<>();
+            for (int index = received.nextClearBit(0); index < chunkCount(); index = received.nextClearBit(index + 1)) {
+                missing.add(index);
+            }
+            return missing;
+        }
+
+        public synchronized int receivedChunks() {
+            return received.cardinality();
+        }
+
+        public String getId() { return id; }
+        public Long getRecordId() { return recordId; }
+        public String getOwner() { return owner; }
+        public String getName() { return name; }
+        public String getType() { return type; }
+        public long getSize() { return size; }
+        public int getChunkSize() { return chunkSize; }
+        public long getLastActivity() { return lastActivity; }
+    }
+
+    public static final class DigestMismatchException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private DigestMismatchException(String actual) {
+            super("SHA-256 of the uploaded content is " + actual + ", which does not match the expected digest");
+        }
+    }
+}
@@ -17,9 +17,14 @@ public class UserService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
     public User registerUser(User user) {
         user.setPassword(passwordEncoder.encode(user.getPassword()));
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        principalCache.invalidate(savedUser.getEmail());
+        return savedUser;
     }
 
     public Optional<User> findByEmail(String email) {
@@ -0,0 +1,50 @@
+package com.medvault.hmsbackend.service;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public final class VerifiedToken {
+
+    private final String subject;
+    private final Date issuedAt;
+    private final Date expiration;
+    private final Map<String, Object> claims;
+
+    public VerifiedToken(String subject, Date issuedAt, Date expiration, Map<String, Object> claims) {
+        this.subject = subject;
+        this.issuedAt = issuedAt != null ? new Date(issuedAt.getTime()) : null;
+        this.expiration = expiration != null ? new Date(expiration.getTime()) : null;
+        this.claims = Collections.unmodifiableMap(new LinkedHashMap<>(claims));
+    }
+
+    public String getSubject() { return subject; }
+
+    public Date getIssuedAt() { return issuedAt != null ? new Date(issuedAt.getTime()) : null; }
+
+    public Date getExpiration() { return expiration != null ? new Date(expiration.getTime()) : null; }
+
+    public Map<String, Object> getClaims() { return claims; }
+
+    public Object getClaim(String name) { return claims.get(name); }
+
+    public Long getUserId() {
+        Object value = claims.get(JwtService.CLAIM_USER_ID);
+        return value instanceof Number ? ((Number) value).longValue() : null;
+    }
+
+    public String getName() {
+        Object value = claims.get(JwtService.CLAIM_NAME);
+        return value != null ? value.toString() : null;
+    }
+
+    public String getRole() {
+        Object value = claims.get(JwtService.CLAIM_ROLE);
+        return value != null ? value.toString() : null;
+    }
+
+    public boolean isExpired(long nowMillis) {
+        return expiration != null && expiration.getTime() <= nowMillis;
+    }
+}
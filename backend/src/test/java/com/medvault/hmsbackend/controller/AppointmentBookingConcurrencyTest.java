@@ -0,0 +1,103 @@
+package com.medvault.hmsbackend.controller;
+
+import com.medvault.hmsbackend.repository.UserRepository;
+import com.medvault.hmsbackend.service.JwtService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Date;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Many patients race for the same doctor and slot; exactly one booking may win and every other
+// request has to be turned away with 409, with a single active appointment left in the table
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class AppointmentBookingConcurrencyTest {
+
+    private static final int THREADS = 32;
+    private static final int SLOTS = 20;
+    private static final long DOCTOR_ID = 2;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void sameSlotIsBookedExactlyOnce() throws Exception {
+        List<String> tokens = List.of(token("john.smith@email.com"), token("emily.davis@email.com"));
+        LocalDate date = LocalDate.of(2099, 3, 2);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                LocalTime time = LocalTime.of(9, 0).plusMinutes(15L * slot);
+                List<Integer> statuses = race(executor, tokens, date, time);
+
+                assertEquals(1, statuses.stream().filter(status -> status == 200).count(), "successes at " + time + ": " + statuses);
+                assertEquals(THREADS - 1, statuses.stream().filter(status -> status == 409).count(), "conflicts at " + time + ": " + statuses);
+                Integer active = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM appointments WHERE doctor_id = ? AND date = ?"
+                        + " AND time = ? AND status <> 'CANCELLED'", Integer.class, DOCTOR_ID, Date.valueOf(date), Time.valueOf(time));
+                assertEquals(1, active);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Every thread waits on the same latch so the requests arrive together
+    private List<Integer> race(ExecutorService executor, List<String> tokens, LocalDate date, LocalTime time) throws Exception {
+        String body = "{\"doctorId\":" + DOCTOR_ID + ",\"date\":\"" + date + "\",\"time\":\"" + time + "\",\"reason\":\"Checkup\"}";
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/appointments/book"))
+                    .header("Authorization", "Bearer " + tokens.get(i % tokens.size()))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            results.add(executor.submit(() -> {
+                start.await();
+                return client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode();
+            }));
+        }
+        start.countDown();
+        List<Integer> statuses = new ArrayList<>();
+        for (Future<Integer> result : results) {
+            statuses.add(result.get());
+        }
+        return statuses;
+    }
+
+    private String token(String email) {
+        com.medvault.hmsbackend.model.User user = userRepository.findByEmail(email).orElseThrow();
+        return jwtService.generateToken(new User(user.getEmail(), user.getPassword(), new ArrayList<>()));
+    }
+}
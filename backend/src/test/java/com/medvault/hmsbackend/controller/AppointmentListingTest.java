@@ -0,0 +1,179 @@
+package com.medvault.hmsbackend.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medvault.hmsbackend.model.Appointment;
+import com.medvault.hmsbackend.model.Doctor;
+import com.medvault.hmsbackend.model.Patient;
+import com.medvault.hmsbackend.model.User;
+import com.medvault.hmsbackend.repository.AppointmentRepository;
+import com.medvault.hmsbackend.repository.DoctorRepository;
+import com.medvault.hmsbackend.repository.PatientRepository;
+import com.medvault.hmsbackend.repository.UserRepository;
+import com.medvault.hmsbackend.service.JwtService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// The patient and doctor listings over HTTP, for a patient and doctor of their own with more
+// appointments than fit on one page
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class AppointmentListingTest {
+
+    private static final int APPOINTMENTS = 250;
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private String patientToken;
+    private String doctorToken;
+
+    @BeforeAll
+    void createAppointments() {
+        User patientUser = userRepository.save(new User(null, "listing.patient@example.com", "x", "Listing Patient", User.Role.PATIENT));
+        Patient patient = new Patient();
+        patient.setUser(patientUser);
+        patient.setName(patientUser.getName());
+        patient.setPhone("+1 (555) 000-0001");
+        patient = patientRepository.save(patient);
+
+        User doctorUser = userRepository.save(new User(null, "listing.doctor@example.com", "x", "Dr. Listing", User.Role.DOCTOR));
+        Doctor doctor = new Doctor();
+        doctor.setUser(doctorUser);
+        doctor.setName(doctorUser.getName());
+        doctor.setSpecialization("Dermatology");
+        doctor.setPhone("+1 (555) 000-0002");
+        doctor = doctorRepository.save(doctor);
+
+        List<Appointment> appointments = new ArrayList<>();
+        for (int i = 0; i < APPOINTMENTS; i++) {
+            Appointment appointment = new Appointment();
+            appointment.setPatient(patient);
+            appointment.setDoctor(doctor);
+            appointment.setDate(LocalDate.of(2098, 1, 1).plusDays(i / 10));
+            appointment.setTime(LocalTime.of(9, 0).plusMinutes(30L * (i % 10)));
+            appointment.setStatus(Appointment.Status.PENDING);
+            appointment.setSlotActive(Boolean.TRUE);
+            appointments.add(appointment);
+        }
+        appointmentRepository.saveAll(appointments);
+
+        patientToken = token(patientUser);
+        doctorToken = token(doctorUser);
+    }
+
+    @Test
+    void patientListingFollowsCursorToTheEnd() throws Exception {
+        assertAllPagesReturned("/api/appointments/patient", patientToken);
+    }
+
+    @Test
+    void doctorListingFollowsCursorToTheEnd() throws Exception {
+        assertAllPagesReturned("/api/appointments/doctor", doctorToken);
+    }
+
+    // One statement resolves the caller, one joined projection query reads the page; the number
+    // must not grow with the rows on it
+    @Test
+    void patientListingRunsTwoStatementsPerPage() throws Exception {
+        assertEquals(2, statementsFor("/api/appointments/patient", patientToken));
+        assertEquals(2, statementsFor("/api/appointments/patient?limit=1", patientToken));
+    }
+
+    @Test
+    void doctorListingRunsTwoStatementsPerPage() throws Exception {
+        assertEquals(2, statementsFor("/api/appointments/doctor", doctorToken));
+        assertEquals(2, statementsFor("/api/appointments/doctor?limit=1", doctorToken));
+    }
+
+    // The first request also loads the caller for the principal cache, so it only warms up
+    private long statementsFor(String path, String token) throws Exception {
+        assertEquals(200, get(path, token).statusCode());
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        HttpResponse<String> response = get(path, token);
+        assertEquals(200, response.statusCode(), response.body());
+        return statistics.getPrepareStatementCount();
+    }
+
+    // What the appointment pages do: request without a cursor, then follow X-Next-Cursor
+    private void assertAllPagesReturned(String path, String token) throws Exception {
+        Set<Long> ids = new HashSet<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String cursor = null;
+        do {
+            HttpResponse<String> response = get(path + (cursor != null ? "?cursor=" + URLEncoder.encode(cursor, StandardCharsets.UTF_8) : ""), token);
+            assertEquals(200, response.statusCode(), response.body());
+            JsonNode page = objectMapper.readTree(response.body());
+            for (JsonNode appointment : page) {
+                ids.add(appointment.get("id").asLong());
+            }
+            pageSizes.add(page.size());
+            cursor = response.headers().firstValue(AppointmentController.NEXT_CURSOR_HEADER).orElse(null);
+        } while (cursor != null);
+
+        assertEquals(List.of(DEFAULT_PAGE_SIZE, DEFAULT_PAGE_SIZE, APPOINTMENTS - 2 * DEFAULT_PAGE_SIZE), pageSizes);
+        assertEquals(APPOINTMENTS, ids.size());
+    }
+
+    private HttpResponse<String> get(String path, String token) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private String token(User user) {
+        return jwtService.generateToken(new org.springframework.security.core.userdetails.User(
+                user.getEmail(), user.getPassword(), new ArrayList<>()));
+    }
+}
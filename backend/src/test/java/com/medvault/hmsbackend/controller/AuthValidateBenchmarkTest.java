@@ -0,0 +1,124 @@
+package com.medvault.hmsbackend.controller;
+
+import com.medvault.hmsbackend.model.User;
+import com.medvault.hmsbackend.repository.UserRepository;
+import com.medvault.hmsbackend.service.JwtService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Per-call cost of GET /api/auth/validate over HTTP. A token issued before the identity claims
+// were embedded takes the old path (a users lookup for every call); a current token is answered
+// from its verified claims.
+// Run with: mvn test -Pbenchmarks -Dtest=AuthValidateBenchmarkTest
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@Tag("benchmark")
+class AuthValidateBenchmarkTest {
+
+    private static final int WARMUP_CALLS = 2000;
+    private static final int CALLS = 5000;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void validate() throws Exception {
+        User user = userRepository.findByEmail("john.smith@email.com").orElseThrow();
+        UserDetails userDetails = new org.springframework.security.core.userdetails.User(
+                user.getEmail(), user.getPassword(), new ArrayList<>());
+
+        String legacyToken = jwtService.generateToken(userDetails);
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(JwtService.CLAIM_USER_ID, user.getId());
+        claims.put(JwtService.CLAIM_NAME, user.getName());
+        claims.put(JwtService.CLAIM_ROLE, user.getRole().toLowerCase());
+        String claimsToken = jwtService.generateToken(claims, userDetails);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Result before = measure(statistics, legacyToken);
+        Result after = measure(statistics, claimsToken);
+
+        System.out.printf("%-24s %10s %10s %10s %14s%n", "", "p50 us", "p99 us", "mean us", "statements/call");
+        print("before (users lookup)", before);
+        print("after (token claims)", after);
+
+        assertEquals(0, after.statementsPerCall, 0.01);
+    }
+
+    private Result measure(Statistics statistics, String token) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/auth/validate"))
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            send(request);
+        }
+
+        statistics.clear();
+        long[] nanos = new long[CALLS];
+        long total = 0;
+        for (int i = 0; i < CALLS; i++) {
+            long started = System.nanoTime();
+            send(request);
+            nanos[i] = System.nanoTime() - started;
+            total += nanos[i];
+        }
+        Arrays.sort(nanos);
+        return new Result(nanos[CALLS / 2] / 1000, nanos[CALLS * 99 / 100] / 1000, total / CALLS / 1000,
+                (double) statistics.getPrepareStatementCount() / CALLS);
+    }
+
+    private void send(HttpRequest request) throws Exception {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode(), response.body());
+    }
+
+    private static void print(String label, Result result) {
+        System.out.printf("%-24s %10d %10d %10d %14.2f%n", label, result.p50Micros, result.p99Micros,
+                result.meanMicros, result.statementsPerCall);
+    }
+
+    private static class Result {
+        private final long p50Micros;
+        private final long p99Micros;
+        private final long meanMicros;
+        private final double statementsPerCall;
+
+        private Result(long p50Micros, long p99Micros, long meanMicros, double statementsPerCall) {
+            this.p50Micros = p50Micros;
+            this.p99Micros = p99Micros;
+            this.meanMicros = meanMicros;
+            this.statementsPerCall = statementsPerCall;
+        }
+    }
+}
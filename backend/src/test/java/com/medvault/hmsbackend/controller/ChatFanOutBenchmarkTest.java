@@ -0,0 +1,319 @@
+package com.medvault.hmsbackend.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medvault.hmsbackend.config.ChatHandshakeInterceptor;
+import com.medvault.hmsbackend.model.Appointment;
+import com.medvault.hmsbackend.model.Doctor;
+import com.medvault.hmsbackend.model.Patient;
+import com.medvault.hmsbackend.model.User;
+import com.medvault.hmsbackend.repository.AppointmentRepository;
+import com.medvault.hmsbackend.repository.DoctorRepository;
+import com.medvault.hmsbackend.repository.PatientRepository;
+import com.medvault.hmsbackend.repository.UserRepository;
+import com.medvault.hmsbackend.service.ChatService;
+import com.medvault.hmsbackend.service.JwtService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Latency from send to delivery on every open connection of both participants, while a crowd of
+// idle sockets stays connected. Each pair's patient and doctor have two devices each and take
+// turns sending at a fixed rate. Client and server share this JVM, so the nanoTime carried in the
+// message body is comparable on arrival.
+// Run with: mvn test -Pbenchmarks -Dtest=ChatFanOutBenchmarkTest
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@Tag("benchmark")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ChatFanOutBenchmarkTest {
+
+    private static final int IDLE_CONNECTIONS = 5000;
+    private static final int PAIRS = 100;
+    private static final int DEVICES = 2;
+    private static final double MESSAGES_PER_PAIR_PER_SECOND = 5;
+    private static final int WARM_UP_SECONDS = 3;
+    private static final int MEASURE_SECONDS = 20;
+    private static final String BODY_PREFIX = "t=";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final AtomicLong closed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile boolean recording;
+
+    private final List<Pair> pairs = new ArrayList<>();
+    private User idleUser;
+
+    // Each pair shares an appointment, which is what opens their conversation
+    @BeforeAll
+    void createPairs() {
+        for (int i = 0; i < PAIRS; i++) {
+            User patientUser = userRepository.save(new User(null, "fanout.patient" + i + "@example.com", "x", "Fan-out Patient " + i, User.Role.PATIENT));
+            Patient patient = new Patient();
+            patient.setUser(patientUser);
+            patient.setName(patientUser.getName());
+            patient.setPhone("+1 (555) 100-" + String.format("%04d", i));
+            patient = patientRepository.save(patient);
+
+            User doctorUser = userRepository.save(new User(null, "fanout.doctor" + i + "@example.com", "x", "Dr. Fan-out " + i, User.Role.DOCTOR));
+            Doctor doctor = new Doctor();
+            doctor.setUser(doctorUser);
+            doctor.setName(doctorUser.getName());
+            doctor.setSpecialization("General Practice");
+            doctor.setPhone("+1 (555) 200-" + String.format("%04d", i));
+            doctor = doctorRepository.save(doctor);
+
+            Appointment appointment = new Appointment();
+            appointment.setPatient(patient);
+            appointment.setDoctor(doctor);
+            appointment.setDate(LocalDate.of(2096, 1, 1));
+            appointment.setTime(LocalTime.of(9, 0));
+            appointment.setStatus(Appointment.Status.CONFIRMED);
+            appointment.setSlotActive(Boolean.TRUE);
+            appointmentRepository.save(appointment);
+
+            pairs.add(new Pair(patientUser, doctorUser, patient.getId(), doctor.getId()));
+        }
+
+        // Idle sockets only need to pass the handshake; this patient has no conversations
+        idleUser = userRepository.save(new User(null, "fanout.idle@example.com", "x", "Fan-out Idle", User.Role.PATIENT));
+        Patient idlePatient = new Patient();
+        idlePatient.setUser(idleUser);
+        idlePatient.setName(idleUser.getName());
+        idlePatient.setPhone("+1 (555) 300-0000");
+        patientRepository.save(idlePatient);
+    }
+
+    @Test
+    void fanOutLatency() throws Exception {
+        long connectStarted = System.nanoTime();
+        List<Client> idle = connect(idleUser, IDLE_CONNECTIONS);
+        double connectSeconds = (System.nanoTime() - connectStarted) / 1e9;
+
+        List<Client> active = new ArrayList<>();
+        for (Pair pair : pairs) {
+            pair.patientDevices = connect(pair.patientUser, DEVICES);
+            pair.doctorDevices = connect(pair.doctorUser, DEVICES);
+            active.addAll(pair.patientDevices);
+            active.addAll(pair.doctorDevices);
+        }
+        assertEquals(0, failed.get(), "handshakes failed");
+
+        long warmUp = (long) sendFor(WARM_UP_SECONDS) * DEVICES * 2;
+        awaitDeliveries(active, warmUp);
+        recording = true;
+        long started = System.nanoTime();
+        int sent = sendFor(MEASURE_SECONDS);
+        awaitDeliveries(active, warmUp + (long) sent * DEVICES * 2);
+        recording = false;
+        double seconds = (System.nanoTime() - started) / 1e9;
+        long deliveries = delivered(active) - warmUp;
+
+        long[] latencies = active.stream().flatMapToLong(c -> Arrays.stream(c.latencies, 0, c.recorded)).sorted().toArray();
+        System.out.printf("%d idle connections opened in %.1f s, %d active on %d pairs%n",
+                idle.size(), connectSeconds, active.size(), PAIRS);
+        System.out.printf("sent %d, delivered %d of %d, %.0f messages/s, %.0f deliveries/s%n",
+                sent, deliveries, (long) sent * DEVICES * 2, sent / seconds, deliveries / seconds);
+        System.out.printf("%-10s %8s %8s %8s %8s %8s%n", "latency", "p50", "p95", "p99", "p99.9", "max");
+        System.out.printf("%-10s %8.2f %8.2f %8.2f %8.2f %8.2f%n", "ms", percentile(latencies, 0.5), percentile(latencies, 0.95),
+                percentile(latencies, 0.99), percentile(latencies, 0.999), latencies[latencies.length - 1] / 1e6);
+        System.out.printf("server connections %d, flush lag %d%n", chatService.getConnectionCount(), chatService.getFlushLag());
+
+        assertEquals((long) sent * DEVICES * 2, deliveries);
+        assertEquals(0, closed.get(), "connections closed during the run");
+
+        for (Client c : idle) {
+            c.socket.abort();
+        }
+        for (Client c : active) {
+            c.socket.abort();
+        }
+    }
+
+    // Every pair alternates between its patient's and its doctor's first device
+    private int sendFor(int seconds) throws Exception {
+        ScheduledExecutorService senders = Executors.newScheduledThreadPool(2);
+        AtomicInteger sent = new AtomicInteger();
+        long periodMicros = (long) (1_000_000 / MESSAGES_PER_PAIR_PER_SECOND);
+        for (int i = 0; i < pairs.size(); i++) {
+            Pair pair = pairs.get(i);
+            AtomicInteger turn = new AtomicInteger();
+            senders.scheduleAtFixedRate(() -> {
+                boolean fromPatient = turn.getAndIncrement() % 2 == 0;
+                Client from = fromPatient ? pair.patientDevices.get(0) : pair.doctorDevices.get(0);
+                String peer = fromPatient ? "\"doctorId\":" + pair.doctorId : "\"patientId\":" + pair.patientId;
+                from.send("{\"type\":\"send\"," + peer + ",\"body\":\"" + BODY_PREFIX + System.nanoTime() + "\"}");
+                sent.incrementAndGet();
+            }, periodMicros * i / pairs.size(), periodMicros, TimeUnit.MICROSECONDS);
+        }
+        Thread.sleep(seconds * 1000L);
+        senders.shutdownNow();
+        senders.awaitTermination(5, TimeUnit.SECONDS);
+        return sent.get();
+    }
+
+    // At most 100 handshakes in flight at a time
+    private List<Client> connect(User user, int count) {
+        String token = jwtService.generateToken(new org.springframework.security.core.userdetails.User(
+                user.getEmail(), user.getPassword(), new ArrayList<>()));
+        Semaphore inFlight = new Semaphore(100);
+        List<Client> clients = new ArrayList<>(count);
+        List<CompletableFuture<WebSocket>> handshakes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Client c = new Client();
+            clients.add(c);
+            inFlight.acquireUninterruptibly();
+            handshakes.add(client.newWebSocketBuilder()
+                    .subprotocols(ChatHandshakeInterceptor.PROTOCOL, "bearer." + token)
+                    .buildAsync(URI.create("ws://localhost:" + port + "/ws/chat"), c)
+                    .whenComplete((socket, e) -> {
+                        inFlight.release();
+                        if (e != null) {
+                            failed.incrementAndGet();
+                        } else {
+                            c.socket = socket;
+                        }
+                    }));
+        }
+        CompletableFuture.allOf(handshakes.toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
+        return clients;
+    }
+
+    // Lets the last messages arrive, or gives up after ten seconds
+    private static void awaitDeliveries(List<Client> clients, long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (delivered(clients) < expected && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
+    private static long delivered(List<Client> clients) {
+        return clients.stream().mapToLong(c -> c.delivered.get()).sum();
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))] / 1e6;
+    }
+
+    private static class Pair {
+        private final User patientUser;
+        private final User doctorUser;
+        private final long patientId;
+        private final long doctorId;
+        private List<Client> patientDevices;
+        private List<Client> doctorDevices;
+
+        private Pair(User patientUser, User doctorUser, long patientId, long doctorId) {
+            this.patientUser = patientUser;
+            this.doctorUser = doctorUser;
+            this.patientId = patientId;
+            this.doctorId = doctorId;
+        }
+    }
+
+    // One device; frames for one socket arrive on one thread at a time
+    private class Client implements WebSocket.Listener {
+        private volatile WebSocket socket;
+        private final StringBuilder partial = new StringBuilder();
+        private final AtomicLong delivered = new AtomicLong();
+        private long[] latencies = new long[0];
+        private int recorded;
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            partial.append(data);
+            if (last) {
+                received(partial.toString());
+                partial.setLength(0);
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            closed.incrementAndGet();
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            closed.incrementAndGet();
+        }
+
+        // The JDK client allows one outstanding send per socket
+        private synchronized void send(String text) {
+            socket.sendText(text, true).join();
+        }
+
+        private void received(String text) {
+            long arrived = System.nanoTime();
+            JsonNode frame;
+            try {
+                frame = objectMapper.readTree(text);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            String body = frame.path("body").asText("");
+            if (!"message".equals(frame.path("type").asText()) || !body.startsWith(BODY_PREFIX)) {
+                return;
+            }
+            if (recording) {
+                if (recorded == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, Math.max(256, recorded * 2));
+                }
+                latencies[recorded++] = arrived - Long.parseLong(body.substring(BODY_PREFIX.length()));
+            }
+            // After the latency, so a reader that sees the count also sees what was recorded
+            delivered.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.medvault.hmsbackend.controller;
+
+import com.medvault.hmsbackend.config.ChatHandshakeInterceptor;
+import com.medvault.hmsbackend.service.JwtService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.net.http.WebSocketHandshakeException;
+import java.util.ArrayList;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The chat handshake takes the JWT from the Sec-WebSocket-Protocol header, never from the URL
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class ChatHandshakeTest {
+
+    private static final String PATIENT_EMAIL = "john.smith@email.com";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JwtService jwtService;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void tokenInSubprotocolOpensTheSocket() {
+        WebSocket socket = client.newWebSocketBuilder()
+                .subprotocols(ChatHandshakeInterceptor.PROTOCOL, "bearer." + token())
+                .buildAsync(URI.create("ws://localhost:" + port + "/ws/chat"), new WebSocket.Listener() {})
+                .orTimeout(10, TimeUnit.SECONDS)
+                .join();
+
+        assertEquals(ChatHandshakeInterceptor.PROTOCOL, socket.getSubprotocol());
+        socket.sendClose(WebSocket.NORMAL_CLOSURE, "").join();
+    }
+
+    @Test
+    void tokenInQueryIsRefused() {
+        CompletionException failure = assertThrows(CompletionException.class, () -> client.newWebSocketBuilder()
+                .subprotocols(ChatHandshakeInterceptor.PROTOCOL)
+                .buildAsync(URI.create("ws://localhost:" + port + "/ws/chat?token=" + token()), new WebSocket.Listener() {})
+                .orTimeout(10, TimeUnit.SECONDS)
+                .join());
+
+        assertTrue(failure.getCause() instanceof WebSocketHandshakeException, failure.toString());
+        assertEquals(401, ((WebSocketHandshakeException) failure.getCause()).getResponse().statusCode());
+    }
+
+    private String token() {
+        return jwtService.generateToken(new org.springframework.security.core.userdetails.User(
+                PATIENT_EMAIL, "x", new ArrayList<>()));
+    }
+}
@@ -0,0 +1,161 @@
+package com.medvault.hmsbackend.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medvault.hmsbackend.model.MedicalRecord;
+import com.medvault.hmsbackend.repository.DoctorRepository;
+import com.medvault.hmsbackend.repository.MedicalRecordRepository;
+import com.medvault.hmsbackend.repository.PatientRepository;
+import com.medvault.hmsbackend.repository.UserRepository;
+import com.medvault.hmsbackend.service.JwtService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+// Range and conditional requests against an attachment download, over HTTP
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class MedicalRecordDownloadTest {
+
+    private static final String CONTENT = "0123456789";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MedicalRecordRepository medicalRecordRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private String token;
+    private String contentPath;
+
+    @BeforeAll
+    void uploadFile() throws Exception {
+        MedicalRecord record = new MedicalRecord();
+        record.setPatient(patientRepository.findById(1L).orElseThrow());
+        record.setDoctor(doctorRepository.findById(1L).orElseThrow());
+        record.setDate(LocalDate.of(2024, 6, 1));
+        record.setType("Lab Report");
+        record.setTitle("Download test");
+        record = medicalRecordRepository.save(record);
+
+        // The record's doctor attaches the file and its patient downloads it
+        token = token("john.smith@email.com");
+        HttpRequest upload = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/medical-records/" + record.getId() + "/files?name=report.txt"))
+                .header("Authorization", "Bearer " + token("sarah.johnson@medvault.com"))
+                .header("Content-Type", "text/plain")
+                .POST(HttpRequest.BodyPublishers.ofString(CONTENT))
+                .build();
+        HttpResponse<String> response = client.send(upload, HttpResponse.BodyHandlers.ofString());
+        assertEquals(201, response.statusCode(), response.body());
+        contentPath = objectMapper.readTree(response.body()).get("url").asText();
+    }
+
+    @Test
+    void servesWholeFileWithoutRange() throws Exception {
+        HttpResponse<String> response = get();
+        assertEquals(200, response.statusCode());
+        assertEquals(CONTENT, response.body());
+        assertEquals("bytes", response.headers().firstValue("Accept-Ranges").orElse(null));
+    }
+
+    @Test
+    void servesSingleRange() throws Exception {
+        HttpResponse<String> response = get("Range", "bytes=2-5");
+        assertEquals(206, response.statusCode());
+        assertEquals("2345", response.body());
+        assertEquals("bytes 2-5/10", response.headers().firstValue("Content-Range").orElse(null));
+    }
+
+    @Test
+    void servesOpenEndedAndSuffixRanges() throws Exception {
+        HttpResponse<String> openEnded = get("Range", "bytes=7-");
+        assertEquals(206, openEnded.statusCode());
+        assertEquals("789", openEnded.body());
+
+        HttpResponse<String> suffix = get("Range", "bytes=-3");
+        assertEquals(206, suffix.statusCode());
+        assertEquals("789", suffix.body());
+        assertEquals("bytes 7-9/10", suffix.headers().firstValue("Content-Range").orElse(null));
+    }
+
+    @Test
+    void rejectsRangePastTheEnd() throws Exception {
+        HttpResponse<String> response = get("Range", "bytes=10-");
+        assertEquals(416, response.statusCode());
+        assertEquals("bytes */10", response.headers().firstValue("Content-Range").orElse(null));
+    }
+
+    @Test
+    void servesWholeFileForMultipleOrMalformedRanges() throws Exception {
+        for (String range : new String[] {"bytes=0-1,4-5", "bytes=abc", "bytes=5-2", "items=0-1"}) {
+            HttpResponse<String> response = get("Range", range);
+            assertEquals(200, response.statusCode(), range);
+            assertEquals(CONTENT, response.body(), range);
+        }
+    }
+
+    @Test
+    void staleIfRangeServesWholeFile() throws Exception {
+        HttpResponse<String> response = get("Range", "bytes=2-5", "If-Range", "\"stale\"");
+        assertEquals(200, response.statusCode());
+        assertEquals(CONTENT, response.body());
+    }
+
+    @Test
+    void etagRevalidatesWithoutTheContentHash() throws Exception {
+        String etag = get().headers().firstValue("ETag").orElseThrow();
+        assertFalse(etag.matches("\"[0-9a-f]{64}\""), etag);
+
+        assertEquals(304, get("If-None-Match", etag).statusCode());
+        HttpResponse<String> partial = get("Range", "bytes=2-5", "If-Range", etag);
+        assertEquals(206, partial.statusCode());
+        assertEquals("2345", partial.body());
+    }
+
+    private HttpResponse<String> get(String... headers) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + contentPath))
+                .header("Authorization", "Bearer " + token)
+                .GET();
+        for (int i = 0; i < headers.length; i += 2) {
+            request.header(headers[i], headers[i + 1]);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private String token(String email) {
+        com.medvault.hmsbackend.model.User user = userRepository.findByEmail(email).orElseThrow();
+        return jwtService.generateToken(new User(user.getEmail(), user.getPassword(), new ArrayList<>()));
+    }
+}
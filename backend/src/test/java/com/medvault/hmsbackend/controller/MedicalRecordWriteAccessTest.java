@@ -0,0 +1,154 @@
+package com.medvault.hmsbackend.controller;
+
+import com.medvault.hmsbackend.model.Appointment;
+import com.medvault.hmsbackend.model.Doctor;
+import com.medvault.hmsbackend.model.MedicalRecord;
+import com.medvault.hmsbackend.model.Patient;
+import com.medvault.hmsbackend.model.User;
+import com.medvault.hmsbackend.repository.AppointmentRepository;
+import com.medvault.hmsbackend.repository.DoctorRepository;
+import com.medvault.hmsbackend.repository.MedicalRecordRepository;
+import com.medvault.hmsbackend.repository.PatientRepository;
+import com.medvault.hmsbackend.repository.UserRepository;
+import com.medvault.hmsbackend.service.JwtService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Who may write medical records, over HTTP: doctors only for patients they care for, and only the
+// record's own doctor adds files to it
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class MedicalRecordWriteAccessTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private MedicalRecordRepository medicalRecordRepository;
+
+    @Autowired
+    private JwtService jwtService;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private Patient patient;
+    private Doctor doctor;
+    private String patientToken;
+    private String doctorToken;
+
+    @BeforeAll
+    void createUsers() {
+        patient = createPatient("access.patient@example.com");
+        patientToken = token(patient.getUser());
+
+        User doctorUser = userRepository.save(new User(null, "access.doctor@example.com", "x", "Dr. Access", User.Role.DOCTOR));
+        doctor = new Doctor();
+        doctor.setUser(doctorUser);
+        doctor.setName(doctorUser.getName());
+        doctor.setSpecialization("Cardiology");
+        doctor.setPhone("+1 (555) 000-0006");
+        doctor = doctorRepository.save(doctor);
+        doctorToken = token(doctorUser);
+    }
+
+    @Test
+    void doctorWritesRecordsOnlyForTheirPatients() throws Exception {
+        Patient newPatient = createPatient("access.new.patient@example.com");
+        String body = "{\"patientId\":" + newPatient.getId() + ",\"type\":\"Consultation\",\"title\":\"Access test\"}";
+        assertEquals(403, post("/api/medical-records", doctorToken, body).statusCode());
+
+        Appointment appointment = new Appointment();
+        appointment.setPatient(newPatient);
+        appointment.setDoctor(doctor);
+        appointment.setDate(LocalDate.of(2095, 1, 1));
+        appointment.setTime(LocalTime.of(9, 0));
+        appointment.setStatus(Appointment.Status.CONFIRMED);
+        appointment.setSlotActive(Boolean.TRUE);
+        appointmentRepository.save(appointment);
+
+        HttpResponse<String> response = post("/api/medical-records", doctorToken, body);
+        assertEquals(201, response.statusCode(), response.body());
+    }
+
+    // Patients read their records but cannot attach files to what their doctor wrote
+    @Test
+    void patientCannotAttachFilesToTheirRecord() throws Exception {
+        MedicalRecord record = new MedicalRecord();
+        record.setPatient(patient);
+        record.setDoctor(doctor);
+        record.setDate(LocalDate.of(2024, 6, 1));
+        record.setType("Lab Report");
+        record.setTitle("Access test");
+        record = medicalRecordRepository.save(record);
+        String files = "/api/medical-records/" + record.getId() + "/files?name=note.txt";
+
+        assertEquals(200, get("/api/medical-records/" + record.getId(), patientToken).statusCode());
+        assertEquals(403, post(files, patientToken, "text/plain", "patient note").statusCode());
+        assertEquals(403, post("/api/medical-records/" + record.getId() + "/uploads", patientToken,
+                "application/json", "{\"name\":\"note.txt\",\"size\":12}").statusCode());
+        assertEquals(201, post(files, doctorToken, "text/plain", "doctor note").statusCode());
+    }
+
+    private Patient createPatient(String email) {
+        User user = userRepository.save(new User(null, email, "x", "Access Patient", User.Role.PATIENT));
+        Patient created = new Patient();
+        created.setUser(user);
+        created.setName(user.getName());
+        created.setPhone("+1 (555) 000-0005");
+        return patientRepository.save(created);
+    }
+
+    private HttpResponse<String> get(String path, String token) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(String path, String token, String json) throws Exception {
+        return post(path, token, "application/json", json);
+    }
+
+    private HttpResponse<String> post(String path, String token, String contentType, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private String token(User user) {
+        return jwtService.generateToken(new org.springframework.security.core.userdetails.User(
+                user.getEmail(), user.getPassword(), new ArrayList<>()));
+    }
+}
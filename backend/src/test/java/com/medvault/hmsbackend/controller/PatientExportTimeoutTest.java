@@ -0,0 +1,63 @@
+package com.medvault.hmsbackend.controller;
+
+import com.medvault.hmsbackend.service.JwtService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// History exports are bounded by exports.history.timeout-ms, not by the async request timeout
+// every other async request gets, here shortened far below what any export takes
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.mvc.async.request-timeout=1")
+@ActiveProfiles("test")
+class PatientExportTimeoutTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JwtService jwtService;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void exportOutlivesAsyncRequestTimeout() throws Exception {
+        HttpResponse<String> response = get("/api/patients/me/export", token("john.smith@email.com"));
+
+        assertEquals(200, response.statusCode(), response.body());
+        assertEquals("application/x-ndjson", response.headers().firstValue("Content-Type").orElse(""));
+        assertTrue(response.headers().firstValue("Content-Disposition").orElse("").contains("-history.ndjson"));
+        assertTrue(response.body().startsWith("{\"type\":\"patient\",\"id\":1,"), response.body());
+    }
+
+    @Test
+    void rejectedExportsKeepTheirStatus() throws Exception {
+        assertEquals(400, get("/api/patients/me/export?format=csv", token("john.smith@email.com")).statusCode());
+        assertEquals(403, get("/api/patients/4/export", token("john.smith@email.com")).statusCode());
+        assertEquals(404, get("/api/patients/999999/export", token("sarah.johnson@medvault.com")).statusCode());
+    }
+
+    private HttpResponse<String> get(String path, String token) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private String token(String email) {
+        return jwtService.generateToken(new org.springframework.security.core.userdetails.User(
+                email, "x", new ArrayList<>()));
+    }
+}
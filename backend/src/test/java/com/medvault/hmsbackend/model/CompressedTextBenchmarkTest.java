@@ -0,0 +1,163 @@
+package com.medvault.hmsbackend.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Stored bytes per row and read/write latency of medical record descriptions with
+// CompressedTextConverter off and on, plus the converter's own cost per value. Rows go through
+// JDBC with this converter instance, as Hibernate builds its own and reads the switch from
+// configuration. The notes are stitched from a handful of sentences, so they repeat more than
+// real ones and compress better.
+// Run with: mvn test -Pbenchmarks -Dtest=CompressedTextBenchmarkTest
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@Tag("benchmark")
+class CompressedTextBenchmarkTest {
+
+    private static final int[] SIZES = {200, 1024, 4096, 16384};
+    private static final int ROWS = 500;
+    private static final int ROUNDS = 5;
+    private static final int CONVERTER_CALLS = 2000;
+    // Far above anything the sequence hands out; the rows are deleted after each round
+    private static final long FIRST_ID = 900_000_000L;
+
+    private static final String[] SENTENCES = {
+            "Patient presents with complaints of persistent cough and mild fever for 5 days. ",
+            "Lungs clear to auscultation bilaterally. ",
+            "Blood pressure 138/88, heart rate 82. ",
+            "Advised rest and fluids, follow-up in two weeks if symptoms worsen. ",
+            "History of type 2 diabetes mellitus, on metformin 500 mg twice daily. ",
+            "Ordered complete blood count and chest X-ray. ",
+            "Denies chest pain or shortness of breath. ",
+            "Patient reports improvement in sleep. ",
+            "Take one tablet by mouth once daily with food. ",
+            "Referred to cardiology for further evaluation of palpitations. "
+    };
+
+    @Autowired
+    private CompressedTextConverter converter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Random random = new Random(1);
+
+    @AfterEach
+    void restoreConverter() {
+        ReflectionTestUtils.setField(converter, "enabled", false);
+    }
+
+    @Test
+    void compressedDescriptions() {
+        System.out.printf("%-8s %-8s %10s %12s %12s %12s %12s%n",
+                "size", "mode", "bytes/row", "write us/row", "read us/row", "encode us", "decode us");
+        for (int size : SIZES) {
+            List<String> texts = notes(size);
+            Result plain = measure(texts, false);
+            Result compressed = measure(texts, true);
+            print(size, "plain", plain);
+            print(size, "deflate", compressed);
+
+            if (size >= 1024) {
+                assertTrue(compressed.bytesPerRow < plain.bytesPerRow / 2,
+                        size + " B notes stored in " + compressed.bytesPerRow + " of " + plain.bytesPerRow + " bytes");
+            }
+        }
+    }
+
+    private Result measure(List<String> texts, boolean enabled) {
+        ReflectionTestUtils.setField(converter, "enabled", enabled);
+        long[] writeNanos = new long[ROUNDS];
+        long[] readNanos = new long[ROUNDS];
+        long bytes = 0;
+        // Round 0 warms up
+        for (int round = 0; round <= ROUNDS; round++) {
+            long started = System.nanoTime();
+            List<Object[]> rows = new ArrayList<>(texts.size());
+            for (int i = 0; i < texts.size(); i++) {
+                rows.add(new Object[] {FIRST_ID + i, Date.valueOf("2024-01-01"), converter.convertToDatabaseColumn(texts.get(i))});
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO medical_records (id, patient_id, doctor_id, date, type, title, description)"
+                    + " VALUES (?, 1, 1, ?, 'Consultation', 'Compression benchmark', ?)", rows);
+            long written = System.nanoTime();
+            List<String> read = jdbcTemplate.query("SELECT description FROM medical_records WHERE id >= ? ORDER BY id",
+                    (row, i) -> converter.convertToEntityAttribute(row.getString(1)), FIRST_ID);
+            long readBack = System.nanoTime();
+            assertEquals(texts, read);
+            if (round > 0) {
+                writeNanos[round - 1] = written - started;
+                readNanos[round - 1] = readBack - written;
+                bytes = jdbcTemplate.queryForObject("SELECT SUM(OCTET_LENGTH(description)) FROM medical_records WHERE id >= ?",
+                        Long.class, FIRST_ID);
+            }
+            jdbcTemplate.update("DELETE FROM medical_records WHERE id >= ?", FIRST_ID);
+        }
+        Arrays.sort(writeNanos);
+        Arrays.sort(readNanos);
+
+        String[] stored = new String[texts.size()];
+        long encodeStarted = System.nanoTime();
+        for (int i = 0; i < CONVERTER_CALLS; i++) {
+            stored[i % texts.size()] = converter.convertToDatabaseColumn(texts.get(i % texts.size()));
+        }
+        long decodeStarted = System.nanoTime();
+        for (int i = 0; i < CONVERTER_CALLS; i++) {
+            converter.convertToEntityAttribute(stored[i % texts.size()]);
+        }
+        long decoded = System.nanoTime();
+
+        return new Result(bytes / ROWS,
+                writeNanos[ROUNDS / 2] / 1000.0 / ROWS,
+                readNanos[ROUNDS / 2] / 1000.0 / ROWS,
+                (decodeStarted - encodeStarted) / 1000.0 / CONVERTER_CALLS,
+                (decoded - decodeStarted) / 1000.0 / CONVERTER_CALLS);
+    }
+
+    private List<String> notes(int size) {
+        List<String> texts = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            StringBuilder text = new StringBuilder();
+            while (text.length() < size) {
+                text.append(SENTENCES[random.nextInt(SENTENCES.length)]);
+            }
+            texts.add(text.toString());
+        }
+        return texts;
+    }
+
+    private static void print(int size, String mode, Result result) {
+        System.out.printf("%-8d %-8s %10d %12.1f %12.1f %12.1f %12.1f%n", size, mode, result.bytesPerRow,
+                result.writeMicrosPerRow, result.readMicrosPerRow, result.encodeMicros, result.decodeMicros);
+    }
+
+    private static class Result {
+        private final long bytesPerRow;
+        private final double writeMicrosPerRow;
+        private final double readMicrosPerRow;
+        private final double encodeMicros;
+        private final double decodeMicros;
+
+        private Result(long bytesPerRow, double writeMicrosPerRow, double readMicrosPerRow, double encodeMicros, double decodeMicros) {
+            this.bytesPerRow = bytesPerRow;
+            this.writeMicrosPerRow = writeMicrosPerRow;
+            this.readMicrosPerRow = readMicrosPerRow;
+            this.encodeMicros = encodeMicros;
+            this.decodeMicros = decodeMicros;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.medvault.hmsbackend.repository;
+
+import com.medvault.hmsbackend.model.Appointment;
+import com.medvault.hmsbackend.model.Doctor;
+import com.medvault.hmsbackend.model.FileAttachment;
+import com.medvault.hmsbackend.model.MedicalRecord;
+import com.medvault.hmsbackend.model.Patient;
+import com.medvault.hmsbackend.model.Prescription;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Statements and time to create appointments and medical records (with prescriptions and files)
+// in one transaction, with JDBC batching as configured and with it turned off for the session.
+// Unbatched is what IDENTITY ids forced: one round trip per row.
+// Run with: mvn test -Pbenchmarks -Dtest=BulkInsertBenchmarkTest
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@Tag("benchmark")
+class BulkInsertBenchmarkTest {
+
+    private static final int APPOINTMENTS = 2000;
+    private static final int RECORDS = 500;
+    private static final int PRESCRIPTIONS_PER_RECORD = 3;
+    private static final int FILES_PER_RECORD = 2;
+    private static final int ROUNDS = 5;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Keeps every round's appointments on distinct days so the slot constraint never fires
+    private int nextDay;
+
+    @Test
+    void bulkCreation() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Result[] appointments = new Result[2];
+        Result[] records = new Result[2];
+        for (int batched = 0; batched < 2; batched++) {
+            appointments[batched] = measure(statistics, batched == 1, this::createAppointments);
+            records[batched] = measure(statistics, batched == 1, this::createRecords);
+        }
+
+        int recordRows = RECORDS * (1 + PRESCRIPTIONS_PER_RECORD + FILES_PER_RECORD);
+        System.out.printf("%-28s %10s %12s %10s%n", "", "rows", "statements", "median ms");
+        print("appointments, unbatched", APPOINTMENTS, appointments[0]);
+        print("appointments, batched", APPOINTMENTS, appointments[1]);
+        print("records+children, unbatched", recordRows, records[0]);
+        print("records+children, batched", recordRows, records[1]);
+
+        // One insert per row without batching; batches of 50 plus a sequence call per 50 ids with it
+        assertTrue(appointments[0].statements >= APPOINTMENTS);
+        assertTrue(appointments[1].statements <= APPOINTMENTS / 10);
+        // Children carry their foreign key in the insert, without a follow-up UPDATE each
+        assertTrue(records[0].statements < recordRows + recordRows / 10);
+        assertTrue(records[1].statements <= recordRows / 10);
+    }
+
+    private Result measure(Statistics statistics, boolean batched, Runnable work) {
+        long[] millis = new long[ROUNDS];
+        long statements = 0;
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        for (int round = 0; round <= ROUNDS; round++) {
+            statistics.clear();
+            long started = System.nanoTime();
+            transaction.executeWithoutResult(status -> {
+                if (!batched) {
+                    entityManager.unwrap(Session.class).setJdbcBatchSize(1);
+                }
+                work.run();
+                entityManager.flush();
+                entityManager.clear();
+            });
+            // Round 0 warms up
+            if (round > 0) {
+                millis[round - 1] = (System.nanoTime() - started) / 1_000_000;
+                statements = statistics.getPrepareStatementCount();
+            }
+        }
+        Arrays.sort(millis);
+        return new Result(statements, millis[ROUNDS / 2]);
+    }
+
+    private void createAppointments() {
+        Doctor doctor = entityManager.getReference(Doctor.class, 1L);
+        Patient patient = entityManager.getReference(Patient.class, 1L);
+        LocalDate firstDay = LocalDate.of(2100, 1, 1).plusDays(nextDay);
+        nextDay += APPOINTMENTS / 20 + 1;
+        for (int i = 0; i < APPOINTMENTS; i++) {
+            Appointment appointment = new Appointment();
+            appointment.setDoctor(doctor);
+            appointment.setPatient(patient);
+            appointment.setDate(firstDay.plusDays(i / 20));
+            appointment.setTime(LocalTime.of(8, 0).plusMinutes(30L * (i % 20)));
+            appointment.setStatus(Appointment.Status.PENDING);
+            appointment.setSlotActive(Boolean.TRUE);
+            appointment.setReason("Benchmark");
+            entityManager.persist(appointment);
+        }
+    }
+
+    private void createRecords() {
+        Doctor doctor = entityManager.getReference(Doctor.class, 1L);
+        Patient patient = entityManager.getReference(Patient.class, 1L);
+        for (int i = 0; i < RECORDS; i++) {
+            MedicalRecord record = new MedicalRecord();
+            record.setDoctor(doctor);
+            record.setPatient(patient);
+            record.setDate(LocalDate.of(2024, 1, 1).plusDays(i % 365));
+            record.setType("Consultation");
+            record.setTitle("Benchmark record " + i);
+            record.setDescription("Follow-up in two weeks");
+            List<Prescription> prescriptions = new ArrayList<>();
+            for (int p = 0; p < PRESCRIPTIONS_PER_RECORD; p++) {
+                Prescription prescription = new Prescription();
+                prescription.setMedication("Medication " + p);
+                prescription.setDosage("10mg");
+                prescription.setFrequency("Daily");
+                prescription.setDuration("7 days");
+                prescriptions.add(prescription);
+            }
+            record.setPrescriptions(prescriptions);
+            List<FileAttachment> files = new ArrayList<>();
+            for (int f = 0; f < FILES_PER_RECORD; f++) {
+                FileAttachment file = new FileAttachment();
+                file.setName("scan-" + f + ".pdf");
+                file.setType("application/pdf");
+                file.setSize(1024L);
+                file.setUploadDate(LocalDate.of(2024, 1, 1));
+                files.add(file);
+            }
+            record.setFiles(files);
+            entityManager.persist(record);
+        }
+    }
+
+    private static void print(String label, int rows, Result result) {
+        System.out.printf("%-28s %10d %12d %10d%n", label, rows, result.statements, result.millis);
+    }
+
+    private static class Result {
+        private final long statements;
+        private final long millis;
+
+        private Result(long statements, long millis) {
+            this.statements = statements;
+            this.millis = millis;
+        }
+    }
+}
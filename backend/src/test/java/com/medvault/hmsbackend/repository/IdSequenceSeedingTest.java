@@ -0,0 +1,79 @@
+package com.medvault.hmsbackend.repository;
+
+import com.medvault.hmsbackend.model.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The seed script has to move each pooled id sequence past rows it did not allocate (databases
+// that predate the sequences, or rows inserted with explicit ids)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class IdSequenceSeedingTest {
+
+    private static final int ALLOCATION_SIZE = 50;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void seedScriptMovesSequencePastExistingRows() {
+        long existingId = maxUserId() + 5000;
+        jdbcTemplate.update("INSERT INTO users (id, email, password, name, role) VALUES (?, ?, 'x', 'Legacy', 'PATIENT')",
+                existingId, "legacy-" + existingId + "@example.com");
+
+        runSeedScript();
+
+        // The pooled optimizer hands out the block that ends at the sequence value
+        long next = nextUserSequenceValue();
+        assertTrue(next - ALLOCATION_SIZE + 1 > existingId, "next block starts at " + (next - ALLOCATION_SIZE + 1));
+    }
+
+    @Test
+    void seedScriptNeverMovesSequenceBack() {
+        runSeedScript();
+        long first = nextUserSequenceValue();
+        runSeedScript();
+        assertTrue(nextUserSequenceValue() > first);
+    }
+
+    @Test
+    void savedUsersDoNotCollideWithSeededRows() {
+        runSeedScript();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 3 * ALLOCATION_SIZE; i++) {
+            users.add(new User(null, "seeded-" + System.nanoTime() + "-" + i + "@example.com", "x", "Seeded", User.Role.PATIENT));
+        }
+        List<User> saved = userRepository.saveAll(users);
+        assertEquals(saved.size(), saved.stream().map(User::getId).distinct().count());
+    }
+
+    private void runSeedScript() {
+        new ResourceDatabasePopulator(new ClassPathResource("data-h2.sql")).execute(dataSource);
+    }
+
+    private long maxUserId() {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM users", Long.class);
+    }
+
+    private long nextUserSequenceValue() {
+        return jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR users_seq", Long.class);
+    }
+}
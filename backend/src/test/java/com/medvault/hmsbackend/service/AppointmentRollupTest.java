@@ -0,0 +1,97 @@
+package com.medvault.hmsbackend.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// appointment_rollups follows bookings and status changes, both through the single-row endpoints
+// (recounted after commit) and the doctor's batch endpoint (deltas inside its transaction)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class AppointmentRollupTest {
+
+    private static final long DOCTOR_ID = 3;
+    private static final LocalDate DATE = LocalDate.of(2098, 5, 4);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void rollupsFollowBookingsAndStatusChanges() throws Exception {
+        String patientToken = token("john.smith@email.com");
+        String doctorToken = token("amanda.rodriguez@medvault.com");
+
+        long first = book(patientToken, "10:00");
+        long second = book(patientToken, "10:30");
+        assertEquals(Map.of("PENDING", 2L), rollups());
+
+        HttpResponse<String> response = send("PUT", "/api/appointments/" + first + "/status", doctorToken,
+                "{\"status\":\"CONFIRMED\"}");
+        assertEquals(200, response.statusCode(), response.body());
+        assertEquals(Map.of("CONFIRMED", 1L, "PENDING", 1L), rollups());
+
+        response = send("PUT", "/api/appointments/status", doctorToken,
+                "[{\"id\":" + first + ",\"status\":\"COMPLETED\"},{\"id\":" + second + ",\"status\":\"CANCELLED\"}]");
+        assertEquals(200, response.statusCode(), response.body());
+        assertEquals(Map.of("COMPLETED", 1L, "CANCELLED", 1L), rollups());
+    }
+
+    private long book(String token, String time) throws Exception {
+        HttpResponse<String> response = send("POST", "/api/appointments/book", token,
+                "{\"doctorId\":" + DOCTOR_ID + ",\"date\":\"" + DATE + "\",\"time\":\"" + time + "\",\"reason\":\"Checkup\"}");
+        assertEquals(200, response.statusCode(), response.body());
+        Matcher id = Pattern.compile("\"id\"\\s*:\\s*(\\d+)").matcher(response.body());
+        assertTrue(id.find(), response.body());
+        return Long.parseLong(id.group(1));
+    }
+
+    // Statuses with a non-zero count for the doctor's day
+    private Map<String, Long> rollups() {
+        Map<String, Long> totals = new TreeMap<>();
+        jdbcTemplate.query("SELECT status, total FROM appointment_rollups WHERE doctor_id = ? AND date = ? AND total <> 0",
+                rs -> {
+                    totals.put(rs.getString(1), rs.getLong(2));
+                }, DOCTOR_ID, Date.valueOf(DATE));
+        return totals;
+    }
+
+    private HttpResponse<String> send(String method, String path, String token, String json) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(json))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private String token(String email) {
+        return jwtService.generateToken(new org.springframework.security.core.userdetails.User(
+                email, "x", new ArrayList<>()));
+    }
+}
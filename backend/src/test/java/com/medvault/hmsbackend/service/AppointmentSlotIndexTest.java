@@ -0,0 +1,125 @@
+package com.medvault.hmsbackend.service;
+
+import com.medvault.hmsbackend.repository.AppointmentRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AppointmentSlotIndexTest {
+
+    private static final Long DOCTOR_ID = 7L;
+    private static final LocalDate DATE = LocalDate.of(2099, 5, 4);
+    private static final LocalTime TIME = LocalTime.of(10, 30);
+
+    @Mock
+    private AppointmentRepository appointmentRepository;
+
+    @InjectMocks
+    private AppointmentSlotIndex slotIndex;
+
+    @Test
+    void slotCanOnlyBeClaimedOnce() {
+        when(appointmentRepository.findBookedTimes(DOCTOR_ID, DATE)).thenReturn(List.of());
+
+        assertTrue(slotIndex.tryClaim(DOCTOR_ID, DATE, TIME));
+        assertFalse(slotIndex.tryClaim(DOCTOR_ID, DATE, TIME));
+    }
+
+    // A loser's refresh runs before the winner's insert commits, so the database does not show it yet
+    @Test
+    void refreshKeepsUncommittedClaims() {
+        when(appointmentRepository.findBookedTimes(DOCTOR_ID, DATE)).thenReturn(List.of());
+
+        assertTrue(slotIndex.tryClaim(DOCTOR_ID, DATE, TIME));
+        slotIndex.refresh(DOCTOR_ID, DATE);
+        assertFalse(slotIndex.tryClaim(DOCTOR_ID, DATE, TIME));
+    }
+
+    // Once confirmed, the database is authoritative again, e.g. after a cancellation on another node
+    @Test
+    void refreshPicksUpSlotsFreedElsewhere() {
+        when(appointmentRepository.findBookedTimes(DOCTOR_ID, DATE)).thenReturn(List.of());
+
+        assertTrue(slotIndex.tryClaim(DOCTOR_ID, DATE, TIME));
+        slotIndex.confirm(DOCTOR_ID, DATE, TIME);
+        slotIndex.refresh(DOCTOR_ID, DATE);
+        assertTrue(slotIndex.tryClaim(DOCTOR_ID, DATE, TIME));
+    }
+
+    @Test
+    void releasedSlotCanBeClaimedAgain() {
+        when(appointmentRepository.findBookedTimes(DOCTOR_ID, DATE)).thenReturn(List.of());
+
+        assertTrue(slotIndex.tryClaim(DOCTOR_ID, DATE, TIME));
+        slotIndex.release(DOCTOR_ID, DATE, TIME);
+        slotIndex.refresh(DOCTOR_ID, DATE);
+        assertTrue(slotIndex.tryClaim(DOCTOR_ID, DATE, TIME));
+    }
+
+    @Test
+    void bookedTimesFromDatabaseAreTaken() {
+        when(appointmentRepository.findBookedTimes(DOCTOR_ID, DATE)).thenReturn(List.of(TIME));
+
+        assertFalse(slotIndex.tryClaim(DOCTOR_ID, DATE, TIME));
+        assertTrue(slotIndex.tryClaim(DOCTOR_ID, DATE, TIME.plusMinutes(30)));
+    }
+
+    @Test
+    void preloadReadsTheRangeInOneQuery() {
+        LocalDate to = DATE.plusDays(59);
+        when(appointmentRepository.findBookedSlots(DOCTOR_ID, DATE, to)).thenReturn(List.<Object[]>of(new Object[]{DATE.plusDays(3), TIME}));
+
+        slotIndex.preload(DOCTOR_ID, DATE, to);
+        slotIndex.preload(DOCTOR_ID, DATE, to);
+
+        assertTrue(slotIndex.bookedMinutes(DOCTOR_ID, DATE.plusDays(3)).get(TIME.getHour() * 60 + TIME.getMinute()));
+        assertTrue(slotIndex.bookedMinutes(DOCTOR_ID, to).isEmpty());
+        verify(appointmentRepository, times(1)).findBookedSlots(DOCTOR_ID, DATE, to);
+        verify(appointmentRepository, never()).findBookedTimes(any(), any());
+    }
+
+    @Test
+    void preloadKeepsUncommittedClaims() {
+        when(appointmentRepository.findBookedTimes(DOCTOR_ID, DATE)).thenReturn(List.of());
+        assertTrue(slotIndex.tryClaim(DOCTOR_ID, DATE, TIME));
+        ReflectionTestUtils.setField(slotIndex, "maxDaysAhead", 0);
+        slotIndex.purge();
+
+        slotIndex.preload(DOCTOR_ID, DATE, DATE);
+        assertFalse(slotIndex.tryClaim(DOCTOR_ID, DATE, TIME));
+    }
+
+    // Days beyond max-days-ahead are dropped and read again on their next use
+    @Test
+    void purgeDropsDaysTooFarAhead() {
+        LocalDate soon = LocalDate.now().plusDays(1);
+        when(appointmentRepository.findBookedTimes(DOCTOR_ID, soon)).thenReturn(List.of());
+        when(appointmentRepository.findBookedTimes(DOCTOR_ID, DATE)).thenReturn(List.of());
+        ReflectionTestUtils.setField(slotIndex, "maxDaysAhead", 30);
+
+        slotIndex.bookedMinutes(DOCTOR_ID, soon);
+        slotIndex.bookedMinutes(DOCTOR_ID, DATE);
+        slotIndex.purge();
+        slotIndex.bookedMinutes(DOCTOR_ID, soon);
+        slotIndex.bookedMinutes(DOCTOR_ID, DATE);
+
+        verify(appointmentRepository, times(1)).findBookedTimes(DOCTOR_ID, soon);
+        verify(appointmentRepository, times(2)).findBookedTimes(DOCTOR_ID, DATE);
+    }
+}
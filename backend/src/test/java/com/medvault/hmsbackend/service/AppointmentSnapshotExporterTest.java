@@ -0,0 +1,133 @@
+package com.medvault.hmsbackend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.sql.Date;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Incremental runs of the snapshot export: unchanged months are left alone, a changed row rewrites
+// only its month, emptied months are removed and the manifest lists what is on disk
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class AppointmentSnapshotExporterTest {
+
+    // Far above anything the sequence hands out; the rows are deleted afterwards
+    private static final long FIRST_ID = 810_000_000L;
+    private static final int PER_MONTH = 10;
+    private static final int YEAR = 2093;
+    private static final FileTime UNTOUCHED = FileTime.fromMillis(0);
+
+    @Autowired
+    private AppointmentSnapshotExporter exporter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${exports.snapshots.dir}")
+    private String directoryPath;
+
+    @AfterEach
+    void deleteAppointments() {
+        jdbcTemplate.update("DELETE FROM appointments WHERE id >= ? AND id < ?", FIRST_ID, FIRST_ID + 3 * PER_MONTH);
+    }
+
+    @Test
+    void rewritesOnlyChangedMonths() throws Exception {
+        Path directory = Paths.get(directoryPath);
+        List<Object[]> rows = new ArrayList<>();
+        for (int month = 1; month <= 3; month++) {
+            for (int day = 1; day <= PER_MONTH; day++) {
+                rows.add(new Object[] {FIRST_ID + (month - 1) * PER_MONTH + day - 1,
+                        Date.valueOf(LocalDate.of(YEAR, month, day)), Time.valueOf(LocalTime.of(9, 0))});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO appointments (id, version, date, time, status, reason, patient_id, doctor_id, slot_active)"
+                + " VALUES (?, 0, ?, ?, 'PENDING', 'Checkup', 1, 1, TRUE)", rows);
+
+        assertTrue(exporter.export());
+        assertEquals(PER_MONTH, AppointmentSnapshotFile.readHeader(file(directory, 2)).getRows());
+
+        // Nothing changed, so nothing is written
+        markUntouched(directory);
+        assertTrue(exporter.export());
+        for (Path file : snapshotFiles(directory)) {
+            assertEquals(UNTOUCHED, Files.getLastModifiedTime(file), file.toString());
+        }
+
+        // One changed row rewrites its month and no other
+        long changed = FIRST_ID + PER_MONTH + 4;
+        jdbcTemplate.update("UPDATE appointments SET status = 'COMPLETED' WHERE id = ?", changed);
+        markUntouched(directory);
+        assertTrue(exporter.export());
+        Path february = file(directory, 2);
+        for (Path file : snapshotFiles(directory)) {
+            assertEquals(file.equals(february), !UNTOUCHED.equals(Files.getLastModifiedTime(file)), file.toString());
+        }
+        AppointmentSnapshotFile.Snapshot snapshot = AppointmentSnapshotFile.read(february);
+        int row = Arrays.stream(snapshot.longs("id")).boxed().toList().indexOf(changed);
+        assertEquals("COMPLETED", snapshot.strings("status")[row]);
+
+        // A month with no appointments left is removed, and the manifest follows the files
+        jdbcTemplate.update("DELETE FROM appointments WHERE id >= ? AND id < ?", FIRST_ID + 2 * PER_MONTH, FIRST_ID + 3 * PER_MONTH);
+        assertTrue(exporter.export());
+        assertFalse(Files.exists(file(directory, 3)));
+
+        JsonNode manifest = objectMapper.readTree(directory.resolve("manifest.json").toFile());
+        Map<String, JsonNode> partitions = new HashMap<>();
+        for (JsonNode partition : manifest.get("partitions")) {
+            partitions.put(partition.get("month").asText(), partition);
+            assertTrue(Files.exists(directory.resolve(partition.get("file").asText())), partition.toString());
+        }
+        assertEquals(snapshotFiles(directory).size(), partitions.size());
+        assertFalse(partitions.containsKey(YEAR + "-03"));
+        JsonNode partition = partitions.get(YEAR + "-02");
+        assertEquals(february.getFileName().toString(), partition.get("file").asText());
+        assertEquals(PER_MONTH, partition.get("rows").asInt());
+        assertEquals(Long.toHexString(snapshot.getHeader().getFingerprint()), partition.get("fingerprint").asText());
+        assertNotEquals(AppointmentSnapshotFile.readHeader(file(directory, 1)).getFingerprint(), snapshot.getHeader().getFingerprint());
+    }
+
+    private Path file(Path directory, int month) {
+        return directory.resolve(AppointmentSnapshotFile.fileName(YEAR * 100 + month));
+    }
+
+    private void markUntouched(Path directory) throws Exception {
+        for (Path file : snapshotFiles(directory)) {
+            Files.setLastModifiedTime(file, UNTOUCHED);
+        }
+    }
+
+    private List<Path> snapshotFiles(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".col")).sorted().toList();
+        }
+    }
+}
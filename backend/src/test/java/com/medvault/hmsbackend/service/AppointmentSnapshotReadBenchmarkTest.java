@@ -0,0 +1,240 @@
+package com.medvault.hmsbackend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medvault.hmsbackend.model.Doctor;
+import com.medvault.hmsbackend.model.Patient;
+import com.medvault.hmsbackend.model.User;
+import com.medvault.hmsbackend.repository.DoctorRepository;
+import com.medvault.hmsbackend.repository.PatientRepository;
+import com.medvault.hmsbackend.repository.UserRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Date;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Reading a doctor's year of appointments from the monthly columnar snapshots written by
+// AppointmentSnapshotExporter against paging through GET /api/appointments/doctor
+// Run with: mvn test -Pbenchmarks -Dtest=AppointmentSnapshotReadBenchmarkTest
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@Tag("benchmark")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class AppointmentSnapshotReadBenchmarkTest {
+
+    private static final int APPOINTMENTS = 50_000;
+    private static final int PAGE_SIZE = 500;
+    private static final int ROUNDS = 5;
+    // Far above anything the sequence hands out; the rows are deleted afterwards
+    private static final long FIRST_ID = 800_000_000L;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2097, 1, 1);
+    private static final String[] STATUSES = {"PENDING", "CONFIRMED", "COMPLETED", "CANCELLED"};
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AppointmentSnapshotExporter exporter;
+
+    @Value("${exports.snapshots.dir}")
+    private String directoryPath;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private Doctor doctor;
+    private String token;
+
+    @BeforeAll
+    void createAppointments() throws Exception {
+        User doctorUser = userRepository.save(new User(null, "snapshot.doctor@example.com", "x", "Dr. Snapshot", User.Role.DOCTOR));
+        doctor = new Doctor();
+        doctor.setUser(doctorUser);
+        doctor.setName(doctorUser.getName());
+        doctor.setSpecialization("Neurology");
+        doctor.setPhone("+1 (555) 000-0003");
+        doctor = doctorRepository.save(doctor);
+        User patientUser = userRepository.save(new User(null, "snapshot.patient@example.com", "x", "Snapshot Patient", User.Role.PATIENT));
+        Patient patient = new Patient();
+        patient.setUser(patientUser);
+        patient.setName(patientUser.getName());
+        patient.setPhone("+1 (555) 000-0004");
+        patient = patientRepository.save(patient);
+
+        // Spread over a year, a few hundred a day at one-minute steps
+        int perDay = APPOINTMENTS / 365 + 1;
+        List<Object[]> rows = new ArrayList<>(APPOINTMENTS);
+        for (int i = 0; i < APPOINTMENTS; i++) {
+            String status = STATUSES[i % STATUSES.length];
+            // Cancelled appointments give up their slot
+            rows.add(new Object[] {FIRST_ID + i, Date.valueOf(FIRST_DAY.plusDays(i / perDay)),
+                    Time.valueOf(LocalTime.of(8, 0).plusMinutes(i % perDay)), status, "Follow-up visit",
+                    patient.getId(), doctor.getId(), status.equals("CANCELLED") ? null : Boolean.TRUE});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO appointments (id, version, date, time, status, reason, patient_id, doctor_id, slot_active)"
+                + " VALUES (?, 0, ?, ?, ?, ?, ?, ?, ?)", rows);
+
+        assertTrue(exporter.export());
+        token = jwtService.generateToken(new org.springframework.security.core.userdetails.User(
+                doctorUser.getEmail(), doctorUser.getPassword(), new ArrayList<>()));
+    }
+
+    @AfterAll
+    void deleteAppointments() {
+        jdbcTemplate.update("DELETE FROM appointments WHERE id >= ?", FIRST_ID);
+    }
+
+    @Test
+    void readBenchmark() throws Exception {
+        long[] jsonNanos = new long[ROUNDS];
+        long[] columnsNanos = new long[ROUNDS];
+        long[] statusNanos = new long[ROUNDS];
+        long jsonBytes = 0;
+        // Round 0 warms up
+        for (int round = 0; round <= ROUNDS; round++) {
+            long started = System.nanoTime();
+            Read json = readJson();
+            long jsonDone = System.nanoTime();
+            Read columns = readSnapshots();
+            long columnsDone = System.nanoTime();
+            int statuses = readStatusColumn();
+            long statusDone = System.nanoTime();
+
+            assertEquals(APPOINTMENTS, json.ids.size());
+            assertEquals(json.ids, columns.ids);
+            assertEquals(APPOINTMENTS, statuses);
+            if (round > 0) {
+                jsonNanos[round - 1] = jsonDone - started;
+                columnsNanos[round - 1] = columnsDone - jsonDone;
+                statusNanos[round - 1] = statusDone - columnsDone;
+                jsonBytes = json.bytes;
+            }
+        }
+        Arrays.sort(jsonNanos);
+        Arrays.sort(columnsNanos);
+        Arrays.sort(statusNanos);
+
+        long snapshotBytes = 0;
+        for (Path file : snapshotFiles()) {
+            snapshotBytes += Files.size(file);
+        }
+        System.out.printf("%-34s %12s %10s%n", APPOINTMENTS + " appointments", "bytes", "median ms");
+        System.out.printf("%-34s %12d %10d%n", "JSON endpoint, " + PAGE_SIZE + " per page", jsonBytes, jsonNanos[ROUNDS / 2] / 1_000_000);
+        System.out.printf("%-34s %12d %10d%n", "snapshot files, every column", snapshotBytes, columnsNanos[ROUNDS / 2] / 1_000_000);
+        System.out.printf("%-34s %12s %10d%n", "snapshot files, status only", "", statusNanos[ROUNDS / 2] / 1_000_000);
+    }
+
+    // What a client of the API has to do: follow X-Next-Cursor and parse every page
+    private Read readJson() throws Exception {
+        Read read = new Read();
+        String cursor = null;
+        do {
+            String path = "/api/appointments/doctor?limit=" + PAGE_SIZE
+                    + (cursor != null ? "&cursor=" + URLEncoder.encode(cursor, StandardCharsets.UTF_8) : "");
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                    .header("Authorization", "Bearer " + token)
+                    .GET()
+                    .build();
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(200, response.statusCode());
+            read.bytes += response.body().length;
+            for (JsonNode appointment : objectMapper.readTree(response.body())) {
+                read.ids.add(appointment.get("id").asLong());
+            }
+            cursor = response.headers().firstValue("X-Next-Cursor").orElse(null);
+        } while (cursor != null);
+        return read;
+    }
+
+    // Every column of every month, decoded; the doctor's rows are picked out by doctor_id
+    private Read readSnapshots() throws Exception {
+        Read read = new Read();
+        for (Path file : snapshotFiles()) {
+            AppointmentSnapshotFile.Snapshot snapshot = AppointmentSnapshotFile.read(file);
+            read.bytes += Files.size(file);
+            for (String column : snapshot.getColumnNames()) {
+                if (column.equals("status") || column.equals("specialization")) {
+                    snapshot.strings(column);
+                } else {
+                    snapshot.longs(column);
+                }
+            }
+            long[] ids = snapshot.longs("id");
+            long[] doctors = snapshot.longs("doctor_id");
+            for (int row = 0; row < ids.length; row++) {
+                if (doctors[row] == doctor.getId()) {
+                    read.ids.add(ids[row]);
+                }
+            }
+        }
+        return read;
+    }
+
+    private int readStatusColumn() throws Exception {
+        int rows = 0;
+        for (Path file : snapshotFiles()) {
+            rows += AppointmentSnapshotFile.read(file).strings("status").length;
+        }
+        return rows;
+    }
+
+    // The months of the benchmark year; the export also holds every other appointment in the table
+    private List<Path> snapshotFiles() {
+        List<Path> files = new ArrayList<>();
+        for (int month = 1; month <= 12; month++) {
+            files.add(Paths.get(directoryPath).resolve(AppointmentSnapshotFile.fileName(FIRST_DAY.getYear() * 100 + month)));
+        }
+        return files;
+    }
+
+    private static class Read {
+        private final Set<Long> ids = new HashSet<>();
+        private long bytes;
+    }
+}
@@ -0,0 +1,67 @@
+package com.medvault.hmsbackend.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class BlobStoreTest {
+
+    private static final String HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+    private static final String OTHER_HASH = "60303ae22b998861bce3b28f33eec1be758a213c86c93c076dbe9f558c11c752";
+
+    private final BlobStore blobStore = new BlobStore();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(blobStore, "etagKey", "test-key");
+    }
+
+    // The same file attached for two patients must not be recognisable as the same file
+    @Test
+    void etagDiffersBetweenAttachmentsWithTheSameContent() {
+        assertNotEquals(blobStore.etagOf(1L, HASH), blobStore.etagOf(2L, HASH));
+    }
+
+    @Test
+    void etagIsStableAndFollowsTheContent() {
+        assertEquals(blobStore.etagOf(1L, HASH), blobStore.etagOf(1L, HASH));
+        assertNotEquals(blobStore.etagOf(1L, HASH), blobStore.etagOf(1L, OTHER_HASH));
+    }
+
+    @Test
+    void etagDoesNotContainTheHash() {
+        String etag = blobStore.etagOf(1L, HASH);
+        assertEquals('"', etag.charAt(0));
+        assertEquals('"', etag.charAt(etag.length() - 1));
+        assertFalse(etag.contains(HASH.substring(0, 8)));
+    }
+
+    @Test
+    void previewEtagDiffersFromTheContentEtag() {
+        assertNotEquals(blobStore.etagOf(1L, HASH), blobStore.previewEtagOf(1L, HASH));
+        assertNotEquals(blobStore.previewEtagOf(1L, HASH), blobStore.previewEtagOf(2L, HASH));
+    }
+
+    // Without a configured key each instance picks its own instead of borrowing another secret
+    @Test
+    void unsetKeyIsRandom(@TempDir Path root) throws Exception {
+        BlobStore first = unconfigured(root);
+        BlobStore second = unconfigured(root);
+        assertNotEquals(first.etagOf(1L, HASH), second.etagOf(1L, HASH));
+    }
+
+    private static BlobStore unconfigured(Path root) throws Exception {
+        BlobStore store = new BlobStore();
+        ReflectionTestUtils.setField(store, "rootPath", root.toString());
+        ReflectionTestUtils.setField(store, "etagKey", "");
+        store.init();
+        return store;
+    }
+}
@@ -0,0 +1,120 @@
+package com.medvault.hmsbackend.service;
+
+import com.medvault.hmsbackend.dto.MedicalRecordView;
+import com.medvault.hmsbackend.event.MedicalRecordChangedEvent;
+import com.medvault.hmsbackend.repository.MedicalRecordRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MedicalRecordSearchIndexTest {
+
+    private static final int RECORDS = 20;
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private MedicalRecordRepository medicalRecordRepository;
+
+    @InjectMocks
+    private MedicalRecordSearchIndex searchIndex;
+
+    private final List<MedicalRecordView> views = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ReflectionTestUtils.setField(searchIndex, "directoryPath", directory.toString());
+        ReflectionTestUtils.setField(searchIndex, "maxResults", 1000);
+        searchIndex.init();
+
+        when(medicalRecordRepository.findPrescriptionsByRecordIds(anyCollection())).thenReturn(List.of());
+        for (long id = 1; id <= RECORDS; id++) {
+            MedicalRecordView view = new MedicalRecordView(id, LocalDate.of(2024, 1, 1), "Consultation",
+                    "Annual checkup " + id, "Blood pressure normal", 1L, "John Smith", 1L, "Dr. Sarah Johnson");
+            views.add(view);
+            when(medicalRecordRepository.findViewById(id)).thenReturn(Optional.of(view));
+            searchIndex.onRecordChanged(new MedicalRecordChangedEvent(id));
+        }
+        searchIndex.flush();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        searchIndex.shutdown();
+    }
+
+    // The current segments answer searches until the rebuilt ones replace them
+    @Test
+    void searchesSeeEveryRecordWhileRebuilding() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        when(medicalRecordRepository.findViewsAfter(eq(0L), any())).thenAnswer(invocation -> {
+            reading.countDown();
+            assertTrue(proceed.await(10, TimeUnit.SECONDS));
+            return views;
+        });
+        doReturn(List.of()).when(medicalRecordRepository).findViewsAfter(eq((long) RECORDS), any());
+
+        CompletableFuture<Void> rebuild = CompletableFuture.runAsync(searchIndex::rebuild);
+        try {
+            assertTrue(reading.await(10, TimeUnit.SECONDS));
+            assertEquals(RECORDS, searchIndex.search("checkup", null, null, 0, 10).getTotal());
+            assertEquals(RECORDS, searchIndex.size());
+        } finally {
+            proceed.countDown();
+        }
+        rebuild.get(10, TimeUnit.SECONDS);
+
+        assertEquals(RECORDS, searchIndex.search("checkup", null, null, 0, 10).getTotal());
+        assertEquals(RECORDS, searchIndex.size());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.filter(file -> file.getFileName().toString().endsWith(".idx")).count());
+        }
+    }
+
+    // A record changed while the rebuild runs keeps its newer version after the swap
+    @Test
+    void updatesDuringRebuildShadowWhatItRead() throws Exception {
+        MedicalRecordView changed = new MedicalRecordView(1L, LocalDate.of(2024, 1, 1), "Consultation",
+                "Follow-up visit", "Blood pressure normal", 1L, "John Smith", 1L, "Dr. Sarah Johnson");
+        when(medicalRecordRepository.findViewsAfter(eq(0L), any())).thenAnswer(invocation -> {
+            when(medicalRecordRepository.findViewById(1L)).thenReturn(Optional.of(changed));
+            searchIndex.onRecordChanged(new MedicalRecordChangedEvent(1L));
+            return views;
+        });
+        doReturn(List.of()).when(medicalRecordRepository).findViewsAfter(eq((long) RECORDS), any());
+
+        searchIndex.rebuild();
+
+        assertEquals(RECORDS - 1, searchIndex.search("checkup", null, null, 0, 10).getTotal());
+        assertEquals(1, searchIndex.search("follow", null, null, 0, 10).getTotal());
+        assertEquals(RECORDS, searchIndex.size());
+    }
+}
@@ -0,0 +1,90 @@
+package com.medvault.hmsbackend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medvault.hmsbackend.model.Patient;
+import com.medvault.hmsbackend.repository.AppointmentRepository;
+import com.medvault.hmsbackend.repository.MedicalRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.Mockito.when;
+
+// The streaming queries use a MySQL-only fetch size, so the repositories are mocked here
+@ExtendWith(MockitoExtension.class)
+class PatientHistoryExporterTest {
+
+    private static final Long PATIENT_ID = 2L;
+    private static final Long DOCTOR_ID = 3L;
+    private static final String HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    @Mock
+    private AppointmentRepository appointmentRepository;
+
+    @Mock
+    private MedicalRecordRepository medicalRecordRepository;
+
+    @Mock
+    private BlobStore blobStore;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @InjectMocks
+    private PatientHistoryExporter exporter;
+
+    private final Patient patient = new Patient();
+
+    @BeforeEach
+    void setUp() {
+        patient.setId(PATIENT_ID);
+        patient.setName("Emily Davis");
+        exporter.init();
+    }
+
+    @Test
+    void ownExportIncludesTheContentHash() throws Exception {
+        assertEquals(HASH, fileLine(null).get("sha256").asText());
+    }
+
+    // A doctor's copy must not show which files two patients have in common
+    @Test
+    void doctorExportLeavesTheContentHashOut() throws Exception {
+        JsonNode file = fileLine(DOCTOR_ID);
+        assertFalse(file.has("sha256"), file.toString());
+        assertEquals("xray.png", file.get("name").asText());
+    }
+
+    private JsonNode fileLine(Long doctorId) throws Exception {
+        when(appointmentRepository.streamPatientHistory(PATIENT_ID, doctorId)).thenReturn(Stream.empty());
+        when(medicalRecordRepository.streamPatientHistory(PATIENT_ID, doctorId)).thenReturn(Stream.empty());
+        when(medicalRecordRepository.streamPatientPrescriptions(PATIENT_ID, doctorId)).thenReturn(Stream.empty());
+        when(medicalRecordRepository.streamPatientFiles(PATIENT_ID, doctorId)).thenReturn(Stream.<Object[]>of(
+                new Object[] {10L, 20L, "xray.png", "image/png", 4L, LocalDate.of(2024, 6, 1), HASH}));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.writeNdjson(patient, doctorId, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).trim().split("\n");
+        assertEquals(2, lines.length);
+        JsonNode file = objectMapper.readTree(lines[1]);
+        assertEquals("file", file.get("type").asText());
+        return file;
+    }
+}
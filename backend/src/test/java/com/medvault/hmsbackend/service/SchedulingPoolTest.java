@@ -0,0 +1,29 @@
+package com.medvault.hmsbackend.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.config.ScheduledTaskHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Every @Scheduled method gets a thread of its own, so a long job never delays a heartbeat
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class SchedulingPoolTest {
+
+    @Autowired
+    private ScheduledTaskHolder scheduledTaskHolder;
+
+    @Autowired
+    private ThreadPoolTaskScheduler taskScheduler;
+
+    @Test
+    void poolHasAThreadPerScheduledTask() {
+        int tasks = scheduledTaskHolder.getScheduledTasks().size();
+        int threads = taskScheduler.getScheduledThreadPoolExecutor().getCorePoolSize();
+        assertTrue(tasks <= threads, tasks + " scheduled tasks share " + threads + " threads; raise spring.task.scheduling.pool.size");
+    }
+}
@@ -0,0 +1,75 @@
+import { useEffect, useRef } from 'react';
+
+// Subscribes to /api/appointments/events for the signed-in user and calls onEvent(type, data)
+// for each "created", "status_changed" or "reset" event. EventSource cannot send the
+// Authorization header, so the stream is read with fetch. Reconnects send Last-Event-ID and the
+// server replays what was missed, or sends "reset" when it no longer can.
+export function useAppointmentEvents(onEvent) {
+  const handler = useRef(onEvent);
+  handler.current = onEvent;
+
+  useEffect(() => {
+    const controller = new AbortController();
+    let lastEventId = null;
+    let retryMs = 1000;
+
+    const dispatch = (block) => {
+      let id = null;
+      let type = 'message';
+      const data = [];
+      for (const line of block.split('\n')) {
+        // Comment lines are the server's heartbeat
+        if (line.startsWith(':')) continue;
+        const colon = line.indexOf(':');
+        const field = colon < 0 ? line : line.slice(0, colon);
+        let value = colon < 0 ? '' : line.slice(colon + 1);
+        if (value.startsWith(' ')) value = value.slice(1);
+        if (field === 'id') id = value;
+        else if (field === 'event') type = value;
+        else if (field === 'data') data.push(value);
+      }
+      if (id !== null) lastEventId = id;
+      if (data.length === 0) return;
+      try {
+        handler.current(type, JSON.parse(data.join('\n')));
+      } catch (err) {
+        // Ignore malformed events
+      }
+    };
+
+    const connect = async () => {
+      while (!controller.signal.aborted) {
+        try {
+          const headers = { 'Authorization': `Bearer ${localStorage.getItem('token')}` };
+          if (lastEventId) headers['Last-Event-ID'] = lastEventId;
+          const response = await fetch('/api/appointments/events', { headers, signal: controller.signal });
+          // A rejected token will not get better by retrying
+          if (response.status === 401 || response.status === 403) return;
+          if (response.ok) {
+            retryMs = 1000;
+            const reader = response.body.pipeThrough(new TextDecoderStream()).getReader();
+            let buffer = '';
+            for (;;) {
+              const { value, done } = await reader.read();
+              if (done) break;
+              buffer += value.replace(/\r\n/g, '\n');
+              let end;
+              while ((end = buffer.indexOf('\n\n')) >= 0) {
+                dispatch(buffer.slice(0, end));
+                buffer = buffer.slice(end + 2);
+              }
+            }
+          }
+        } catch (err) {
+          if (controller.signal.aborted) return;
+        }
+        // The server ends the stream at its timeout or when this client falls too far behind
+        await new Promise(resolve => setTimeout(resolve, retryMs));
+        retryMs = Math.min(retryMs * 2, 30000);
+      }
+    };
+
+    connect();
+    return () => controller.abort();
+  }, []);
+}
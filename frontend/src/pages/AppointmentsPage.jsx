@@ -1,22 +1,27 @@
 import React, { useState, useEffect } from 'react';
 import { useNavigate } from 'react-router-dom';
 import { ChevronLeft, Calendar, Clock, User, MapPin, Phone, Video, MessageSquare, Plus } from 'lucide-react';
+import { useAppointmentEvents } from '../hooks/useAppointmentEvents';
 
 export function AppointmentsPage() {
   const navigate = useNavigate();
   const [filterStatus, setFilterStatus] = useState('all');
   const [appointments, setAppointments] = useState([]);
   const [loading, setLoading] = useState(true);
+  const [loadingMore, setLoadingMore] = useState(false);
+  const [nextCursor, setNextCursor] = useState(null);
   const [error, setError] = useState('');
 
   useEffect(() => {
     fetchAppointments();
   }, []);
 
-  const fetchAppointments = async () => {
+  // The listing is paged; each page names the next one in the X-Next-Cursor header, which is
+  // only followed when the user asks for more
+  const fetchAppointments = async (cursor = null) => {
     try {
       const token = localStorage.getItem('token');
-      const response = await fetch('/api/appointments/patient', {
+      const response = await fetch(`/api/appointments/patient${cursor ? `?cursor=${encodeURIComponent(cursor)}` : ''}`, {
         headers: {
           'Authorization': `Bearer ${token}`,
         },
@@ -37,7 +42,8 @@ export function AppointmentsPage() {
           reason: apt.reason,
           notes: apt.notes,
         }));
-        setAppointments(transformedAppointments);
+        setAppointments(prev => cursor ? [...prev, ...transformedAppointments] : transformedAppointments);
+        setNextCursor(response.headers.get('X-Next-Cursor'));
       } else {
         setError('Failed to fetch appointments');
       }
@@ -45,9 +51,27 @@ export function AppointmentsPage() {
       setError('Network error');
     } finally {
       setLoading(false);
+      setLoadingMore(false);
     }
   };
 
+  // Status changes are applied in place; a new appointment or a lost stream position reloads
+  // the first page
+  useAppointmentEvents((type, event) => {
+    if (type === 'status_changed') {
+      setAppointments(prev => prev.map(apt =>
+        apt.id === event.appointmentId ? { ...apt, status: event.status.toLowerCase() } : apt
+      ));
+    } else if (type === 'created' || type === 'reset') {
+      fetchAppointments();
+    }
+  });
+
+  const loadMore = () => {
+    setLoadingMore(true);
+    fetchAppointments(nextCursor);
+  };
+
   const handleCancelAppointment = async (appointmentId) => {
     try {
       const token = localStorage.getItem('token');
@@ -273,6 +297,18 @@ export function AppointmentsPage() {
         )}
       </div>
 
+      {nextCursor && !loading && (
+        <div className="text-center">
+          <button
+            onClick={loadMore}
+            disabled={loadingMore}
+            className="px-4 py-2 border border-gray-300 dark:border-gray-600 text-gray-700 dark:text-gray-300 rounded-md hover:bg-gray-50 dark:hover:bg-gray-700 transition-colors disabled:opacity-50"
+          >
+            {loadingMore ? 'Loading...' : 'Load more'}
+          </button>
+        </div>
+      )}
+
       {/* Quick Actions */}
       <div className="bg-white dark:bg-gray-800 rounded-lg shadow p-6">
         <h3 className="text-lg font-semibold text-gray-900 dark:text-white mb-4">Quick Actions</h3>
@@ -2,6 +2,7 @@ import React, { useState, useEffect } from 'react';
 import { useNavigate } from 'react-router-dom';
 import { ChevronLeft, Calendar, Clock, User, Eye, Edit, Plus, Filter } from 'lucide-react';
 import { useAuth } from '../contexts/AuthContext';
+import { useAppointmentEvents } from '../hooks/useAppointmentEvents';
 
 export function DoctorAppointmentsPage() {
   const navigate = useNavigate();
@@ -10,16 +11,20 @@ export function DoctorAppointmentsPage() {
   const [selectedAppointment, setSelectedAppointment] = useState(null);
   const [appointments, setAppointments] = useState([]);
   const [loading, setLoading] = useState(true);
+  const [loadingMore, setLoadingMore] = useState(false);
+  const [nextCursor, setNextCursor] = useState(null);
   const [error, setError] = useState('');
 
   useEffect(() => {
     fetchAppointments();
   }, []);
 
-  const fetchAppointments = async () => {
+  // The listing is paged; each page names the next one in the X-Next-Cursor header, which is
+  // only followed when the user asks for more
+  const fetchAppointments = async (cursor = null) => {
     try {
       const token = localStorage.getItem('token');
-      const response = await fetch('/api/appointments/doctor', {
+      const response = await fetch(`/api/appointments/doctor${cursor ? `?cursor=${encodeURIComponent(cursor)}` : ''}`, {
         headers: {
           'Authorization': `Bearer ${token}`,
         },
@@ -27,7 +32,8 @@ export function DoctorAppointmentsPage() {
 
       if (response.ok) {
         const data = await response.json();
-        setAppointments(data);
+        setAppointments(prev => cursor ? [...prev, ...data] : data);
+        setNextCursor(response.headers.get('X-Next-Cursor'));
       } else {
         setError('Failed to fetch appointments');
       }
@@ -35,9 +41,27 @@ export function DoctorAppointmentsPage() {
       setError('Network error');
     } finally {
       setLoading(false);
+      setLoadingMore(false);
     }
   };
 
+  // Status changes are applied in place; a new appointment or a lost stream position reloads
+  // the first page
+  useAppointmentEvents((type, event) => {
+    if (type === 'status_changed') {
+      setAppointments(prev => prev.map(apt =>
+        apt.id === event.appointmentId ? { ...apt, status: event.status } : apt
+      ));
+    } else if (type === 'created' || type === 'reset') {
+      fetchAppointments();
+    }
+  });
+
+  const loadMore = () => {
+    setLoadingMore(true);
+    fetchAppointments(nextCursor);
+  };
+
   const doctorAppointments = appointments;
 
   const filteredAppointments = doctorAppointments.filter(apt => {
@@ -225,6 +249,18 @@ export function DoctorAppointmentsPage() {
         )}
       </div>
 
+      {nextCursor && (
+        <div className="text-center">
+          <button
+            onClick={loadMore}
+            disabled={loadingMore}
+            className="px-4 py-2 border border-gray-300 dark:border-gray-600 text-gray-700 dark:text-gray-300 rounded-md hover:bg-gray-50 dark:hover:bg-gray-700 transition-colors disabled:opacity-50"
+          >
+            {loadingMore ? 'Loading...' : 'Load more'}
+          </button>
+        </div>
+      )}
+
       {/* Quick Actions */}
       <div className="bg-white dark:bg-gray-800 rounded-lg shadow p-6">
         <h3 className="text-lg font-semibold text-gray-900 dark:text-white mb-4">Quick Actions</h3>